@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.asosat.ddd.application.query;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.corant.suites.ddd.annotation.stereotype.InfrastructureServices;
+import org.corant.suites.ddd.model.Aggregate.AggregateIdentifier;
+import org.corant.suites.ddd.unitwork.UnitOfWorksManager.UnitOfWorksListener;
+import org.corant.suites.query.QueryResultCache;
+
+/**
+ * corant-asosat-ddd
+ *
+ * Evict the cached query results that depend on the aggregates that registered in the completed
+ * unit of work. The results are evicted even if the unit of work was rolled back, since the
+ * queries in the unit of work may have cached the uncommitted changes. The super classes of the
+ * aggregate are included, so a query can depend on an abstract aggregate type.
+ *
+ * @author bingo 下午3:18:26
+ *
+ */
+@ApplicationScoped
+@InfrastructureServices
+public class QueryResultCacheInvalidator implements UnitOfWorksListener {
+
+  @Inject
+  QueryResultCache cache;
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void onCompleted(Object registration, boolean success) {
+    if (registration instanceof Map) {
+      Set<String> types = new LinkedHashSet<>();
+      Map.class.cast(registration).values().forEach(ais -> {
+        if (ais instanceof Collection) {
+          Collection.class.cast(ais).forEach(ai -> {
+            if (ai instanceof AggregateIdentifier) {
+              resolveTypes(AggregateIdentifier.class.cast(ai), types);
+            }
+          });
+        }
+      });
+      cache.invalidate(types);
+    }
+  }
+
+  void resolveTypes(AggregateIdentifier ai, Set<String> types) {
+    if (ai.getType() != null && types.add(ai.getType())) {
+      for (Class<?> cls = ai.getTypeCls(); cls != null && cls != Object.class; cls =
+          cls.getSuperclass()) {
+        types.add(cls.getName());
+      }
+    }
+  }
+}
@@ -19,8 +19,11 @@ import static org.corant.shared.util.ClassUtils.getComponentClass;
 import static org.corant.shared.util.IterableUtils.asIterable;
 import static org.corant.shared.util.ObjectUtils.tryCast;
 import static org.corant.shared.util.StreamUtils.asStream;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -28,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.corant.shared.util.ClassUtils;
 import org.corant.shared.util.ObjectUtils;
 
@@ -118,11 +122,173 @@ public class Conversions {
         targetClass);
   }
 
+  /**
+   * Convert the elements of the given value to a primitive double array, the value can be an
+   * array, an iterable, an iterator, an enumeration or a single object. Unlike
+   * {@link #convert(Object, Class, Class, Map)} the elements are not collected into a list of boxed
+   * values, the converters convert each element to the primitive value directly, see
+   * {@link Converter#applyAsDouble(Object, Map)}. A null element can't be converted and causes a
+   * conversion exception.
+   *
+   * @param value the value to be converted
+   * @param hints the conversion hints
+   * @return the converted array, an empty array if the value is null
+   */
+  public static double[] convertToDoubleArray(Object value, Map<String, ?> hints) {
+    if (value instanceof double[]) {
+      return ((double[]) value).clone();
+    }
+    double[] array = new double[initialArrayLength(value)];
+    int size = 0;
+    Class<?> sourceClass = null;
+    Converter converter = null;
+    for (Iterator<?> it = elementIterator(value); it.hasNext();) {
+      Object element = it.next();
+      if (size == array.length) {
+        array = Arrays.copyOf(array, grownArrayLength(size));
+      }
+      if (element instanceof Double) {
+        array[size++] = ((Double) element).doubleValue();
+      } else {
+        if (element == null || element.getClass() != sourceClass) {
+          sourceClass = elementClass(element, double.class);
+          converter = resolveElementConverter(sourceClass, Double.class, hints);
+        }
+        array[size++] = converter.applyAsDouble(element, hints);
+      }
+    }
+    return size == array.length ? array : Arrays.copyOf(array, size);
+  }
+
+  /**
+   * Convert the elements of the given value to a primitive int array, see
+   * {@link #convertToDoubleArray(Object, Map)}.
+   */
+  public static int[] convertToIntArray(Object value, Map<String, ?> hints) {
+    if (value instanceof int[]) {
+      return ((int[]) value).clone();
+    }
+    int[] array = new int[initialArrayLength(value)];
+    int size = 0;
+    Class<?> sourceClass = null;
+    Converter converter = null;
+    for (Iterator<?> it = elementIterator(value); it.hasNext();) {
+      Object element = it.next();
+      if (size == array.length) {
+        array = Arrays.copyOf(array, grownArrayLength(size));
+      }
+      if (element instanceof Integer) {
+        array[size++] = ((Integer) element).intValue();
+      } else {
+        if (element == null || element.getClass() != sourceClass) {
+          sourceClass = elementClass(element, int.class);
+          converter = resolveElementConverter(sourceClass, Integer.class, hints);
+        }
+        array[size++] = converter.applyAsInt(element, hints);
+      }
+    }
+    return size == array.length ? array : Arrays.copyOf(array, size);
+  }
+
+  /**
+   * Convert the elements of the given value to a primitive long array, see
+   * {@link #convertToDoubleArray(Object, Map)}.
+   */
+  public static long[] convertToLongArray(Object value, Map<String, ?> hints) {
+    if (value instanceof long[]) {
+      return ((long[]) value).clone();
+    }
+    long[] array = new long[initialArrayLength(value)];
+    int size = 0;
+    Class<?> sourceClass = null;
+    Converter converter = null;
+    for (Iterator<?> it = elementIterator(value); it.hasNext();) {
+      Object element = it.next();
+      if (size == array.length) {
+        array = Arrays.copyOf(array, grownArrayLength(size));
+      }
+      if (element instanceof Long) {
+        array[size++] = ((Long) element).longValue();
+      } else {
+        if (element == null || element.getClass() != sourceClass) {
+          sourceClass = elementClass(element, long.class);
+          converter = resolveElementConverter(sourceClass, Long.class, hints);
+        }
+        array[size++] = converter.applyAsLong(element, hints);
+      }
+    }
+    return size == array.length ? array : Arrays.copyOf(array, size);
+  }
+
+  private static Iterator<?> elementIterator(Object value) {
+    if (value == null) {
+      return Collections.emptyIterator();
+    } else if (value instanceof Iterable) {
+      return ((Iterable<?>) value).iterator();
+    } else if (value instanceof Object[]) {
+      return Arrays.asList((Object[]) value).iterator();
+    } else if (value instanceof Iterator) {
+      return (Iterator<?>) value;
+    } else if (value instanceof Enumeration) {
+      return asIterable((Enumeration<?>) value).iterator();
+    } else if (value.getClass().isArray()) {
+      // primitive array of other component type, each element is boxed
+      final int length = Array.getLength(value);
+      return IntStream.range(0, length).mapToObj(i -> Array.get(value, i)).iterator();
+    } else {
+      return Collections.singleton(value).iterator();
+    }
+  }
+
+  private static int grownArrayLength(int length) {
+    return length < 8 ? 16 : length + (length >> 1);
+  }
+
+  private static int initialArrayLength(Object value) {
+    if (value == null) {
+      return 0;
+    } else if (value instanceof Collection) {
+      return ((Collection<?>) value).size();
+    } else if (value.getClass().isArray()) {
+      return Array.getLength(value);
+    } else if (value instanceof Iterable || value instanceof Iterator
+        || value instanceof Enumeration) {
+      return 16;
+    } else {
+      return 1;
+    }
+  }
+
+  private static Class<?> elementClass(Object element, Class<?> primitiveClass) {
+    if (element == null) {
+      throw new ConversionException("Can not convert null element to %s!", primitiveClass);
+    }
+    return element.getClass();
+  }
+
+  private static Converter resolveElementConverter(Class<?> sourceClass, Class<?> targetClass,
+      Map<String, ?> hints) {
+    Converter converter = resolveConverter(sourceClass, targetClass, hints);
+    if (converter == null) {
+      Converter stringConverter = resolveConverter(String.class, targetClass, hints);
+      if (stringConverter != null) {
+        LOGGER.fine(() -> String.format(
+            "Can not find proper convert for %s -> %s, use String -> %s converter!", sourceClass,
+            targetClass, targetClass));
+        converter = stringConverter.compose((v, h) -> ObjectUtils.asString(v));
+      } else {
+        throw new ConversionException("Can not find converter for type pair %s -> %s",
+            sourceClass, targetClass);
+      }
+    }
+    return converter;
+  }
+
   private static Converter resolveConverter(Class<?> sourceClass, Class<?> targetClass,
       Map<String, ?> hints) {
-    return Converters.lookup(ClassUtils.primitiveToWrapper(sourceClass),
+    return Converters.resolve(ClassUtils.primitiveToWrapper(sourceClass),
         ClassUtils.primitiveToWrapper(targetClass),
-        ConverterHints.getHint(hints, CVT_NEST_DEPT_KEY, CVT_MAX_NEST_DEPT)).orElse(null);
+        ConverterHints.getHint(hints, CVT_NEST_DEPT_KEY, CVT_MAX_NEST_DEPT));
   }
 
 }
@@ -32,6 +32,48 @@ public interface Converter<S, T> {
 
   T apply(S t, Map<String, ?> hints);
 
+  /**
+   * Convert the value to a primitive double without boxing, used by
+   * {@link Conversions#convertToDoubleArray(Object, Map)}, the target class of the converter must
+   * be Double. The default implementation unboxes the result of {@link #apply(Object, Map)}, the
+   * frequently used converters override it.
+   */
+  default double applyAsDouble(S value, Map<String, ?> hints) {
+    T result = apply(value, hints);
+    if (result == null) {
+      throw new ConversionException("Can not convert %s to primitive double!", value);
+    }
+    return ((Number) result).doubleValue();
+  }
+
+  /**
+   * Convert the value to a primitive int without boxing, the target class of the converter must
+   * be Integer.
+   *
+   * @see #applyAsDouble(Object, Map)
+   */
+  default int applyAsInt(S value, Map<String, ?> hints) {
+    T result = apply(value, hints);
+    if (result == null) {
+      throw new ConversionException("Can not convert %s to primitive int!", value);
+    }
+    return ((Number) result).intValue();
+  }
+
+  /**
+   * Convert the value to a primitive long without boxing, the target class of the converter must
+   * be Long.
+   *
+   * @see #applyAsDouble(Object, Map)
+   */
+  default long applyAsLong(S value, Map<String, ?> hints) {
+    T result = apply(value, hints);
+    if (result == null) {
+      throw new ConversionException("Can not convert %s to primitive long!", value);
+    }
+    return ((Number) result).longValue();
+  }
+
   default <V> Converter<V, T> compose(Converter<? super V, ? extends S> before) {
     return (v, hints) -> apply(shouldNotNull(before).apply(v, hints), hints);
   }
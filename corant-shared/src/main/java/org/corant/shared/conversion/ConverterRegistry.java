@@ -60,6 +60,7 @@ public class ConverterRegistry {
   public synchronized static void deregister(ConverterType<?, ?> converterType) {
     if (SUPPORT_CONVERTERS.remove(converterType) != null) {
       removeConverterPipeTypes(converterType);
+      Converters.clearDispatchCache();
     }
   }
 
@@ -69,6 +70,7 @@ public class ConverterRegistry {
     shouldBeTrue(types.length == 2 && types[0] instanceof Class && types[1] instanceof Class,
         "The converter %s parametered type must be actual type!", converter.toString());
     register((Class) types[0], (Class) types[1], converter);
+    Converters.clearDispatchCache();
   }
 
   public synchronized static <S, T> void register(ConverterFactory<S, T> converter) {
@@ -77,6 +79,7 @@ public class ConverterRegistry {
     shouldBeTrue(types.length == 2 && types[0] instanceof Class,
         "The converter %s parametered type must be actual type!", converter.toString());
     SUPPORT_CONVERTER_FACTORIES.put(types[1], converter);
+    Converters.clearDispatchCache();
   }
 
   public synchronized static void registerNotSupportType(Class<?> sourceClass,
@@ -134,6 +137,7 @@ public class ConverterRegistry {
       // has been register, check pipe or not
       removeNotSupportType(ct);
       removeConverterPipeTypes(ct);
+      Converters.clearDispatchCache();
     }
     if (pipeTypes.length > 0) {
       SUPPORT_CONVERTER_PIPE_TYPES.put(ct, asSet(pipeTypes));
@@ -27,6 +27,8 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Logger;
@@ -46,6 +48,15 @@ import org.corant.shared.conversion.converter.IdentityConverter;
  * extends the source class of the next converter.
  * </pre>
  *
+ * The results of the lookup are kept in a dispatch cache keyed by the source class and then the
+ * target class, see {@link #resolve(Class, Class, int)}. Both levels are {@link ClassValue}, so an
+ * entry is held by its target class rather than by a static map, and it goes away with the target
+ * class or with the cache. The cached converter is still a strong reference, as it is in
+ * {@link ConverterRegistry}, a converter that refers to other classes keeps them reachable while
+ * it is cached. At most {@link #MAX_CACHED_MISSES} misses are cached, the further misses are looked
+ * up on every call. The cache is cleared when a converter or a converter factory is registered or
+ * deregistered.
+ *
  * @author bingo 下午2:12:57
  *
  */
@@ -53,6 +64,9 @@ import org.corant.shared.conversion.converter.IdentityConverter;
 public class Converters {
 
   private static final Logger LOGGER = Logger.getLogger(Converters.class.getName());
+  private static final Object NO_CONVERTER = new Object();
+  static final int MAX_CACHED_MISSES = 1024;
+  private static volatile DispatchCache dispatchCache = new DispatchCache();
 
   public static <S, T> Optional<Converter<S, T>> lookup(Class<S> sourceClass, Class<T> targetClass,
       int maxNestingDepth) {
@@ -81,6 +95,44 @@ public class Converters {
     }
   }
 
+  /**
+   * Returns the converter from the dispatch cache, if the converter of the source class and the
+   * target class has not been looked up, look it up and cache the result. The result that is not
+   * found is cached until {@link #MAX_CACHED_MISSES} misses are cached. The cache hit does not lock
+   * or allocate.
+   *
+   * @param sourceClass the source class
+   * @param targetClass the target class
+   * @param maxNestingDepth the max nesting depth of the converter pipe
+   * @return the converter or null if not found
+   */
+  public static <S, T> Converter<S, T> resolve(Class<S> sourceClass, Class<T> targetClass,
+      int maxNestingDepth) {
+    final DispatchCache cache = dispatchCache;
+    final ClassValue<AtomicReference<Object>> targets = cache.get(sourceClass);
+    final AtomicReference<Object> cached = targets.get(targetClass);
+    Object converter = cached.get();
+    if (converter == null) {
+      converter = lookup(sourceClass, targetClass, maxNestingDepth).orElse(null);
+      if (converter != null || cache.misses.incrementAndGet() <= MAX_CACHED_MISSES) {
+        if (!cached.compareAndSet(null, converter == null ? NO_CONVERTER : converter)) {
+          converter = cached.get();
+        }
+      } else {
+        targets.remove(targetClass);
+      }
+    }
+    return converter == NO_CONVERTER ? null : (Converter<S, T>) converter;
+  }
+
+  /**
+   * Discard the dispatch cache, the lookups that are in progress put their results into the
+   * discarded cache.
+   */
+  static void clearDispatchCache() {
+    dispatchCache = new DispatchCache();
+  }
+
   static Converter getMatchedConverter(Class<?> sourceClass, Class<?> targetClass) {
     return asStream(ConverterRegistry.getConverters())
         .filter(e -> match(e.getKey(), sourceClass, targetClass)).map(Entry::getValue).findFirst()
@@ -292,4 +344,27 @@ public class Converters {
       this.match = match;
     }
   }
+
+  /**
+   * corant-shared
+   *
+   * The generation of the dispatch cache, with the number of the misses it holds.
+   *
+   * @author bingo 下午3:26:40
+   *
+   */
+  static class DispatchCache extends ClassValue<ClassValue<AtomicReference<Object>>> {
+
+    final AtomicInteger misses = new AtomicInteger();
+
+    @Override
+    protected ClassValue<AtomicReference<Object>> computeValue(Class<?> sourceClass) {
+      return new ClassValue<AtomicReference<Object>>() {
+        @Override
+        protected AtomicReference<Object> computeValue(Class<?> targetClass) {
+          return new AtomicReference<>();
+        }
+      };
+    }
+  }
 }
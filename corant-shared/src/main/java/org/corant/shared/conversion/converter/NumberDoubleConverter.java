@@ -54,4 +54,12 @@ public class NumberDoubleConverter extends AbstractConverter<Number, Double> {
     return Double.valueOf(value.doubleValue());
   }
 
+  @Override
+  public double applyAsDouble(Number value, Map<String, ?> hints) {
+    if (value != null) {
+      return value.doubleValue();
+    }
+    return super.applyAsDouble(value, hints);
+  }
+
 }
@@ -62,4 +62,15 @@ public class NumberIntegerConverter extends AbstractConverter<Number, Integer> {
     return Integer.valueOf(value.intValue());
   }
 
+  @Override
+  public int applyAsInt(Number value, Map<String, ?> hints) {
+    if (value != null) {
+      final long longValue = value.longValue();
+      if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+        return value.intValue();
+      }
+    }
+    return super.applyAsInt(value, hints);
+  }
+
 }
@@ -54,4 +54,12 @@ public class NumberLongConverter extends AbstractConverter<Number, Long> {
     return Long.valueOf(value.longValue());
   }
 
+  @Override
+  public long applyAsLong(Number value, Map<String, ?> hints) {
+    if (value != null) {
+      return value.longValue();
+    }
+    return super.applyAsLong(value, hints);
+  }
+
 }
@@ -58,4 +58,16 @@ public class StringDoubleConveter extends AbstractConverter<String, Double> {
     return Double.valueOf(value);
   }
 
+  @Override
+  public double applyAsDouble(String value, Map<String, ?> hints) {
+    if (!isEmpty(value)) {
+      try {
+        return Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        // use the boxed conversion to apply the default value or throw the conversion exception
+      }
+    }
+    return super.applyAsDouble(value, hints);
+  }
+
 }
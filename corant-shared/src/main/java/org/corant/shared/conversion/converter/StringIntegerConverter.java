@@ -58,4 +58,16 @@ public class StringIntegerConverter extends AbstractConverter<String, Integer> {
     return Integer.valueOf(value);
   }
 
+  @Override
+  public int applyAsInt(String value, Map<String, ?> hints) {
+    if (!isEmpty(value)) {
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        // use the boxed conversion to apply the default value or throw the conversion exception
+      }
+    }
+    return super.applyAsInt(value, hints);
+  }
+
 }
@@ -58,4 +58,16 @@ public class StringLongConverter extends AbstractConverter<String, Long> {
     return Long.valueOf(value);
   }
 
+  @Override
+  public long applyAsLong(String value, Map<String, ?> hints) {
+    if (!isEmpty(value)) {
+      try {
+        return Long.parseLong(value);
+      } catch (NumberFormatException e) {
+        // use the boxed conversion to apply the default value or throw the conversion exception
+      }
+    }
+    return super.applyAsLong(value, hints);
+  }
+
 }
@@ -24,17 +24,25 @@ import static org.corant.shared.util.StringUtils.isBlank;
 import static org.corant.shared.util.StringUtils.isNotBlank;
 import static org.corant.shared.util.StringUtils.replace;
 import static org.corant.shared.util.StringUtils.split;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -47,14 +55,18 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import org.corant.shared.exception.CorantRuntimeException;
+import org.corant.shared.normal.Defaults;
 import org.corant.shared.util.PathUtils.GlobMatcher;
 import org.corant.shared.util.PathUtils.GlobPatterns;
 import org.corant.shared.util.Resources.ClassPathResource;
@@ -62,6 +74,12 @@ import org.corant.shared.util.Resources.ClassPathResource;
 /**
  * corant-shared
  *
+ * The class path entries are scanned concurrently unless the system property
+ * {@value #PARALLEL_SCAN_KEY} is false. If the system property {@value #SCAN_INDEX_KEY} is true,
+ * the resource names of each scanned jar are kept in an index file under the corant works
+ * directory, the index is keyed by the jar path, size and last modified time, the unchanged jars
+ * are not opened again by the later scans or the later boots.
+ *
  * @author bingo 上午11:21:01
  *
  */
@@ -79,11 +97,16 @@ public class ClassPaths {
   public static final String WEB_INF = "WEB-INF";
   public static final String FILE_SCHEMA = "file";
   public static final String JAR_SCHEMA = "jar";
+  public static final String PARALLEL_SCAN_KEY = "corant.classpath.scan.parallel";
+  public static final String SCAN_INDEX_KEY = "corant.classpath.scan.index";
   public static final Map<Path, URLClassLoader> CACHED_CLASS_LOADERS = new ConcurrentHashMap<>();
   public static final Set<String> SYS_LIBS =
       asImmutableSet("java", "javax", "javafx", "jdk", "sun", "oracle", "netscape", "org/ietf",
           "org/jcp", "org/omg", "org/w3c", "org/xml", "com/sun", "com/oracle");
   private static final Logger logger = Logger.getLogger(ClassPaths.class.getName());
+  static final boolean PARALLEL_SCAN =
+      !"false".equalsIgnoreCase(System.getProperty(PARALLEL_SCAN_KEY));
+  static final boolean SCAN_INDEX = Boolean.getBoolean(SCAN_INDEX_KEY);
 
   private ClassPaths() {
     super();
@@ -169,10 +192,8 @@ public class ClassPaths {
   public static Set<ClassPathResource> from(ClassLoader classLoader, String path)
       throws IOException {
     Scanner scanner = buildScanner(defaultString(path), false);
-    for (Map.Entry<URI, ClassLoader> entry : getClassPathEntries(
-        defaultObject(classLoader, defaultClassLoader()), scanner.getRoot()).entrySet()) {
-      scanner.scan(entry.getKey(), entry.getValue());
-    }
+    scanner.scan(
+        getClassPathEntries(defaultObject(classLoader, defaultClassLoader()), scanner.getRoot()));
     return scanner.getResources();
   }
 
@@ -211,10 +232,160 @@ public class ClassPaths {
     return entries;
   }
 
+  static String getManifestClassPath(Manifest manifest) {
+    Attributes attrs = manifest == null ? null : manifest.getMainAttributes();
+    return attrs == null ? null : attrs.getValue(Attributes.Name.CLASS_PATH);
+  }
+
   static boolean loadAll(String path) {
     return isBlank(path) || SYS_LIBS.stream().anyMatch(sp -> path.startsWith(sp));
   }
 
+  /**
+   * corant-shared
+   *
+   * The resource names and the manifest class path of a jar, the index is cached in memory and
+   * stored in the corant works directory, it's reused as long as the size and the last modified
+   * time of the jar are not changed.
+   *
+   * @author bingo 下午3:18:47
+   *
+   */
+  static final class JarIndex {
+
+    static final int VERSION = 1;
+    static final Path INDEX_DIR = Defaults.corantUserDir("-works").resolve("classpath-index");
+    static final Map<String, SoftReference<JarIndex>> CACHE = new ConcurrentHashMap<>();
+
+    final String path;
+    final long size;
+    final long lastModified;
+    final String manifestClassPath;
+    final String[] names;
+
+    JarIndex(String path, long size, long lastModified, String manifestClassPath,
+        String[] names) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.manifestClassPath = manifestClassPath;
+      this.names = names;
+    }
+
+    /**
+     * Returns the index of the jar, null if the file is not a jar file.
+     */
+    static JarIndex of(File file) throws IOException {
+      final String path = file.getCanonicalPath();
+      final long size = file.length();
+      final long lastModified = file.lastModified();
+      SoftReference<JarIndex> ref = CACHE.get(path);
+      JarIndex index = ref == null ? null : ref.get();
+      if (index != null && index.isUpToDate(size, lastModified)) {
+        return index;
+      }
+      final Path indexFile = INDEX_DIR.resolve(
+          UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)).toString() + ".idx");
+      index = read(indexFile, path);
+      if (index == null || !index.isUpToDate(size, lastModified)) {
+        index = build(file, path, size, lastModified);
+        if (index == null) {
+          return null;
+        }
+        write(indexFile, index);
+      }
+      CACHE.put(path, new SoftReference<>(index));
+      return index;
+    }
+
+    static JarIndex build(File file, String path, long size, long lastModified) {
+      try (JarFile jarFile = new JarFile(file)) {
+        List<String> names = new ArrayList<>();
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+          JarEntry entry = entries.nextElement();
+          if (!entry.isDirectory()) {
+            names.add(entry.getName());
+          }
+        }
+        return new JarIndex(path, size, lastModified,
+            getManifestClassPath(jarFile.getManifest()), names.toArray(new String[names.size()]));
+      } catch (IOException notJarFile) {
+        return null;
+      }
+    }
+
+    static JarIndex read(Path indexFile, String path) {
+      if (!Files.isRegularFile(indexFile)) {
+        return null;
+      }
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+        if (in.readInt() != VERSION || !path.equals(in.readUTF())) {
+          return null;
+        }
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        String manifestClassPath = null;
+        int length = in.readInt();
+        if (length >= 0) {
+          // may be longer than the modified UTF-8 limit
+          byte[] bytes = new byte[length];
+          in.readFully(bytes);
+          manifestClassPath = new String(bytes, StandardCharsets.UTF_8);
+        }
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+          names[i] = in.readUTF();
+        }
+        return new JarIndex(path, size, lastModified, manifestClassPath, names);
+      } catch (IOException | RuntimeException e) {
+        logger.log(Level.FINE, e, () -> String.format("Can not read jar index %s.", indexFile));
+        return null;
+      }
+    }
+
+    static void write(Path indexFile, JarIndex index) {
+      Path tmpFile = null;
+      try {
+        Files.createDirectories(INDEX_DIR);
+        tmpFile = Files.createTempFile(INDEX_DIR, asString(indexFile.getFileName()), ".tmp");
+        try (DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+          out.writeInt(VERSION);
+          out.writeUTF(index.path);
+          out.writeLong(index.size);
+          out.writeLong(index.lastModified);
+          if (index.manifestClassPath != null) {
+            byte[] bytes = index.manifestClassPath.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+          } else {
+            out.writeInt(-1);
+          }
+          out.writeInt(index.names.length);
+          for (String name : index.names) {
+            out.writeUTF(name);
+          }
+        }
+        Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException | RuntimeException e) {
+        logger.log(Level.FINE, e, () -> String.format("Can not write jar index %s.", indexFile));
+        if (tmpFile != null) {
+          try {
+            Files.deleteIfExists(tmpFile);
+          } catch (IOException ignored) {
+          }
+        }
+      }
+    }
+
+    boolean isUpToDate(long size, long lastModified) {
+      return this.size == size && this.lastModified == lastModified;
+    }
+  }
+
   /**
    * corant-shared
    *
@@ -266,12 +437,14 @@ public class ClassPaths {
 
     private final Set<ClassPathResource> resources = new LinkedHashSet<>();
     private final Set<URI> scannedUris = new HashSet<>();
+    private final Map<URI, List<ClassPathResource>> scannedResources;
     private final String root;
     private Predicate<String> filter = s -> true;
 
     public Scanner(String root) {
       super();
       this.root = root;
+      scannedResources = null;
     }
 
     public Scanner(String root, Predicate<String> filter) {
@@ -281,6 +454,17 @@ public class ClassPaths {
       }
     }
 
+    /**
+     * The scanner of a class path entry, it keeps the resources of each scanned uri apart in the
+     * order that the scanning of the uri completes, so that the parent scanner can merge them as if
+     * the entries were scanned one by one.
+     */
+    Scanner(Scanner parent) {
+      root = parent.root;
+      filter = parent.filter;
+      scannedResources = new LinkedHashMap<>();
+    }
+
     public Set<ClassPathResource> getResources() {
       return resources;
     }
@@ -300,14 +484,15 @@ public class ClassPaths {
     }
 
     protected Set<URI> getClassPathFromManifest(File jarFile, Manifest manifest) {
-      String attrName = Attributes.Name.CLASS_PATH.toString();
-      Attributes attrs = null;
-      if (manifest == null || (attrs = manifest.getMainAttributes()) == null
-          || !attrs.containsKey(attrName)) {
+      return getClassPathFromManifest(jarFile, getManifestClassPath(manifest));
+    }
+
+    protected Set<URI> getClassPathFromManifest(File jarFile, String manifestClassPath) {
+      if (manifestClassPath == null) {
         return asImmutableSet();
       }
       Set<URI> uriSet = new LinkedHashSet<>();
-      for (String path : split(attrs.getValue(attrName), " ")) {
+      for (String path : split(manifestClassPath, " ")) {
         try {
           uriSet.add(getClassPathEntry(jarFile, path));
         } catch (URISyntaxException e) {
@@ -318,13 +503,58 @@ public class ClassPaths {
       return uriSet;
     }
 
+    protected boolean isAcceptedJarEntry(String name) {
+      return !name.equals(JarFile.MANIFEST_NAME) && (isBlank(root) || name.startsWith(root))
+          && filter.test(name);
+    }
+
+    /**
+     * Scan the class path entries, the resources are kept in the order of the entries even if the
+     * entries are scanned concurrently. Each entry is scanned with its own scanner that follows the
+     * manifest class paths by itself, then the resources of the uris are merged in the order of the
+     * entries and the uris that have been merged are skipped, the result is the same as scanning
+     * the entries one by one.
+     *
+     * @param entries the class path entries and their class loaders
+     * @throws IOException
+     */
+    protected void scan(Map<URI, ClassLoader> entries) throws IOException {
+      if (entries.size() < 2 || !PARALLEL_SCAN) {
+        for (Map.Entry<URI, ClassLoader> entry : entries.entrySet()) {
+          scan(entry.getKey(), entry.getValue());
+        }
+        return;
+      }
+      try {
+        // copy to an array list, it splits evenly for the fork-join pool
+        List<Scanner> scanners = new ArrayList<>(entries.entrySet()).parallelStream().map(e -> {
+          Scanner scanner = new Scanner(this);
+          try {
+            scanner.scan(e.getKey(), e.getValue());
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+          return scanner;
+        }).collect(Collectors.toList());
+        for (Scanner scanner : scanners) {
+          scanner.scannedResources.forEach((uri, rs) -> {
+            if (scannedUris.add(uri)) {
+              resources.addAll(rs);
+            }
+          });
+        }
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+
     protected void scan(URI uri, ClassLoader classloader) throws IOException {
       if (uri.getScheme().equals(FILE_SCHEMA) && scannedUris.add(uri)) {
-        scanFrom(new File(uri).getCanonicalFile(), classloader);
+        scanFrom(uri, classloader);
       } else if (uri.getScheme().equals(JAR_SCHEMA)) {
         URI exUri = tryExtractFileUri(uri);
         if (exUri != null && scannedUris.add(exUri)) {
-          scanFrom(new File(exUri).getCanonicalFile(), classloader);
+          scanFrom(exUri, classloader);
         }
       }
     }
@@ -362,6 +592,15 @@ public class ClassPaths {
       }
     }
 
+    protected void scanFrom(URI fileUri, ClassLoader classloader) throws IOException {
+      scanFrom(new File(fileUri).getCanonicalFile(), classloader);
+      if (scannedResources != null) {
+        // the manifest class paths were scanned first and have taken their own resources
+        scannedResources.put(fileUri, new ArrayList<>(resources));
+        resources.clear();
+      }
+    }
+
     protected void scanFrom(File file, ClassLoader classloader) throws IOException {
       if (!file.exists()) {
         return;
@@ -379,6 +618,22 @@ public class ClassPaths {
     }
 
     protected void scanJar(File file, ClassLoader classloader) throws IOException {
+      if (SCAN_INDEX) {
+        JarIndex index = JarIndex.of(file);
+        if (index == null) {
+          logger.warning(() -> String.format("The file %s is not jar file!", file.getName()));
+          return;
+        }
+        for (URI uri : getClassPathFromManifest(file, index.manifestClassPath)) {
+          scan(uri, classloader);
+        }
+        for (String name : index.names) {
+          if (isAcceptedJarEntry(name)) {
+            resources.add(ClassPathResource.of(name, classloader));
+          }
+        }
+        return;
+      }
       JarFile jarFile;
       try {
         jarFile = new JarFile(file);
@@ -394,8 +649,7 @@ public class ClassPaths {
         while (entries.hasMoreElements()) {
           JarEntry entry = entries.nextElement();
           String name = entry.getName();
-          if (entry.isDirectory() || name.equals(JarFile.MANIFEST_NAME)
-              || isNotBlank(root) && !name.startsWith(root) || !filter.test(name)) {
+          if (entry.isDirectory() || !isAcceptedJarEntry(name)) {
             continue;
           }
           resources.add(ClassPathResource.of(name, classloader));
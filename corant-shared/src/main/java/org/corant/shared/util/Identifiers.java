@@ -142,14 +142,51 @@ public class Identifiers {
     }
   }
 
-  private static int handleSequence(AtomicLong sequence, Long mask, boolean current) {
-    int seq = sequence.intValue();
-    long incredSeq = sequence.incrementAndGet();
-    incredSeq &= mask;
-    if (sequence.get() != incredSeq) {
-      sequence.set(incredSeq);
-    }
-    return current ? sequence.intValue() : seq;
+  /**
+   * Claim the sequences of the snowflake generators without locking, the state packs the timestamp
+   * (offset from {@link #TIME_EPOCH}) and the last claimed sequence of the timestamp as
+   * {@code timestamp << sequenceBits | sequence}, -1 means nothing claimed yet. At most
+   * {@code max} contiguous sequences of one timestamp are claimed, see
+   * {@link #claimedSize(long, long, int)}. A timestamp that is behind the last timestamp is
+   * treated as the last timestamp, so the ids never go backwards.
+   *
+   * @param state the packed timestamp and sequence
+   * @param timeGener the time supplier
+   * @param sequenceBits the sequence bits of the id
+   * @param max the max number of the sequences to claim, greater than zero
+   * @param useTimeBuffer if true the time supplier is only called when the sequences of the last
+   *        timestamp are exhausted, otherwise it's called once on each claim
+   * @return the packed timestamp and sequence of the first claimed sequence
+   */
+  static long claimSequences(AtomicLong state, Supplier<?> timeGener, long sequenceBits, int max,
+      boolean useTimeBuffer) {
+    final long mask = -1L ^ -1L << sequenceBits;
+    long timestamp = useTimeBuffer ? -1L : getCurrentTimestamp(timeGener) - TIME_EPOCH;
+    for (;;) {
+      final long last = state.get();
+      final long lastTimestamp = last >> sequenceBits;
+      final long start;
+      if (last < 0 || timestamp > lastTimestamp) {
+        if (timestamp < 0) {
+          timestamp = getCurrentTimestamp(timeGener) - TIME_EPOCH;
+        }
+        start = timestamp << sequenceBits;
+      } else if ((last & mask) < mask) {
+        start = last + 1;
+      } else {
+        // the sequences of the last timestamp are exhausted, wait for the next millisecond
+        timestamp = tilMillis(timeGener, lastTimestamp + TIME_EPOCH, false) - TIME_EPOCH;
+        continue;
+      }
+      if (state.compareAndSet(last, start + claimedSize(start, sequenceBits, max) - 1)) {
+        return start;
+      }
+    }
+  }
+
+  static int claimedSize(long start, long sequenceBits, int max) {
+    final long mask = -1L ^ -1L << sequenceBits;
+    return (int) Math.min(max, mask + 1 - (start & mask));
   }
 
   public interface IdentifierGenerator {
@@ -176,8 +213,7 @@ public class Identifiers {
     private final long workerSegm;
     private final boolean useTimeBuffer;
 
-    private volatile long lastTimestamp = -1L;
-    private AtomicLong sequence = new AtomicLong(0L);
+    private final AtomicLong timeSequence = new AtomicLong(-1L);
 
     public SnowflakeBufferUUIDGenerator(long workerId) {
       this(workerId, false);
@@ -264,30 +300,37 @@ public class Identifiers {
       return result;
     }
 
-    protected synchronized Long doGenerateWithCache(Supplier<?> timeGener) {
-      int cursor = handleSequence(sequence, SEQUENCE_MASK, false);
-      if (cursor == 0) {
-        lastTimestamp = tilMillis(timeGener, lastTimestamp, false);
+    /**
+     * Reserve a block of ids, the ids of the same timestamp in the block are contiguous.
+     *
+     * @param size the number of the ids to reserve
+     * @param timeGener the time supplier
+     * @return the reserved ids in ascending order
+     */
+    public long[] reserve(int size, Supplier<?> timeGener) {
+      final long[] ids = new long[size];
+      int filled = 0;
+      while (filled < size) {
+        long start = claimSequences(timeSequence, timeGener, SEQUENCE_BITS, size - filled,
+            useTimeBuffer);
+        for (int i = claimedSize(start, SEQUENCE_BITS, size - filled); i > 0; i--) {
+          ids[filled++] = nextId(start++);
+        }
       }
-      return nextId(lastTimestamp, cursor);
+      return ids;
     }
 
-    protected synchronized Long doGenerateWithoutCache(Supplier<?> timeGener) {
-      long timestamp = tilMillis(timeGener, lastTimestamp, true);
-      if (lastTimestamp == timestamp) {
-        int currentSeq = handleSequence(sequence, SEQUENCE_MASK, true);
-        if (currentSeq == 0) {
-          timestamp = tilMillis(timeGener, lastTimestamp, false);
-        }
-      } else {
-        sequence.set(0L);
-      }
-      lastTimestamp = timestamp;
-      return nextId(timestamp, sequence.get());
+    protected Long doGenerateWithCache(Supplier<?> timeGener) {
+      return nextId(claimSequences(timeSequence, timeGener, SEQUENCE_BITS, 1, true));
+    }
+
+    protected Long doGenerateWithoutCache(Supplier<?> timeGener) {
+      return nextId(claimSequences(timeSequence, timeGener, SEQUENCE_BITS, 1, false));
     }
 
-    protected long nextId(long timestamp, long seq) {
-      return timestamp - TIME_EPOCH << TIMESTAMP_LEFT_SHIFT | workerSegm | seq;
+    protected long nextId(long timeSequence) {
+      return (timeSequence >>> SEQUENCE_BITS) << TIMESTAMP_LEFT_SHIFT | workerSegm
+          | timeSequence & SEQUENCE_MASK;
     }
   }
 
@@ -323,8 +366,7 @@ public class Identifiers {
     private final long dataCenterSegm;
     private final long workerSegm;
 
-    private volatile long lastTimestamp = -1L;
-    private AtomicLong sequence = new AtomicLong(0L);
+    private final AtomicLong timeSequence = new AtomicLong(-1L);
 
     public SnowflakeUUIDGenerator(long dataCenterId, long workerId) {
       if (workerId < 0 || workerId > MAX_WORKER_ID) {
@@ -412,19 +454,8 @@ public class Identifiers {
     }
 
     @Override
-    public synchronized Long generate(Supplier<?> timeGener) {
-      long timestamp = tilMillis(timeGener, lastTimestamp, true);
-      if (lastTimestamp == timestamp) {
-        int currentSeq = handleSequence(sequence, SEQUENCE_MASK, true);
-        if (currentSeq == 0) {
-          timestamp = tilMillis(timeGener, lastTimestamp, false);
-        }
-      } else {
-        sequence.set(0L);
-      }
-      lastTimestamp = timestamp;
-      return timestamp - TIME_EPOCH << TIMESTAMP_LEFT_SHIFT | dataCenterSegm | workerSegm
-          | sequence.get();
+    public Long generate(Supplier<?> timeGener) {
+      return nextId(claimSequences(timeSequence, timeGener, SEQUENCE_BITS, 1, false));
     }
 
     /**
@@ -450,8 +481,9 @@ public class Identifiers {
      *
      * @return
      */
-    public synchronized long getLastTimestamp() {
-      return lastTimestamp;
+    public long getLastTimestamp() {
+      final long last = timeSequence.get();
+      return last < 0 ? -1L : (last >> SEQUENCE_BITS) + TIME_EPOCH;
     }
 
     /**
@@ -472,6 +504,31 @@ public class Identifiers {
       return result;
     }
 
+    /**
+     * Reserve a block of ids, the ids of the same timestamp in the block are contiguous, the time
+     * supplier is called once for each timestamp of the block.
+     *
+     * @param size the number of the ids to reserve
+     * @param timeGener the time supplier
+     * @return the reserved ids in ascending order
+     */
+    public long[] reserve(int size, Supplier<?> timeGener) {
+      final long[] ids = new long[size];
+      int filled = 0;
+      while (filled < size) {
+        long start = claimSequences(timeSequence, timeGener, SEQUENCE_BITS, size - filled, false);
+        for (int i = claimedSize(start, SEQUENCE_BITS, size - filled); i > 0; i--) {
+          ids[filled++] = nextId(start++);
+        }
+      }
+      return ids;
+    }
+
+    protected long nextId(long timeSequence) {
+      return (timeSequence >>> SEQUENCE_BITS) << TIMESTAMP_LEFT_SHIFT | dataCenterSegm
+          | workerSegm | timeSequence & SEQUENCE_MASK;
+    }
+
   }
 
   public static class TimeBasedUUIDGenerator implements IdentifierGenerator {
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.shared.conversion;
+
+import static org.corant.shared.conversion.ConverterHints.CVT_MAX_NEST_DEPT;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * corant-shared
+ *
+ * Compares the converter dispatch cache of {@link Converters#resolve(Class, Class, int)} with
+ * {@link Converters#lookup(Class, Class, int)} that the conversions used before, for a supported
+ * pair and for a pair that has no converter, and measures a whole conversion through
+ * {@link Conversions}.
+ *
+ * @author bingo 下午3:48:21
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConvertersBenchmark {
+
+  public static void main(String... args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ConvertersBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+  @Benchmark
+  public Integer convert() {
+    return Conversions.convert("123", Integer.class);
+  }
+
+  @Benchmark
+  public Object lookupHit() {
+    return Converters.lookup(String.class, Integer.class, CVT_MAX_NEST_DEPT).orElse(null);
+  }
+
+  @Benchmark
+  public Object lookupMiss() {
+    return Converters.lookup(Thread.class, Integer.class, CVT_MAX_NEST_DEPT).orElse(null);
+  }
+
+  @Benchmark
+  public Object resolveHit() {
+    return Converters.resolve(String.class, Integer.class, CVT_MAX_NEST_DEPT);
+  }
+
+  @Benchmark
+  public Object resolveMiss() {
+    return Converters.resolve(Thread.class, Integer.class, CVT_MAX_NEST_DEPT);
+  }
+}
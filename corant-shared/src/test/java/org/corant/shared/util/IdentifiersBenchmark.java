@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.shared.util;
+
+import java.util.concurrent.TimeUnit;
+import org.corant.shared.util.Identifiers.IdentifierGenerator;
+import org.corant.shared.util.Identifiers.SnowflakeBufferUUIDGenerator;
+import org.corant.shared.util.Identifiers.SnowflakeUUIDGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * corant-shared
+ *
+ * Compares the lock-free snowflake generators with the synchronized ones they replaced, with 8
+ * threads sharing one generator. Every generator is capped by the 4096 sequences of a millisecond,
+ * so the gap shows in the time spent waiting for the lock and in the id blocks of
+ * {@link SnowflakeUUIDGenerator#reserve(int, java.util.function.Supplier)}.
+ *
+ * @author bingo 下午4:10:05
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(8)
+@Fork(1)
+public class IdentifiersBenchmark {
+
+  static final int RESERVE_SIZE = 64;
+
+  final SnowflakeUUIDGenerator snowflake = new SnowflakeUUIDGenerator(1, 1);
+  final IdentifierGenerator legacySnowflake = new LegacySnowflakeUUIDGenerator(1, 1);
+  final SnowflakeBufferUUIDGenerator buffer = new SnowflakeBufferUUIDGenerator(1, true);
+  final IdentifierGenerator legacyBuffer = new LegacySnowflakeBufferUUIDGenerator(1, true);
+
+  public static void main(String... args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(IdentifiersBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+  @Benchmark
+  public Object buffer() {
+    return buffer.generate(null);
+  }
+
+  @Benchmark
+  public Object legacyBuffer() {
+    return legacyBuffer.generate(null);
+  }
+
+  @Benchmark
+  public Object legacySnowflake() {
+    return legacySnowflake.generate(null);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RESERVE_SIZE)
+  public long[] reserve() {
+    return snowflake.reserve(RESERVE_SIZE, null);
+  }
+
+  @Benchmark
+  public Object snowflake() {
+    return snowflake.generate(null);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.shared.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.corant.shared.util.Identifiers.IdentifierGenerator;
+import org.corant.shared.util.Identifiers.SnowflakeBufferUUIDGenerator;
+import org.corant.shared.util.Identifiers.SnowflakeUUIDGenerator;
+import org.junit.Test;
+
+/**
+ * corant-shared
+ *
+ * Verify that the snowflake generators hand out unique ids that ascend on each thread under
+ * contention, and that the reserved blocks roll over to the next millisecond when the sequences of
+ * a millisecond are exhausted.
+ *
+ * @author bingo 下午4:18:32
+ *
+ */
+public class IdentifiersTest {
+
+  static final int WORKERS = 8;
+  static final int TIMES = 50000;
+
+  /**
+   * The time supplier that returns the given time for the first calls and one millisecond later
+   * for the rest.
+   */
+  static Supplier<Long> clock(long time, int calls) {
+    AtomicInteger called = new AtomicInteger();
+    return () -> called.incrementAndGet() <= calls ? time : time + 1;
+  }
+
+  static void assertUniqueAndAscending(IdentifierGenerator generator) throws Exception {
+    assertUniqueAndAscending(() -> new long[] {(Long) generator.generate(null)});
+  }
+
+  static void assertUniqueAndAscending(Supplier<long[]> generator) throws Exception {
+    ExecutorService es = Executors.newFixedThreadPool(WORKERS);
+    CountDownLatch start = new CountDownLatch(1);
+    Callable<long[]> worker = () -> {
+      long[] ids = new long[TIMES];
+      start.await();
+      for (int i = 0; i < TIMES;) {
+        long[] generated = generator.get();
+        int size = Math.min(generated.length, TIMES - i);
+        System.arraycopy(generated, 0, ids, i, size);
+        i += size;
+      }
+      return ids;
+    };
+    Set<Future<long[]>> futures = new HashSet<>();
+    for (int i = 0; i < WORKERS; i++) {
+      futures.add(es.submit(worker));
+    }
+    start.countDown();
+    Set<Long> all = new HashSet<>(WORKERS * TIMES * 2);
+    try {
+      for (Future<long[]> future : futures) {
+        long[] ids = future.get();
+        for (int i = 0; i < ids.length; i++) {
+          assertTrue(i == 0 || ids[i] > ids[i - 1]);
+          all.add(ids[i]);
+        }
+      }
+    } finally {
+      es.shutdown();
+    }
+    assertEquals(WORKERS * TIMES, all.size());
+  }
+
+  static void assertAscending(long[] ids) {
+    for (int i = 1; i < ids.length; i++) {
+      assertTrue(ids[i] > ids[i - 1]);
+    }
+  }
+
+  @Test
+  public void testBufferGeneratorUnderContention() throws Exception {
+    assertUniqueAndAscending(new SnowflakeBufferUUIDGenerator(3, false));
+    assertUniqueAndAscending(new SnowflakeBufferUUIDGenerator(3, true));
+  }
+
+  @Test
+  public void testBufferReserveAtRollover() {
+    final long now = System.currentTimeMillis();
+    SnowflakeBufferUUIDGenerator generator = new SnowflakeBufferUUIDGenerator(3, true);
+    Supplier<Long> clock = clock(now, 2);
+    long[] first = generator.reserve(4000, clock);
+    long[] ids = generator.reserve(200, clock);
+    assertAscending(ids);
+    assertTrue(ids[0] > first[first.length - 1]);
+    for (int i = 0; i < ids.length; i++) {
+      long id = ids[i];
+      assertEquals(3, SnowflakeBufferUUIDGenerator.parseGeningWorkerId(id));
+      assertEquals(i < 96 ? now : now + 1,
+          SnowflakeBufferUUIDGenerator.parseGeningInstant(id).toEpochMilli());
+      assertEquals(i < 96 ? 4000 + i : i - 96,
+          SnowflakeBufferUUIDGenerator.parseGeningSequence(id));
+    }
+  }
+
+  @Test
+  public void testClockRegression() {
+    final long now = System.currentTimeMillis();
+    SnowflakeUUIDGenerator generator = new SnowflakeUUIDGenerator(1, 2);
+    long id = generator.generate(() -> now);
+    long next = generator.generate(() -> now - 5);
+    assertTrue(next > id);
+    assertEquals(now, SnowflakeUUIDGenerator.parseGeningInstant(next).toEpochMilli());
+  }
+
+  @Test
+  public void testReserveAtRollover() {
+    final long now = System.currentTimeMillis();
+    SnowflakeUUIDGenerator generator = new SnowflakeUUIDGenerator(1, 2);
+    Supplier<Long> clock = clock(now, 2);
+    long[] first = generator.reserve(4000, clock);
+    assertEquals(4000, first.length);
+    assertAscending(first);
+    long[] ids = generator.reserve(200, clock);
+    assertEquals(200, ids.length);
+    assertAscending(ids);
+    assertTrue(ids[0] > first[first.length - 1]);
+    for (int i = 0; i < ids.length; i++) {
+      long id = ids[i];
+      assertEquals(1, SnowflakeUUIDGenerator.parseGeningDataCenterId(id));
+      assertEquals(2, SnowflakeUUIDGenerator.parseGeningWorkerId(id));
+      assertEquals(i < 96 ? now : now + 1,
+          SnowflakeUUIDGenerator.parseGeningInstant(id).toEpochMilli());
+      assertEquals(i < 96 ? 4000 + i : i - 96, SnowflakeUUIDGenerator.parseGeningSequence(id));
+    }
+  }
+
+  @Test
+  public void testReserveUnderContention() throws Exception {
+    SnowflakeUUIDGenerator generator = new SnowflakeUUIDGenerator(1, 2);
+    AtomicInteger turns = new AtomicInteger();
+    assertUniqueAndAscending(() -> turns.incrementAndGet() % 2 == 0 ? generator.reserve(64, null)
+        : new long[] {generator.generate(null)});
+  }
+
+  @Test
+  public void testSnowflakeGeneratorUnderContention() throws Exception {
+    assertUniqueAndAscending(new SnowflakeUUIDGenerator(1, 2));
+  }
+}
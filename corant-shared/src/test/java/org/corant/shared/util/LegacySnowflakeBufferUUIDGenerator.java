@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.shared.util;
+
+import static org.corant.shared.util.Identifiers.TIME_EPOCH;
+import static org.corant.shared.util.Identifiers.tilMillis;
+import static org.corant.shared.util.LegacySnowflakeUUIDGenerator.handleSequence;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.corant.shared.util.Identifiers.IdentifierGenerator;
+import org.corant.shared.util.Identifiers.SnowflakeBufferUUIDGenerator;
+
+/**
+ * corant-shared
+ *
+ * The synchronized {@link SnowflakeBufferUUIDGenerator} before it was made lock-free, kept for the
+ * benchmark only.
+ *
+ * @author bingo 下午4:03:51
+ *
+ */
+public class LegacySnowflakeBufferUUIDGenerator implements IdentifierGenerator {
+
+  private final long workerSegm;
+  private final boolean useTimeBuffer;
+
+  private volatile long lastTimestamp = -1L;
+  private AtomicLong sequence = new AtomicLong(0L);
+
+  public LegacySnowflakeBufferUUIDGenerator(long workerId, boolean useTimeBuffer) {
+    workerSegm = workerId << SnowflakeBufferUUIDGenerator.WORKER_ID_SHIFT;
+    this.useTimeBuffer = useTimeBuffer;
+  }
+
+  @Override
+  public Long generate(Supplier<?> timeGener) {
+    if (useTimeBuffer) {
+      return doGenerateWithCache(timeGener);
+    } else {
+      return doGenerateWithoutCache(timeGener);
+    }
+  }
+
+  protected synchronized Long doGenerateWithCache(Supplier<?> timeGener) {
+    int cursor = handleSequence(sequence, SnowflakeBufferUUIDGenerator.SEQUENCE_MASK, false);
+    if (cursor == 0) {
+      lastTimestamp = tilMillis(timeGener, lastTimestamp, false);
+    }
+    return nextId(lastTimestamp, cursor);
+  }
+
+  protected synchronized Long doGenerateWithoutCache(Supplier<?> timeGener) {
+    long timestamp = tilMillis(timeGener, lastTimestamp, true);
+    if (lastTimestamp == timestamp) {
+      int currentSeq = handleSequence(sequence, SnowflakeBufferUUIDGenerator.SEQUENCE_MASK, true);
+      if (currentSeq == 0) {
+        timestamp = tilMillis(timeGener, lastTimestamp, false);
+      }
+    } else {
+      sequence.set(0L);
+    }
+    lastTimestamp = timestamp;
+    return nextId(timestamp, sequence.get());
+  }
+
+  protected long nextId(long timestamp, long seq) {
+    return timestamp - TIME_EPOCH << SnowflakeBufferUUIDGenerator.TIMESTAMP_LEFT_SHIFT | workerSegm
+        | seq;
+  }
+}
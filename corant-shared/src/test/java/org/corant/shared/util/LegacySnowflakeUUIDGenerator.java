@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.shared.util;
+
+import static org.corant.shared.util.Identifiers.TIME_EPOCH;
+import static org.corant.shared.util.Identifiers.tilMillis;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.corant.shared.util.Identifiers.IdentifierGenerator;
+import org.corant.shared.util.Identifiers.SnowflakeUUIDGenerator;
+
+/**
+ * corant-shared
+ *
+ * The synchronized {@link SnowflakeUUIDGenerator} before it was made lock-free, kept for the
+ * benchmark only.
+ *
+ * @author bingo 下午4:02:18
+ *
+ */
+public class LegacySnowflakeUUIDGenerator implements IdentifierGenerator {
+
+  private final long dataCenterSegm;
+  private final long workerSegm;
+
+  private volatile long lastTimestamp = -1L;
+  private AtomicLong sequence = new AtomicLong(0L);
+
+  public LegacySnowflakeUUIDGenerator(long dataCenterId, long workerId) {
+    dataCenterSegm = dataCenterId << SnowflakeUUIDGenerator.DATACENTER_ID_SHIFT;
+    workerSegm = workerId << SnowflakeUUIDGenerator.WORKER_ID_SHIFT;
+  }
+
+  static int handleSequence(AtomicLong sequence, Long mask, boolean current) {
+    int seq = sequence.intValue();
+    long incredSeq = sequence.incrementAndGet();
+    incredSeq &= mask;
+    if (sequence.get() != incredSeq) {
+      sequence.set(incredSeq);
+    }
+    return current ? sequence.intValue() : seq;
+  }
+
+  @Override
+  public synchronized Long generate(Supplier<?> timeGener) {
+    long timestamp = tilMillis(timeGener, lastTimestamp, true);
+    if (lastTimestamp == timestamp) {
+      int currentSeq = handleSequence(sequence, SnowflakeUUIDGenerator.SEQUENCE_MASK, true);
+      if (currentSeq == 0) {
+        timestamp = tilMillis(timeGener, lastTimestamp, false);
+      }
+    } else {
+      sequence.set(0L);
+    }
+    lastTimestamp = timestamp;
+    return timestamp - TIME_EPOCH << SnowflakeUUIDGenerator.TIMESTAMP_LEFT_SHIFT | dataCenterSegm
+        | workerSegm | sequence.get();
+  }
+}
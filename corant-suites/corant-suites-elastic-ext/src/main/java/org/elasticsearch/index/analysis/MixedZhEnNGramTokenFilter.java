@@ -14,7 +14,6 @@
 package org.elasticsearch.index.analysis;
 
 import java.io.IOException;
-import java.util.Arrays;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.miscellaneous.CodepointCountFilter;
@@ -22,6 +21,7 @@ import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.util.ArrayUtil;
 
 /**
  *
@@ -29,6 +29,10 @@ import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
  *
  * Adjust NGram algorithm and add parameters of mixed Chinese and English slices
  *
+ * The term of the current token is copied once into a reused buffer, the code point offsets of the
+ * term and whether it is a Chinese term are resolved in one pass, so each gram is sliced from the
+ * offset table without rescanning the term.
+ *
  * @author bingo 下午11:17:24
  *
  */
@@ -41,15 +45,16 @@ public class MixedZhEnNGramTokenFilter extends TokenFilter {
   public static final int ZH_DEFAULT_MIN_NGRAM_SIZE = 1;
   public static final boolean RETAIN_TOKEN = true;
 
-  private char[] actualTermBuffer;
   private boolean retainToken = false;
   private boolean filledCurToken = false;
+  private boolean hasCurToken = false;
 
   private int curCodePointCount;
+  private int[] curCodePointOffsets = new int[16];
   private int curGramSize;
   private int curPos;
   private int curPosInc, curPosLen;
-  private char[] curTermBuffer;
+  private char[] curTermBuffer = new char[16];
   private int curTermLength;
   private int minGram, maxGram;
   private int tokEnd;
@@ -91,31 +96,49 @@ public class MixedZhEnNGramTokenFilter extends TokenFilter {
     posLenAtt = addAttribute(PositionLengthAttribute.class);
   }
 
+  /**
+   * 是否是中日韩字符
+   *
+   * @param c
+   * @return
+   */
+  private static boolean isZhChar(char c) {
+    if (c < '\u2000') {
+      // fast path, none of the blocks below starts before GENERAL_PUNCTUATION
+      return false;
+    }
+    Character.UnicodeBlock ub = Character.UnicodeBlock.of(c);
+    return ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+        || ub == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+        || ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+        || ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B
+        || ub == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+        || ub == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS
+        || ub == Character.UnicodeBlock.GENERAL_PUNCTUATION;
+  }
+
   @Override
   public boolean incrementToken() throws IOException {
     while (true) {
-      if (curTermBuffer == null) {
+      if (!hasCurToken) {
         if (!input.incrementToken()) {
           return false;
         } else {
-          curTermBuffer = termAtt.buffer().clone();
-          curTermLength = termAtt.length();
-          curCodePointCount = Character.codePointCount(termAtt, 0, curTermLength);
+          boolean zh = prepareCurToken();
           curPos = 0;
           curPosInc = posIncAtt.getPositionIncrement();
           curPosLen = posLenAtt.getPositionLength();
           tokStart = offsetAtt.startOffset();
           tokEnd = offsetAtt.endOffset();
-          actualTermBuffer = Arrays.copyOf(curTermBuffer, curTermLength);
-          int actualLen = actualTermBuffer.length;
-          if (isZhTerm(actualTermBuffer)) {
-            minGram = zhMinGram > actualLen ? actualLen : zhMinGram;
+          if (zh) {
+            minGram = zhMinGram > curTermLength ? curTermLength : zhMinGram;
             maxGram = zhMaxGram;
           } else {
-            minGram = enMinGram > actualLen ? actualLen : enMinGram;
+            minGram = enMinGram > curTermLength ? curTermLength : enMinGram;
             maxGram = enMaxGram;
           }
           curGramSize = minGram;
+          hasCurToken = true;
         }
       }
 
@@ -126,17 +149,14 @@ public class MixedZhEnNGramTokenFilter extends TokenFilter {
 
       if (curPos + curGramSize <= curCodePointCount) {
         clearAttributes();
-        final int start = Character.offsetByCodePoints(curTermBuffer, 0, curTermLength, 0, curPos);
-        final int end =
-            Character.offsetByCodePoints(curTermBuffer, 0, curTermLength, start, curGramSize);
-        if (start == 1 && !filledCurToken && actualTermBuffer.length > maxGram
-            && actualTermBuffer != null && retainToken) {
-          termAtt.copyBuffer(actualTermBuffer, 0, actualTermBuffer.length);
+        final int start = curCodePointOffsets[curPos];
+        final int end = curCodePointOffsets[curPos + curGramSize];
+        if (start == 1 && !filledCurToken && curTermLength > maxGram && retainToken) {
+          termAtt.copyBuffer(curTermBuffer, 0, curTermLength);
           posIncAtt.setPositionIncrement(curPosInc);
           posLenAtt.setPositionLength(curPosLen);
           offsetAtt.setOffset(tokStart, tokEnd);
           filledCurToken = true;
-          // watch(0, curTermLength);
           return true;
         }
         termAtt.copyBuffer(curTermBuffer, start, end - start);
@@ -144,63 +164,53 @@ public class MixedZhEnNGramTokenFilter extends TokenFilter {
         curPosInc = 0;
         posLenAtt.setPositionLength(curPosLen);
         offsetAtt.setOffset(tokStart, tokEnd);
-        // watch(start, end);
         curGramSize++;
         return true;
       } else {
         filledCurToken = false;
       }
-      curTermBuffer = null;
+      hasCurToken = false;
     }
   }
 
   @Override
   public void reset() throws IOException {
     super.reset();
-    curTermBuffer = null;
-    actualTermBuffer = null;
-  }
-
-  void watch(int s, int e) {
-    System.out.println("CTB: " + new String(curTermBuffer) + "\tCTL: " + curTermLength + "\tACTB: "
-        + new String(actualTermBuffer) + "\t G: " + minGram + " ~ " + maxGram + "\tCPC: "
-        + curCodePointCount + "\tT:" + new String(Arrays.copyOfRange(curTermBuffer, s, e))
-        + "\t CG: " + curGramSize + "\tS-E: " + s + " ~ " + e + "\t RT: " + retainToken);
+    hasCurToken = false;
   }
 
-  /**
-   * 是否是中日韩字符
-   *
-   * @param c
-   * @return
-   */
-  private boolean isZhChar(char c) {
-    Character.UnicodeBlock ub = Character.UnicodeBlock.of(c);
-    return ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
-        || ub == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
-        || ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
-        || ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B
-        || ub == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
-        || ub == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS
-        || ub == Character.UnicodeBlock.GENERAL_PUNCTUATION;
-  }
 
   /**
-   * 判断是否是中文词，只要含有中文即可
-   *
-   * @param curTermBuffer
-   * @return
+   * Copy the term of the current token and resolve the offset of each code point, an unpaired
+   * surrogate is counted as one code point as {@link Character#codePointCount(CharSequence, int,
+   * int)} does. Returns whether the term contains any Chinese char.
    */
-  private boolean isZhTerm(char[] curTermBuffer) {
-    if (curTermBuffer == null || curTermBuffer.length == 0) {
-      return false;
-    }
+  private boolean prepareCurToken() {
+    final int length = termAtt.length();
+    curTermBuffer = ArrayUtil.grow(curTermBuffer, length);
+    System.arraycopy(termAtt.buffer(), 0, curTermBuffer, 0, length);
+    curTermLength = length;
+    curCodePointOffsets = ArrayUtil.grow(curCodePointOffsets, length + 1);
+    final char[] buffer = curTermBuffer;
+    final int[] offsets = curCodePointOffsets;
     boolean zh = false;
-    for (char c : curTermBuffer) {
-      if (zh = isZhChar(c)) {
-        break;
+    int count = 0;
+    int i = 0;
+    while (i < length) {
+      offsets[count++] = i;
+      char c = buffer[i++];
+      if (!zh) {
+        zh = isZhChar(c);
+      }
+      if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(buffer[i])) {
+        if (!zh) {
+          zh = isZhChar(buffer[i]);
+        }
+        i++;
       }
     }
+    offsets[count] = length;
+    curCodePointCount = count;
     return zh;
   }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * corant-suites-elastic-ext
+ *
+ * Compares the throughput of {@link MixedZhEnNGramTokenFilter} with
+ * {@link LegacyMixedZhEnNGramTokenFilter} on mixed Chinese, English and supplementary character
+ * text with the default gram sizes. Each filter chain is built once and reused across the
+ * invocations as the analyzers do, so the buffers that the new filter keeps between the tokens are
+ * measured too.
+ *
+ * @author bingo 下午3:12:47
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MixedZhEnNGramTokenFilterBenchmark {
+
+  @Param({"256", "4096"})
+  int length;
+
+  String text;
+  Tokenizer currentTokenizer;
+  TokenStream current;
+  Tokenizer legacyTokenizer;
+  TokenStream legacy;
+
+  public static void main(String... args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(MixedZhEnNGramTokenFilterBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  static String buildText(int length) {
+    Random random = new Random(length);
+    StringBuilder text = new StringBuilder(length + 16);
+    while (text.length() < length) {
+      int kind = random.nextInt(10);
+      int word = 1 + random.nextInt(8);
+      for (int i = 0; i < word; i++) {
+        if (kind < 4) {
+          text.append((char) ('a' + random.nextInt(26)));
+        } else if (kind < 8) {
+          text.append(MixedZhEnNGramTokenFilterTest.ZH_CHARS[random
+              .nextInt(MixedZhEnNGramTokenFilterTest.ZH_CHARS.length)]);
+        } else if (kind < 9) {
+          text.appendCodePoint(MixedZhEnNGramTokenFilterTest.SUPPLEMENTARY_CODE_POINTS[random
+              .nextInt(MixedZhEnNGramTokenFilterTest.SUPPLEMENTARY_CODE_POINTS.length)]);
+        } else {
+          text.append((char) ('0' + random.nextInt(10)));
+        }
+      }
+      text.append(' ');
+    }
+    return text.toString();
+  }
+
+  static void consume(Tokenizer tokenizer, TokenStream stream, String text, Blackhole bh)
+      throws IOException {
+    tokenizer.setReader(new StringReader(text));
+    CharTermAttribute termAtt = stream.getAttribute(CharTermAttribute.class);
+    stream.reset();
+    while (stream.incrementToken()) {
+      bh.consume(termAtt.length());
+    }
+    stream.end();
+    stream.close();
+  }
+
+  @Benchmark
+  public void current(Blackhole bh) throws IOException {
+    consume(currentTokenizer, current, text, bh);
+  }
+
+  @Benchmark
+  public void legacy(Blackhole bh) throws IOException {
+    consume(legacyTokenizer, legacy, text, bh);
+  }
+
+  @Setup
+  public void setup() {
+    text = buildText(length);
+    currentTokenizer = new WhitespaceTokenizer();
+    current = new MixedZhEnNGramTokenFilter(currentTokenizer,
+        MixedZhEnNGramTokenFilter.ZH_DEFAULT_MIN_NGRAM_SIZE,
+        MixedZhEnNGramTokenFilter.ZH_DEFAULT_MAX_NGRAM_SIZE,
+        MixedZhEnNGramTokenFilter.EN_DEFAULT_MIN_NGRAM_SIZE,
+        MixedZhEnNGramTokenFilter.EN_DEFAULT_MAX_NGRAM_SIZE,
+        MixedZhEnNGramTokenFilter.RETAIN_TOKEN);
+    current.addAttribute(CharTermAttribute.class);
+    legacyTokenizer = new WhitespaceTokenizer();
+    legacy = new LegacyMixedZhEnNGramTokenFilter(legacyTokenizer,
+        LegacyMixedZhEnNGramTokenFilter.ZH_DEFAULT_MIN_NGRAM_SIZE,
+        LegacyMixedZhEnNGramTokenFilter.ZH_DEFAULT_MAX_NGRAM_SIZE,
+        LegacyMixedZhEnNGramTokenFilter.EN_DEFAULT_MIN_NGRAM_SIZE,
+        LegacyMixedZhEnNGramTokenFilter.EN_DEFAULT_MAX_NGRAM_SIZE,
+        LegacyMixedZhEnNGramTokenFilter.RETAIN_TOKEN);
+    legacy.addAttribute(CharTermAttribute.class);
+  }
+}
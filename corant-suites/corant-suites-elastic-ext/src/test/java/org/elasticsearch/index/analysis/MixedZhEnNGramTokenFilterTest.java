@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.analysis.MockTokenizer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * corant-suites-elastic-ext
+ *
+ * Verify that the filter produces the same tokens as {@link LegacyMixedZhEnNGramTokenFilter} on
+ * random mixed Chinese, English and supplementary character input.
+ *
+ * @author bingo 下午4:05:12
+ *
+ */
+public class MixedZhEnNGramTokenFilterTest extends BaseTokenStreamTestCase {
+
+  static final char[] ZH_CHARS = {'中', '文', '分', '词', '、', '。',
+      '，', 'Ａ', '—', '“', '”', '龙'};
+  static final int[] SUPPLEMENTARY_CODE_POINTS = {0x20000, 0x2A6D6, 0x1F600, 0x10400};
+
+  public void testDefaultGrams() throws IOException {
+    assertSameTokens("中文分词 corant elastic 中文abc",
+        MixedZhEnNGramTokenFilter.ZH_DEFAULT_MIN_NGRAM_SIZE,
+        MixedZhEnNGramTokenFilter.ZH_DEFAULT_MAX_NGRAM_SIZE,
+        MixedZhEnNGramTokenFilter.EN_DEFAULT_MIN_NGRAM_SIZE,
+        MixedZhEnNGramTokenFilter.EN_DEFAULT_MAX_NGRAM_SIZE,
+        MixedZhEnNGramTokenFilter.RETAIN_TOKEN);
+  }
+
+  public void testRandomInput() throws IOException {
+    Random random = random();
+    for (int i = 0; i < 500 * RANDOM_MULTIPLIER; i++) {
+      int zhMinGram = TestUtil.nextInt(random, 1, 3);
+      int enMinGram = TestUtil.nextInt(random, 1, 4);
+      assertSameTokens(randomText(random), zhMinGram, zhMinGram + random.nextInt(3), enMinGram,
+          enMinGram + random.nextInt(12), random.nextBoolean());
+    }
+  }
+
+  void assertSameTokens(String text, int zhMinGram, int zhMaxGram, int enMinGram, int enMaxGram,
+      boolean retainToken) throws IOException {
+    List<String> terms = new ArrayList<>();
+    List<Integer> startOffsets = new ArrayList<>();
+    List<Integer> endOffsets = new ArrayList<>();
+    List<Integer> posIncrements = new ArrayList<>();
+    List<Integer> posLengths = new ArrayList<>();
+    try (TokenStream legacy = new LegacyMixedZhEnNGramTokenFilter(tokenizer(text), zhMinGram,
+        zhMaxGram, enMinGram, enMaxGram, retainToken)) {
+      CharTermAttribute termAtt = legacy.addAttribute(CharTermAttribute.class);
+      OffsetAttribute offsetAtt = legacy.addAttribute(OffsetAttribute.class);
+      PositionIncrementAttribute posIncAtt = legacy.addAttribute(PositionIncrementAttribute.class);
+      PositionLengthAttribute posLenAtt = legacy.addAttribute(PositionLengthAttribute.class);
+      legacy.reset();
+      while (legacy.incrementToken()) {
+        terms.add(termAtt.toString());
+        startOffsets.add(offsetAtt.startOffset());
+        endOffsets.add(offsetAtt.endOffset());
+        posIncrements.add(posIncAtt.getPositionIncrement());
+        posLengths.add(posLenAtt.getPositionLength());
+      }
+      legacy.end();
+    }
+    assertTokenStreamContents(
+        new MixedZhEnNGramTokenFilter(tokenizer(text), zhMinGram, zhMaxGram, enMinGram,
+            enMaxGram, retainToken),
+        terms.toArray(new String[terms.size()]), toArray(startOffsets), toArray(endOffsets), null,
+        toArray(posIncrements), toArray(posLengths), null);
+  }
+
+  String randomText(Random random) {
+    StringBuilder text = new StringBuilder();
+    int length = TestUtil.nextInt(random, 0, 40);
+    for (int i = 0; i < length; i++) {
+      int kind = random.nextInt(10);
+      if (kind < 2) {
+        text.append(' ');
+      } else if (kind < 5) {
+        text.append((char) TestUtil.nextInt(random, 'a', 'z'));
+      } else if (kind < 8) {
+        text.append(ZH_CHARS[random.nextInt(ZH_CHARS.length)]);
+      } else if (kind < 9) {
+        text.appendCodePoint(
+            SUPPLEMENTARY_CODE_POINTS[random.nextInt(SUPPLEMENTARY_CODE_POINTS.length)]);
+      } else {
+        text.append((char) TestUtil.nextInt(random, '0', '9'));
+      }
+    }
+    return text.toString();
+  }
+
+  int[] toArray(List<Integer> list) {
+    return list.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  Tokenizer tokenizer(String text) {
+    Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    tokenizer.setReader(new StringReader(text));
+    return tokenizer;
+  }
+}
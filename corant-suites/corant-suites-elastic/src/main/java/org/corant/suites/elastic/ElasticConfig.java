@@ -50,12 +50,22 @@ public class ElasticConfig {
   public static final String ES_ADD_PRO = ".property";
   public static final String ES_IDX_VER = ".index-version";
   public static final String ES_AUTO_UPDATE_SCHEMA = ".auto-update-schame";
+  public static final String ES_SNIFF = ".sniff";
+  public static final String ES_SEPARATE_BULK_CLIENT = ".separate-bulk-client";
+  public static final String ES_BULK_CONNECTIONS = ".bulk-connections";
+  public static final String ES_SEARCH_CONNECTIONS = ".search-connections";
+  public static final String ES_RECOVERY_CONNECTIONS = ".recovery-connections";
 
   private String clusterName;
   private String clusterNodes;
   private String documentPaths;
   private String indexVersion;
   private boolean autoUpdateSchema = false;
+  private boolean sniff = false;
+  private boolean separateBulkClient = false;
+  private Integer bulkConnections;
+  private Integer searchConnections;
+  private Integer recoveryConnections;
   private Map<String, Object> setting = new LinkedHashMap<>();
 
   private final Map<String, String> properties = new HashMap<>();
@@ -79,7 +89,9 @@ public class ElasticConfig {
     Set<String> proCfgNmes = new HashSet<>();
     cfg.setClusterName(name);
     propertieNames.forEach(pn -> {
-      if (pn.endsWith(ES_CLU_NOD)) {
+      if (pn.startsWith(proPrefix) && pn.length() > proPrefixLen) {
+        proCfgNmes.add(pn);// handle properties
+      } else if (pn.endsWith(ES_CLU_NOD)) {
         config.getOptionalValue(pn, String.class).ifPresent(cfg::setClusterNodes);
       } else if (pn.endsWith(ES_DOC_PATHS)) {
         config.getOptionalValue(pn, String.class).ifPresent(cfg::setDocumentPaths);
@@ -89,8 +101,16 @@ public class ElasticConfig {
         config.getOptionalValue(pn, String.class).ifPresent(cfg::setIndexVersion);
       } else if (pn.endsWith(ES_AUTO_UPDATE_SCHEMA)) {
         config.getOptionalValue(pn, Boolean.class).ifPresent(cfg::setAutoUpdateSchema);
-      } else if (pn.startsWith(proPrefix) && pn.length() > proPrefixLen) {
-        proCfgNmes.add(pn);// handle properties
+      } else if (pn.endsWith(ES_SNIFF)) {
+        config.getOptionalValue(pn, Boolean.class).ifPresent(cfg::setSniff);
+      } else if (pn.endsWith(ES_SEPARATE_BULK_CLIENT)) {
+        config.getOptionalValue(pn, Boolean.class).ifPresent(cfg::setSeparateBulkClient);
+      } else if (pn.endsWith(ES_BULK_CONNECTIONS)) {
+        config.getOptionalValue(pn, Integer.class).ifPresent(cfg::setBulkConnections);
+      } else if (pn.endsWith(ES_SEARCH_CONNECTIONS)) {
+        config.getOptionalValue(pn, Integer.class).ifPresent(cfg::setSearchConnections);
+      } else if (pn.endsWith(ES_RECOVERY_CONNECTIONS)) {
+        config.getOptionalValue(pn, Integer.class).ifPresent(cfg::setRecoveryConnections);
       }
     });
     doParseProperties(config, proPrefix, proCfgNmes, cfg);
@@ -132,6 +152,15 @@ public class ElasticConfig {
     return true;
   }
 
+  /**
+   * The number of the connections per node for the bulk requests, null means the default 3.
+   *
+   * @return the bulkConnections
+   */
+  public Integer getBulkConnections() {
+    return bulkConnections;
+  }
+
   /**
    *
    * @return the clusterName
@@ -172,6 +201,25 @@ public class ElasticConfig {
     return Collections.unmodifiableMap(properties);
   }
 
+  /**
+   * The number of the connections per node for the recovery requests, null means the default 2.
+   *
+   * @return the recoveryConnections
+   */
+  public Integer getRecoveryConnections() {
+    return recoveryConnections;
+  }
+
+  /**
+   * The number of the connections per node for the search and the other regular requests, null
+   * means the default 6.
+   *
+   * @return the searchConnections
+   */
+  public Integer getSearchConnections() {
+    return searchConnections;
+  }
+
   /**
    *
    * @return the setting
@@ -196,6 +244,25 @@ public class ElasticConfig {
     return autoUpdateSchema;
   }
 
+  /**
+   * Whether to use a dedicated transport client for the bulk requests, so that the heavy bulk
+   * requests do not hold up the search requests.
+   *
+   * @return the separateBulkClient
+   */
+  public boolean isSeparateBulkClient() {
+    return separateBulkClient;
+  }
+
+  /**
+   * Whether to sniff the rest of the cluster nodes and add them to the transport client.
+   *
+   * @return the sniff
+   */
+  public boolean isSniff() {
+    return sniff;
+  }
+
   protected void initSetting(String path) {
     ClassPathResource setting = Resources.tryFromClassPath(path).findFirst().orElse(null);
     if (setting != null) {
@@ -222,6 +289,14 @@ public class ElasticConfig {
     this.autoUpdateSchema = autoUpdateSchema;
   }
 
+  /**
+   *
+   * @param bulkConnections the bulkConnections to set
+   */
+  protected void setBulkConnections(Integer bulkConnections) {
+    this.bulkConnections = bulkConnections;
+  }
+
   /**
    *
    * @param clusterName the clusterName to set
@@ -254,4 +329,36 @@ public class ElasticConfig {
     this.indexVersion = indexVersion;
   }
 
+  /**
+   *
+   * @param recoveryConnections the recoveryConnections to set
+   */
+  protected void setRecoveryConnections(Integer recoveryConnections) {
+    this.recoveryConnections = recoveryConnections;
+  }
+
+  /**
+   *
+   * @param searchConnections the searchConnections to set
+   */
+  protected void setSearchConnections(Integer searchConnections) {
+    this.searchConnections = searchConnections;
+  }
+
+  /**
+   *
+   * @param separateBulkClient the separateBulkClient to set
+   */
+  protected void setSeparateBulkClient(boolean separateBulkClient) {
+    this.separateBulkClient = separateBulkClient;
+  }
+
+  /**
+   *
+   * @param sniff the sniff to set
+   */
+  protected void setSniff(boolean sniff) {
+    this.sniff = sniff;
+  }
+
 }
@@ -18,9 +18,13 @@ import static org.corant.shared.util.Assertions.shouldNotNull;
 import static org.corant.shared.util.StringUtils.split;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import javax.enterprise.event.Observes;
@@ -33,11 +37,16 @@ import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.Settings.Builder;
 import org.elasticsearch.common.transport.TransportAddress;
-import org.elasticsearch.transport.client.PreBuiltTransportClient;
 
 /**
  * corant-suites-elastic
  *
+ * Build and hold the transport clients of the clusters. If the cluster is configured with a
+ * separate bulk client, the bulk requests go through a dedicated transport client with its own
+ * connections so that the heavy bulk requests do not hold up the search requests; otherwise the
+ * bulk client is the search client. The clients are {@link MeteredTransportClient} that expose
+ * the in-flight request metrics.
+ *
  * @author bingo 上午11:56:19
  *
  */
@@ -45,7 +54,29 @@ public class ElasticExtension implements Extension {
 
   protected final Logger logger = Logger.getLogger(this.getClass().getName());
   protected final Map<String, ElasticConfig> configs = new LinkedHashMap<>();
-  protected final Map<String, TransportClient> clients = new ConcurrentHashMap<>();
+  protected final Map<String, MeteredTransportClient> clients = new ConcurrentHashMap<>();
+  protected final Map<String, MeteredTransportClient> bulkClients = new ConcurrentHashMap<>();
+
+  /**
+   * The transport client for the bulk requests, it is the search client if the cluster is not
+   * configured with a separate bulk client.
+   */
+  public TransportClient getBulkTransportClient(String clusterName) {
+    ElasticConfig cfg = shouldNotNull(configs.get(clusterName));
+    if (cfg.isSeparateBulkClient()) {
+      return bulkClients.computeIfAbsent(clusterName, cn -> produce(cn, true));
+    }
+    return getTransportClient(clusterName);
+  }
+
+  /**
+   * The transport clients that have been built, the search clients come first.
+   */
+  public List<MeteredTransportClient> getBuiltTransportClients() {
+    List<MeteredTransportClient> list = new ArrayList<>(clients.values());
+    list.addAll(bulkClients.values());
+    return list;
+  }
 
   public ElasticConfig getConfig(String clusterName) {
     return configs.get(clusterName);
@@ -56,7 +87,34 @@ public class ElasticExtension implements Extension {
   }
 
   public TransportClient getTransportClient(String clusterName) {
-    return clients.computeIfAbsent(clusterName, this::produce);
+    return clients.computeIfAbsent(clusterName, cn -> produce(cn, false));
+  }
+
+  /**
+   * Resolve the name of the cluster that the given transport client connects to. The client is
+   * looked up among the built search and bulk clients; if it is not one of them, the name of the
+   * only configured cluster is returned.
+   *
+   * @param client the transport client
+   * @return the cluster name
+   * @throws ElasticException if the cluster can not be determined
+   */
+  public String resolveClusterName(TransportClient client) {
+    if (client != null) {
+      for (Map<String, MeteredTransportClient> built : Arrays.asList(clients, bulkClients)) {
+        for (Entry<String, MeteredTransportClient> entry : built.entrySet()) {
+          if (entry.getValue() == client) {
+            return entry.getKey();
+          }
+        }
+      }
+    }
+    if (configs.size() == 1) {
+      return configs.keySet().iterator().next();
+    }
+    throw new ElasticException(
+        "Can not resolve the cluster name of the transport client from the clusters %s.",
+        String.join(", ", configs.keySet()));
   }
 
   protected void onBeforeBeanDiscovery(@Observes BeforeBeanDiscovery bbd) {
@@ -71,16 +129,30 @@ public class ElasticExtension implements Extension {
   }
 
   protected void onPreContainerStopEvent(@Observes PreContainerStopEvent e) {
-    clients.values().forEach(TransportClient::close);
+    getBuiltTransportClients().forEach(tc -> {
+      logger.info(tc::toString);
+      tc.close();
+    });
   }
 
   @SuppressWarnings("resource")
-  TransportClient produce(String clusterName) {
+  MeteredTransportClient produce(String clusterName, boolean bulk) {
     ElasticConfig cfg = shouldNotNull(configs.get(clusterName));
     Builder builder = Settings.builder();
+    builder.put("client.transport.sniff", cfg.isSniff());
+    if (cfg.getBulkConnections() != null) {
+      builder.put("transport.connections_per_node.bulk", cfg.getBulkConnections());
+    }
+    if (cfg.getSearchConnections() != null) {
+      builder.put("transport.connections_per_node.reg", cfg.getSearchConnections());
+    }
+    if (cfg.getRecoveryConnections() != null) {
+      builder.put("transport.connections_per_node.recovery", cfg.getRecoveryConnections());
+    }
     cfg.getProperties().forEach(builder::put);
     builder.put("cluster.name", cfg.getClusterName());
-    TransportClient tc = new PreBuiltTransportClient(builder.build());
+    MeteredTransportClient tc =
+        new MeteredTransportClient(bulk ? clusterName + "-bulk" : clusterName, builder.build());
     for (String clusterNode : split(cfg.getClusterNodes(), ",", true, true)) {
       final String[] hostPort = split(clusterNode, ":", true, true);
       shouldBeTrue(hostPort.length == 2, "Cluster %s node property error", clusterName);
@@ -93,8 +165,8 @@ public class ElasticExtension implements Extension {
             (Object[]) hostPort);
       }
     }
-    logger.info(() -> String.format("Built elastic transport client with cluster name is %s.",
-        clusterName));
+    logger.info(() -> String.format("Built elastic transport client %s with cluster name is %s.",
+        tc.getName(), clusterName));
     return tc;
   }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.elastic;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.transport.client.PreBuiltTransportClient;
+
+/**
+ * corant-suites-elastic
+ *
+ * The transport client that counts the requests that are in flight, completed and failed, all the
+ * requests of the client such as search, index and admin requests go through
+ * {@link #doExecute(Action, ActionRequest, ActionListener)}.
+ *
+ * @author bingo 下午8:12:31
+ *
+ */
+public class MeteredTransportClient extends PreBuiltTransportClient {
+
+  private final String name;
+  private final AtomicLong inFlightRequests = new AtomicLong();
+  private final AtomicLong peakInFlightRequests = new AtomicLong();
+  private final AtomicLong completedRequests = new AtomicLong();
+  private final AtomicLong failedRequests = new AtomicLong();
+
+  /**
+   * @param name the client name used in the logs and the metrics
+   * @param settings the client settings
+   */
+  public MeteredTransportClient(String name, Settings settings) {
+    super(settings);
+    this.name = name;
+  }
+
+  /**
+   *
+   * @return the number of the completed requests
+   */
+  public long getCompletedRequests() {
+    return completedRequests.get();
+  }
+
+  /**
+   *
+   * @return the number of the failed requests
+   */
+  public long getFailedRequests() {
+    return failedRequests.get();
+  }
+
+  /**
+   *
+   * @return the number of the requests that are in flight
+   */
+  public long getInFlightRequests() {
+    return inFlightRequests.get();
+  }
+
+  /**
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   *
+   * @return the peak number of the requests that are in flight
+   */
+  public long getPeakInFlightRequests() {
+    return peakInFlightRequests.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %d in flight, %d peak, %d completed, %d failed.", name,
+        getInFlightRequests(), getPeakInFlightRequests(), getCompletedRequests(),
+        getFailedRequests());
+  }
+
+  @Override
+  protected <Request extends ActionRequest, Response extends ActionResponse,
+      Builder extends ActionRequestBuilder<Request, Response, Builder>> void doExecute(
+      Action<Request, Response, Builder> action, Request request,
+      ActionListener<Response> listener) {
+    peakInFlightRequests.accumulateAndGet(inFlightRequests.incrementAndGet(), Math::max);
+    final AtomicBoolean done = new AtomicBoolean();
+    try {
+      super.doExecute(action, request, new ActionListener<Response>() {
+        @Override
+        public void onFailure(Exception e) {
+          release(done, false);
+          listener.onFailure(e);
+        }
+
+        @Override
+        public void onResponse(Response response) {
+          release(done, true);
+          listener.onResponse(response);
+        }
+      });
+    } catch (RuntimeException e) {
+      release(done, false);
+      throw e;
+    }
+  }
+
+  void release(AtomicBoolean done, boolean completed) {
+    if (done.compareAndSet(false, true)) {
+      inFlightRequests.decrementAndGet();
+      if (completed) {
+        completedRequests.incrementAndGet();
+      } else {
+        failedRequests.incrementAndGet();
+      }
+    }
+  }
+}
@@ -45,6 +45,14 @@ public class ElasticIndexing {
     this.schema.putAll(schema);
   }
 
+  /**
+   *
+   * @return the root mapping
+   */
+  public ElasticMapping getMapping() {
+    return mapping;
+  }
+
   public ElasticMapping getMapping(Class<?> clazz) {
     if (isEquals(mapping.getDocumentClass(), clazz)) {
       return forceCast(mapping);
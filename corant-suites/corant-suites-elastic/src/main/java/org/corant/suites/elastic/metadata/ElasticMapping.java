@@ -17,14 +17,23 @@ import static org.corant.shared.util.Assertions.shouldBeFalse;
 import static org.corant.shared.util.Assertions.shouldNotNull;
 import static org.corant.shared.util.Empties.isEmpty;
 import static org.corant.shared.util.MapUtils.asMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import org.corant.shared.exception.CorantRuntimeException;
 import org.corant.suites.elastic.metadata.resolver.ResolverUtils;
 import org.corant.suites.elastic.model.ElasticDocument;
 import org.elasticsearch.index.VersionType;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 /**
  * corant-suites-elastic
@@ -41,6 +50,8 @@ public class ElasticMapping implements Iterable<ElasticMapping> {
   private final String name;
   private final String joinFiledName;
   private final boolean root;
+  private final ObjectReader reader;
+  private final ObjectWriter writer;
 
   /**
    * @param documentClass
@@ -58,10 +69,20 @@ public class ElasticMapping implements Iterable<ElasticMapping> {
     this.name = name;
     this.versionType = versionType;
     versioned = versionType != VersionType.INTERNAL;
+    reader = ResolverUtils.ESJOM.readerFor(documentClass);
+    writer = ResolverUtils.ESSOM.writerFor(documentClass);
   }
 
   public <T> T fromMap(Map<String, Object> map) {
-    return ResolverUtils.toDocument(map, new TypeReference<T>() {});
+    if (map == null) {
+      return null;
+    }
+    try (TokenBuffer buffer = new TokenBuffer(ResolverUtils.ESJOM, false)) {
+      ResolverUtils.ESJOM.writeValue(buffer, map);
+      return reader.readValue(buffer.asParser());
+    } catch (IOException e) {
+      throw new CorantRuntimeException(e);
+    }
   }
 
   /**
@@ -140,4 +161,88 @@ public class ElasticMapping implements Iterable<ElasticMapping> {
     return convertedMap;
   }
 
+  /**
+   * Serialize the document to SMILE bytes, the join field is written into the document while
+   * streaming without converting the document to a map.
+   *
+   * @param doc the document
+   * @return the SMILE bytes
+   */
+  public byte[] toSmile(ElasticDocument doc) {
+    Map<String, Object> join = null;
+    if (getJoinFiledName() != null) {
+      join = isRoot() ? asMap("name", getName())
+          : asMap("name", getName(), "parent",
+              shouldNotNull(doc.getEsPId(), "Parent id can not null"));
+    }
+    try (ByteArrayOutputStream os = new ByteArrayOutputStream();
+        JsonGenerator generator = ResolverUtils.ESSOM.getFactory().createGenerator(os)) {
+      ObjectWriter docWriter =
+          doc.getClass() == documentClass ? writer : ResolverUtils.ESSOM.writer();
+      docWriter.writeValue(join == null ? generator
+          : new JoinFieldGenerator(generator, getJoinFiledName(), join), doc);
+      generator.flush();
+      return os.toByteArray();
+    } catch (IOException e) {
+      throw new CorantRuntimeException(e);
+    }
+  }
+
+  /**
+   * corant-suites-elastic
+   *
+   * Write the join field at the end of the root object.
+   *
+   * @author bingo 下午7:10:32
+   *
+   */
+  static class JoinFieldGenerator extends JsonGeneratorDelegate {
+
+    final String joinFieldName;
+    final Map<String, Object> join;
+
+    JoinFieldGenerator(JsonGenerator delegate, String joinFieldName, Map<String, Object> join) {
+      super(delegate, false);
+      this.joinFieldName = joinFieldName;
+      this.join = join;
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+      if (inRootObject()) {
+        delegate.writeFieldName(joinFieldName);
+        delegate.writeStartObject();
+        for (Map.Entry<String, Object> entry : join.entrySet()) {
+          delegate.writeStringField(entry.getKey(), (String) entry.getValue());
+        }
+        delegate.writeEndObject();
+      }
+      super.writeEndObject();
+    }
+
+    @Override
+    public void writeFieldName(SerializableString name) throws IOException {
+      checkFieldName(name.getValue());
+      super.writeFieldName(name);
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+      checkFieldName(name);
+      super.writeFieldName(name);
+    }
+
+    void checkFieldName(String name) {
+      if (inRootObject()) {
+        shouldBeFalse(joinFieldName.equals(name),
+            "Join field name and property name conflicts %s", joinFieldName);
+      }
+    }
+
+    boolean inRootObject() {
+      JsonStreamContext context = delegate.getOutputContext();
+      return context.inObject() && context.getParent() != null && context.getParent().inRoot();
+    }
+  }
+
 }
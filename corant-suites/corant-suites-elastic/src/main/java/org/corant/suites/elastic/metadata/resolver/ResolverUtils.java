@@ -61,6 +61,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
@@ -92,15 +93,21 @@ public class ResolverUtils {
     SIMPLIE_MODEL.addSerializer(new LocalTimeSerializer(DateTimeFormatter.ISO_LOCAL_TIME));
   }
 
-  public static final ObjectMapper ESJOM = new ObjectMapper();
-
-  static {
-    ESJOM.registerModule(new JavaTimeModule());
-    ESJOM.registerModule(SIMPLIE_MODEL);
-    ESJOM.disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
-    ESJOM.enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-    ESJOM.disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS);
-    ESJOM.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  public static final ObjectMapper ESJOM = configure(new ObjectMapper());
+
+  /**
+   * The object mapper that writes the documents to SMILE, configured the same as {@link #ESJOM}.
+   */
+  public static final ObjectMapper ESSOM = configure(new ObjectMapper(new SmileFactory()));
+
+  public static ObjectMapper configure(ObjectMapper om) {
+    om.registerModule(new JavaTimeModule());
+    om.registerModule(SIMPLIE_MODEL);
+    om.disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+    om.enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    om.disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS);
+    om.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    return om;
   }
 
   public static void deregisterSimpleType(Class<?> type) {
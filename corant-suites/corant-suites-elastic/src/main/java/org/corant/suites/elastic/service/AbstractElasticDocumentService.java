@@ -13,34 +13,55 @@
  */
 package org.corant.suites.elastic.service;
 
+import static javax.interceptor.Interceptor.Priority.PLATFORM_BEFORE;
 import static org.corant.shared.util.Assertions.shouldBeTrue;
 import static org.corant.shared.util.Assertions.shouldNotNull;
 import static org.corant.shared.util.ObjectUtils.isNotNull;
 import static org.corant.shared.util.StringUtils.isNotBlank;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import javax.annotation.Priority;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.Reception;
 import javax.inject.Inject;
+import org.corant.kernel.event.PreContainerStopEvent;
 import org.corant.shared.exception.CorantRuntimeException;
 import org.corant.suites.elastic.Elastic6Constants;
+import org.corant.suites.elastic.ElasticException;
+import org.corant.suites.elastic.ElasticExtension;
 import org.corant.suites.elastic.metadata.ElasticIndexing;
 import org.corant.suites.elastic.metadata.ElasticMapping;
 import org.corant.suites.elastic.metadata.resolver.ElasticIndexingResolver;
 import org.corant.suites.elastic.model.ElasticDocument;
+import org.corant.suites.elastic.model.ElasticVersionedDocument;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.DocWriteResponse.Result;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.query.QueryBuilder;
@@ -50,15 +71,93 @@ import org.elasticsearch.search.sort.SortBuilder;
 /**
  * corant-suites-elastic
  *
+ * The asynchronous bulk index pipeline is backed by a {@link BulkProcessor} that is created on
+ * first use. The pending documents are flushed when the count, the size or the interval reaches
+ * the configured value, the rejected items are retried with exponential backoff, the failures are
+ * reported by {@link #onBulkIndexFailed(ElasticBulkIndexFailedEvent)}. The pipeline is flushed and
+ * closed before the container stops.
+ *
+ * While an index is being rebuilt by an {@link AbstractElasticReindexService} of the same JVM, the
+ * documents written through its alias are also written to the target index, see
+ * {@link #reindexingRequests(IndexRequest)}. The copies of the single document writes are sent
+ * through the asynchronous bulk index pipeline, so the writes do not wait for them.
+ *
  * @author bingo 下午6:37:55
  *
  */
 @ApplicationScoped
 public abstract class AbstractElasticDocumentService implements ElasticDocumentService {
 
+  public static final String BI = "elastic.bulk-index";
+  public static final String BI_ACTIONS = BI + ".actions";
+  public static final String BI_SIZE = BI + ".size";
+  public static final String BI_FLUSH_INTERVAL = BI + ".flush-interval";
+  public static final String BI_CONCURRENT_REQUESTS = BI + ".concurrent-requests";
+  public static final String BI_RETRY_DELAY = BI + ".retry-delay";
+  public static final String BI_MAX_RETRIES = BI + ".max-retries";
+  public static final String BI_CLOSE_TIMEOUT = BI + ".close-timeout";
+
+  protected final Logger logger = Logger.getLogger(this.getClass().getName());
+
+  @Inject
+  protected ElasticExtension extension;
+
   @Inject
   protected ElasticIndexingResolver indexingResolver;
 
+  @Inject
+  protected Event<ElasticBulkIndexFailedEvent> bulkIndexFailedEvent;
+
+  /**
+   * The number of the documents that triggers a bulk request, -1 to disable.
+   */
+  @Inject
+  @ConfigProperty(name = BI_ACTIONS, defaultValue = "1000")
+  protected int bulkActions;
+
+  /**
+   * The size of the documents that triggers a bulk request such as 5mb, -1 to disable.
+   */
+  @Inject
+  @ConfigProperty(name = BI_SIZE, defaultValue = "5mb")
+  protected String bulkSize;
+
+  /**
+   * The interval in milliseconds that triggers a bulk request, -1 to disable.
+   */
+  @Inject
+  @ConfigProperty(name = BI_FLUSH_INTERVAL, defaultValue = "1000")
+  protected long bulkFlushInterval;
+
+  /**
+   * The number of the bulk requests that are in flight while accumulating the new documents, 0
+   * means the bulk request is executed on the thread that triggers it.
+   */
+  @Inject
+  @ConfigProperty(name = BI_CONCURRENT_REQUESTS, defaultValue = "1")
+  protected int bulkConcurrentRequests;
+
+  /**
+   * The initial delay in milliseconds of retrying the rejected items.
+   */
+  @Inject
+  @ConfigProperty(name = BI_RETRY_DELAY, defaultValue = "50")
+  protected long bulkRetryDelay;
+
+  @Inject
+  @ConfigProperty(name = BI_MAX_RETRIES, defaultValue = "8")
+  protected int bulkMaxRetries;
+
+  /**
+   * The time in milliseconds to wait for the pending bulk requests when closing.
+   */
+  @Inject
+  @ConfigProperty(name = BI_CLOSE_TIMEOUT, defaultValue = "30000")
+  protected long bulkCloseTimeout;
+
+  protected volatile BulkProcessor bulkProcessor;
+  protected volatile boolean bulkClosed = false;
+
   @Override
   public int bulkIndex(List<ElasticDocument> docList, boolean flush,
       Function<Class<? extends ElasticDocument>, ElasticIndexing> idxGetter,
@@ -69,8 +168,9 @@ public abstract class AbstractElasticDocumentService implements ElasticDocumentS
         docMap.computeIfAbsent(doc.getClass(), (c) -> new ArrayList<>()).add(doc);
       }
     }
-    BulkRequestBuilder brb = getTransportClient().prepareBulk()
+    BulkRequestBuilder brb = getBulkTransportClient().prepareBulk()
         .setRefreshPolicy(flush ? RefreshPolicy.IMMEDIATE : RefreshPolicy.NONE);
+    List<IndexRequest> copies = new ArrayList<>();
     for (Entry<Class<? extends ElasticDocument>, List<ElasticDocument>> entry : docMap.entrySet()) {
       Class<? extends ElasticDocument> docCls = entry.getKey();
       ElasticIndexing indexing = idxGetter.apply(docCls);
@@ -78,36 +178,114 @@ public abstract class AbstractElasticDocumentService implements ElasticDocumentS
       List<ElasticDocument> docs = entry.getValue();
       for (ElasticDocument doc : docs) {
         IndexRequest rb = indexRequestBuilder(indexing.getName(), doc.getEsId(), doc.getEsRId(),
-            doc.getEsPId(), mapping.toMap(doc), false, 0l, null).request();
+            doc.getEsPId(), false, 0l, null).setSource(mapping.toSmile(doc), XContentType.SMILE)
+            .request();
         brb.add(rb);
+        copies.addAll(reindexingRequests(rb));
       }
     }
+    final int size = brb.numberOfActions();
+    copies.forEach(copy -> {
+      ElasticReindexTargets.copying(copy.index());
+      brb.add(copy);
+    });
+    BulkResponse response = null;
     try {
-      return Arrays.stream(brb.execute().actionGet().getItems()).map(x -> x.isFailed() ? 0 : 1)
+      response = brb.execute().actionGet();
+      // only the documents written through the alias are counted
+      return Arrays.stream(response.getItems(), 0, size).map(x -> x.isFailed() ? 0 : 1)
           .reduce(Integer.valueOf(0), Integer::sum);
     } catch (ElasticsearchException e) {
       throw new CorantRuntimeException(e);
+    } finally {
+      if (!copies.isEmpty()) {
+        ElasticReindexTargets.copied(brb.request(), response);
+      }
+    }
+  }
+
+  @Override
+  public void bulkIndexAsync(List<ElasticDocument> docList) {
+    BulkProcessor processor = obtainBulkProcessor();
+    for (ElasticDocument doc : shouldNotNull(docList)) {
+      if (isNotNull(doc)) {
+        IndexRequest request = indexRequest(doc);
+        processor.add(request);
+        reindexingRequests(request).forEach(copy -> addReindexing(processor, copy));
+      }
     }
   }
 
   @Override
   public long deleteByQuery(String indexName, QueryBuilder qb, boolean flush) {
     try {
-      return DeleteByQueryAction.INSTANCE.newRequestBuilder(getTransportClient()).filter(qb)
-          .refresh(flush).source(indexName).get().getDeleted();
+      long deleted = DeleteByQueryAction.INSTANCE.newRequestBuilder(getTransportClient())
+          .filter(qb).refresh(flush).source(indexName).get().getDeleted();
+      Set<String> targets = ElasticReindexTargets.get(indexName);
+      if (!targets.isEmpty()) {
+        DeleteByQueryAction.INSTANCE.newRequestBuilder(getTransportClient()).filter(qb)
+            .source(targets.toArray(new String[targets.size()])).get();
+      }
+      return deleted;
     } catch (ElasticsearchException e) {
       throw new CorantRuntimeException(e);
     }
   }
 
+  @Override
+  public void flushBulkIndex() {
+    BulkProcessor processor = bulkProcessor;
+    if (processor != null) {
+      processor.flush();
+    }
+  }
+
+  /**
+   * The transport client for the bulk requests, it is the dedicated bulk client of the cluster if
+   * the cluster is configured with a separate bulk client.
+   *
+   * @see ElasticExtension#getBulkTransportClient(String)
+   */
+  public TransportClient getBulkTransportClient() {
+    return extension.getBulkTransportClient(getClusterName());
+  }
+
+  /**
+   * The name of the cluster that the transport clients connect to, it is resolved from
+   * {@link #getTransportClient()} or is the only configured cluster. Subclasses that build their
+   * own transport client for one of several clusters should override it.
+   *
+   * @see ElasticExtension#resolveClusterName(TransportClient)
+   */
+  public String getClusterName() {
+    return extension.resolveClusterName(getTransportClient());
+  }
+
   public abstract TransportClient getTransportClient();
 
+  @Override
+  public boolean index(ElasticDocument document, boolean flush) {
+    Class<?> docCls = shouldNotNull(document).getClass();
+    try {
+      IndexRequestBuilder rb = indexRequestBuilder(shouldNotNull(resolveIndexing(docCls)),
+          shouldNotNull(resolveMapping(docCls)), document, flush);
+      boolean indexed = rb.get().getResult() != Result.NOOP;
+      indexReindexing(rb.request());
+      return indexed;
+    } catch (ElasticsearchException e) {
+      throw new CorantRuntimeException(e);
+    }
+  }
+
   @Override
   public boolean index(String indexName, String id, String routingId, String parentId,
       Map<?, ?> obj, boolean flush, long version, VersionType versionType) {
     try {
-      return indexRequestBuilder(indexName, id, routingId, parentId, obj, flush, version,
-          versionType).get().getResult() != Result.NOOP;
+      IndexRequestBuilder rb = indexRequestBuilder(indexName, id, routingId, parentId, obj, flush,
+          version, versionType);
+      boolean indexed = rb.get().getResult() != Result.NOOP;
+      indexReindexing(rb.request());
+      return indexed;
     } catch (ElasticsearchException e) {
       throw new CorantRuntimeException(e);
     }
@@ -141,23 +319,182 @@ public abstract class AbstractElasticDocumentService implements ElasticDocumentS
     return new ArrayList<>();
   }
 
+  /**
+   * Send the copy of a document to a target index that is being rebuilt through the bulk
+   * processor, the copy is counted until its bulk request is completed.
+   */
+  protected void addReindexing(BulkProcessor processor, IndexRequest copy) {
+    ElasticReindexTargets.copying(copy.index());
+    processor.add(copy);
+  }
+
+  protected BulkProcessor.Listener bulkListener() {
+    return new BulkProcessor.Listener() {
+
+      @Override
+      public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+        ElasticReindexTargets.copied(request, response);
+        if (response.hasFailures()) {
+          onBulkIndexFailed(new ElasticBulkIndexFailedEvent(request, Arrays
+              .stream(response.getItems()).filter(x -> x.isFailed()).collect(Collectors.toList()),
+              null));
+        }
+      }
+
+      @Override
+      public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+        ElasticReindexTargets.copied(request, null);
+        onBulkIndexFailed(new ElasticBulkIndexFailedEvent(request, null, failure));
+      }
+
+      @Override
+      public void beforeBulk(long executionId, BulkRequest request) {
+        // NOOP
+      }
+    };
+  }
+
+  protected BulkProcessor buildBulkProcessor() {
+    return BulkProcessor.builder(getBulkTransportClient(), bulkListener())
+        .setBulkActions(bulkActions)
+        .setBulkSize(ByteSizeValue.parseBytesSizeValue(bulkSize, BI_SIZE))
+        .setFlushInterval(
+            bulkFlushInterval > 0 ? TimeValue.timeValueMillis(bulkFlushInterval) : null)
+        .setConcurrentRequests(bulkConcurrentRequests)
+        .setBackoffPolicy(BackoffPolicy
+            .exponentialBackoff(TimeValue.timeValueMillis(bulkRetryDelay), bulkMaxRetries))
+        .build();
+  }
+
+  /**
+   * Send the copies of the index request to the target indices that are being rebuilt through the
+   * asynchronous bulk index pipeline, the copies are not waited for.
+   */
+  protected void indexReindexing(IndexRequest request) {
+    List<IndexRequest> copies = reindexingRequests(request);
+    if (!copies.isEmpty()) {
+      BulkProcessor processor = obtainBulkProcessor();
+      copies.forEach(copy -> addReindexing(processor, copy));
+    }
+  }
+
+  protected IndexRequest indexRequest(ElasticDocument document) {
+    Class<?> docCls = document.getClass();
+    return indexRequestBuilder(shouldNotNull(resolveIndexing(docCls)),
+        shouldNotNull(resolveMapping(docCls)), document, false).request();
+  }
+
+  /**
+   * Build the index request of the document, the document is serialized to SMILE directly.
+   */
+  protected IndexRequestBuilder indexRequestBuilder(ElasticIndexing indexing,
+      ElasticMapping mapping, ElasticDocument document, boolean flush) {
+    long version = 0L;
+    VersionType versionType = null;
+    if (document instanceof ElasticVersionedDocument) {
+      version = ElasticVersionedDocument.class.cast(document).getEsVn();
+      versionType = mapping.getVersionType();
+    }
+    return indexRequestBuilder(indexing.getName(), document.getEsId(), document.getEsRId(),
+        document.getEsPId(), flush, version, versionType)
+            .setSource(mapping.toSmile(document), XContentType.SMILE);
+  }
+
+  @SuppressWarnings("unchecked")
   protected IndexRequestBuilder indexRequestBuilder(String indexName, String id, String routingId,
       String parentId, Map<?, ?> obj, boolean flush, long version, VersionType versionType) {
+    return indexRequestBuilder(indexName, id, routingId, parentId, flush, version, versionType)
+        .setSource((Map<String, ?>) obj, XContentType.SMILE);
+  }
+
+  protected IndexRequestBuilder indexRequestBuilder(String indexName, String id, String routingId,
+      String parentId, boolean flush, long version, VersionType versionType) {
     IndexRequestBuilder rb =
         getTransportClient().prepareIndex(indexName, Elastic6Constants.TYP_NME, id)
-            .setRefreshPolicy(flush ? RefreshPolicy.IMMEDIATE : RefreshPolicy.NONE)
-            .setSource(XContentType.SMILE, obj);
+            .setRefreshPolicy(flush ? RefreshPolicy.IMMEDIATE : RefreshPolicy.NONE);
     if (isNotBlank(routingId)) {
       rb.setRouting(routingId);
     }
     if (isNotBlank(parentId)) {
       rb.setParent(parentId);
     }
-    if (versionType != VersionType.INTERNAL) {
+    if (versionType != null && versionType != VersionType.INTERNAL) {
       shouldBeTrue(version > 0);
       rb.setVersion(version);
       rb.setVersionType(versionType);
     }
     return rb;
   }
+
+  protected BulkProcessor obtainBulkProcessor() {
+    BulkProcessor processor = bulkProcessor;
+    if (processor == null) {
+      synchronized (this) {
+        if (bulkClosed) {
+          throw new ElasticException("The bulk index pipeline has been closed!");
+        }
+        if ((processor = bulkProcessor) == null) {
+          bulkProcessor = processor = buildBulkProcessor();
+          ElasticReindexTargets.addProcessor(processor);
+        }
+      }
+    }
+    return processor;
+  }
+
+  /**
+   * Log the failures and fire the event, subclasses may override it to handle the failures.
+   */
+  protected void onBulkIndexFailed(ElasticBulkIndexFailedEvent event) {
+    if (event.isBulkFailed()) {
+      logger.log(Level.WARNING, event.getFailure(), () -> String
+          .format("Bulk index request of %d items failed.", event.getRequest().numberOfActions()));
+    } else {
+      logger.warning(() -> String.format("Bulk index request has %d failed items, the first is %s.",
+          event.getFailedItems().size(), event.getFailedItems().get(0).getFailureMessage()));
+    }
+    bulkIndexFailedEvent.fire(event);
+  }
+
+  /**
+   * Flush the pending documents and wait for the bulk requests before the transport clients are
+   * closed.
+   */
+  protected synchronized void onPreContainerStopEvent(
+      @Observes(notifyObserver = Reception.IF_EXISTS) @Priority(PLATFORM_BEFORE)
+      PreContainerStopEvent e) {
+    bulkClosed = true;
+    BulkProcessor processor = bulkProcessor;
+    bulkProcessor = null;
+    if (processor != null) {
+      ElasticReindexTargets.removeProcessor(processor);
+      try {
+        if (!processor.awaitClose(bulkCloseTimeout, TimeUnit.MILLISECONDS)) {
+          logger.warning(() -> "Bulk index requests were not completed before closing.");
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Returns the copies of the index request for the target indices that are being rebuilt from the
+   * alias of the request, or an empty list if the alias is not being rebuilt. The copies are not
+   * refreshed, the target index is refreshed before the alias is switched to it.
+   */
+  protected List<IndexRequest> reindexingRequests(IndexRequest request) {
+    Set<String> targets = ElasticReindexTargets.get(request.index());
+    if (targets.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<IndexRequest> copies = new ArrayList<>(targets.size());
+    for (String target : targets) {
+      copies.add(new IndexRequest(target, request.type(), request.id())
+          .source(request.source(), request.getContentType()).routing(request.routing())
+          .parent(request.parent()).version(request.version())
+          .versionType(request.versionType()));
+    }
+    return copies;
+  }
 }
@@ -0,0 +1,651 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.elastic.service;
+
+import static org.corant.shared.util.Assertions.shouldNotNull;
+import static org.corant.shared.util.StringUtils.isNotBlank;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.corant.suites.elastic.Elastic6Constants;
+import org.corant.suites.elastic.ElasticException;
+import org.corant.suites.elastic.ElasticExtension;
+import org.corant.suites.elastic.metadata.ElasticIndexing;
+import org.corant.suites.elastic.metadata.ElasticMapping;
+import org.corant.suites.elastic.metadata.ElasticSetting;
+import org.corant.suites.elastic.model.ElasticDocument;
+import org.corant.suites.elastic.model.ElasticVersionedDocument;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.mapper.ParentFieldMapper;
+import org.elasticsearch.index.mapper.RoutingFieldMapper;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.search.slice.SliceBuilder;
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+
+/**
+ * corant-suites-elastic
+ *
+ * The reindex is done in four steps:
+ * <ul>
+ * <li>Create the target index named by the alias with a time suffix, with the latest settings and
+ * schema, without replicas and with the refresh disabled.</li>
+ * <li>Copy the documents, either with the sliced scrolls over the source indices in parallel, or
+ * from the given document stream with the bounded asynchronous bulk requests.</li>
+ * <li>Restore the replicas and the refresh interval, refresh the target index and wait for the
+ * green status.</li>
+ * <li>Block the writes on the source indices ({@code index.blocks.write}), drain the copies of the
+ * live writes, run the catch-up pass if required, then switch the alias from the source indices to
+ * the target index in one atomic request and lift the block. If the source is a concrete index that
+ * has the alias name, it is removed in the same request because an alias can not have the name of
+ * an index.</li>
+ * </ul>
+ * If anything fails the target index is deleted, the block is lifted and the alias is left
+ * untouched.
+ *
+ * <p>
+ * The documents written through the alias while copying still go to the source indices. To keep
+ * them, the target index is registered before the copy starts and the
+ * {@link AbstractElasticDocumentService} of the same JVM writes such documents to the target index
+ * too, the sources are refreshed after the registration so that the scrolls see the documents
+ * written before. The copied documents are created only if absent (or by the external version if
+ * the mapping is versioned), so the copy never overwrites a newer document, and the conflicts are
+ * not counted as failures.
+ *
+ * <p>
+ * The writes of other JVMs or other clients are not copied. Unless {@link #singleWriter} confirms
+ * that this JVM is the only writer, the catch-up pass copies the write blocked sources again and
+ * overwrites the target documents, so the target has every source document as it was when the
+ * writes were blocked. The writes through the alias fail with a cluster block error while the
+ * catch-up pass runs, its time is about the time of the copy. For the reindex from a document
+ * stream there is nothing to catch up from, so the sources are write blocked during the whole copy
+ * unless this JVM is the only writer. A document deleted by other writers during the copy may still
+ * remain in the target index.
+ *
+ * @author bingo 下午7:45:36
+ *
+ */
+@ApplicationScoped
+public abstract class AbstractElasticReindexService implements ElasticReindexService {
+
+  public static final String RI = "elastic.reindex";
+  public static final String RI_SLICES = RI + ".slices";
+  public static final String RI_BATCH_SIZE = RI + ".batch-size";
+  public static final String RI_CONCURRENCY = RI + ".concurrency";
+  public static final String RI_SCROLL_KEEP_ALIVE = RI + ".scroll-keep-alive";
+  public static final String RI_HEALTH_TIMEOUT = RI + ".health-timeout";
+  public static final String RI_MAX_FAILURES = RI + ".max-failures";
+  public static final String RI_DELETE_OLD_INDICES = RI + ".delete-old-indices";
+  public static final String RI_SINGLE_WRITER = RI + ".single-writer";
+  public static final String RI_DRAIN_TIMEOUT = RI + ".drain-timeout";
+
+  static final String NUMBER_OF_SHARDS = "index.number_of_shards";
+  static final String NUMBER_OF_REPLICAS = "index.number_of_replicas";
+  static final String REFRESH_INTERVAL = "index.refresh_interval";
+  static final String BLOCKS_WRITE = "index.blocks.write";
+  static final DateTimeFormatter SUFFIX_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+  protected final Logger logger = Logger.getLogger(this.getClass().getName());
+
+  @Inject
+  protected ElasticExtension extension;
+
+  /**
+   * The number of the scroll slices, 0 means the number of the primary shards of the sources.
+   */
+  @Inject
+  @ConfigProperty(name = RI_SLICES, defaultValue = "0")
+  protected int slices;
+
+  @Inject
+  @ConfigProperty(name = RI_BATCH_SIZE, defaultValue = "1000")
+  protected int batchSize;
+
+  /**
+   * The number of the bulk requests that are in flight.
+   */
+  @Inject
+  @ConfigProperty(name = RI_CONCURRENCY, defaultValue = "4")
+  protected int concurrency;
+
+  @Inject
+  @ConfigProperty(name = RI_SCROLL_KEEP_ALIVE, defaultValue = "300000")
+  protected long scrollKeepAlive;
+
+  /**
+   * The time in milliseconds to wait for the green status of the target index before switching
+   * the alias.
+   */
+  @Inject
+  @ConfigProperty(name = RI_HEALTH_TIMEOUT, defaultValue = "600000")
+  protected long healthTimeout;
+
+  /**
+   * The number of the failed documents that are tolerated, -1 means unlimited.
+   */
+  @Inject
+  @ConfigProperty(name = RI_MAX_FAILURES, defaultValue = "0")
+  protected long maxFailures;
+
+  @Inject
+  @ConfigProperty(name = RI_DELETE_OLD_INDICES, defaultValue = "false")
+  protected boolean deleteOldIndices;
+
+  /**
+   * Confirm that all the writes to the indices go through the document services of this JVM, so
+   * the writes are only blocked while switching the alias and the catch-up pass is skipped.
+   */
+  @Inject
+  @ConfigProperty(name = RI_SINGLE_WRITER, defaultValue = "false")
+  protected boolean singleWriter;
+
+  /**
+   * The time in milliseconds to wait for the pending copies of the live writes before switching
+   * the alias.
+   */
+  @Inject
+  @ConfigProperty(name = RI_DRAIN_TIMEOUT, defaultValue = "30000")
+  protected long drainTimeout;
+
+  /**
+   * The transport client for the bulk requests, it is the dedicated bulk client of the cluster if
+   * the cluster is configured with a separate bulk client.
+   *
+   * @see ElasticExtension#getBulkTransportClient(String)
+   */
+  public TransportClient getBulkTransportClient() {
+    return extension.getBulkTransportClient(getClusterName());
+  }
+
+  /**
+   * The name of the cluster that the transport clients connect to, it is resolved from
+   * {@link #getTransportClient()} or is the only configured cluster. Subclasses that build their
+   * own transport client for one of several clusters should override it.
+   *
+   * @see ElasticExtension#resolveClusterName(TransportClient)
+   */
+  public String getClusterName() {
+    return extension.resolveClusterName(getTransportClient());
+  }
+
+  public abstract TransportClient getTransportClient();
+
+  @Override
+  public ElasticReindexProgress reindex(ElasticIndexing indexing,
+      Consumer<ElasticReindexProgress> listener) {
+    final String alias = shouldNotNull(indexing).getName();
+    final String[] sources = resolveSourceIndices(alias);
+    final Settings settings = resolveSettings(indexing);
+    final String target = createTargetIndex(indexing, settings);
+    ElasticReindexTargets.register(alias, target);
+    boolean blocked = false;
+    boolean switched = false;
+    try {
+      if (sources.length > 0) {
+        getTransportClient().admin().indices().prepareRefresh(sources).get();
+      }
+      final ElasticReindexProgress progress =
+          new ElasticReindexProgress(alias, target, countDocuments(sources), listener);
+      try {
+        if (sources.length > 0) {
+          copyIndices(indexing, sources, progress, false);
+        }
+        restoreTarget(settings, progress);
+        blocked = sources.length > 0;
+        blockWrites(sources);
+        ElasticReindexTargets.deregister(alias, target);
+        drainCopies(progress);
+        if (!singleWriter && sources.length > 0) {
+          getTransportClient().admin().indices().prepareRefresh(sources).get();
+          copyIndices(indexing, sources, progress, true);
+        }
+        switchAlias(sources, progress);
+        switched = true;
+        return progress;
+      } catch (RuntimeException e) {
+        throw abortReindex(progress, e);
+      }
+    } finally {
+      ElasticReindexTargets.deregister(alias, target);
+      ElasticReindexTargets.discard(target);
+      if (blocked) {
+        unblockWrites(sources, alias, switched);
+      }
+    }
+  }
+
+  @Override
+  public ElasticReindexProgress reindex(ElasticIndexing indexing,
+      Stream<? extends ElasticDocument> documents, Consumer<ElasticReindexProgress> listener) {
+    final String alias = shouldNotNull(indexing).getName();
+    final String[] sources = resolveSourceIndices(alias);
+    final Settings settings = resolveSettings(indexing);
+    final String target = createTargetIndex(indexing, settings);
+    final ElasticReindexProgress progress = new ElasticReindexProgress(alias, target, -1, listener);
+    ElasticReindexTargets.register(alias, target);
+    boolean blocked = false;
+    boolean switched = false;
+    try (Stream<? extends ElasticDocument> docs = shouldNotNull(documents)) {
+      if (!singleWriter) {
+        // the writes of other writers can not be caught up from the stream
+        blocked = sources.length > 0;
+        blockWrites(sources);
+      }
+      copyDocuments(indexing, docs, progress);
+      restoreTarget(settings, progress);
+      if (singleWriter) {
+        blocked = sources.length > 0;
+        blockWrites(sources);
+      }
+      ElasticReindexTargets.deregister(alias, target);
+      drainCopies(progress);
+      switchAlias(sources, progress);
+      switched = true;
+      return progress;
+    } catch (RuntimeException e) {
+      throw abortReindex(progress, e);
+    } finally {
+      ElasticReindexTargets.deregister(alias, target);
+      ElasticReindexTargets.discard(target);
+      if (blocked) {
+        unblockWrites(sources, alias, switched);
+      }
+    }
+  }
+
+  protected ElasticException abortReindex(ElasticReindexProgress progress, RuntimeException e) {
+    try {
+      getTransportClient().admin().indices().prepareDelete(progress.getTargetIndex()).get();
+    } catch (RuntimeException ex) {
+      e.addSuppressed(ex);
+    }
+    logger.log(Level.WARNING, e, () -> String.format("Reindex failed, %s", progress));
+    return e instanceof ElasticException ? (ElasticException) e
+        : new ElasticException(e, "Reindex %s -> %s failed.", progress.getAlias(),
+            progress.getTargetIndex());
+  }
+
+  protected void checkFailures(ElasticReindexProgress progress) {
+    if (maxFailures >= 0 && progress.getFailed() > maxFailures) {
+      throw new ElasticException("Reindex %s -> %s has %d failed documents, more than %d.",
+          progress.getAlias(), progress.getTargetIndex(), progress.getFailed(), maxFailures);
+    }
+  }
+
+  /**
+   * Block the writes on the source indices.
+   */
+  protected void blockWrites(String[] sources) {
+    if (sources.length == 0) {
+      return;
+    }
+    if (!getTransportClient().admin().indices().prepareUpdateSettings(sources)
+        .setSettings(Settings.builder().put(BLOCKS_WRITE, true)).get().isAcknowledged()) {
+      throw new ElasticException("Can not block the writes on %s.", String.join(",", sources));
+    }
+    logger.info(() -> String.format("Blocked the writes on %s.", String.join(",", sources)));
+  }
+
+  /**
+   * Wait for the copies of the live writes that are still pending, the failed copies are counted
+   * as the failed documents.
+   */
+  protected void drainCopies(ElasticReindexProgress progress) {
+    progress.failed(ElasticReindexTargets.drain(progress.getTargetIndex(), drainTimeout));
+    checkFailures(progress);
+  }
+
+  /**
+   * Restore the settings of the target index, refresh it and wait for the green status.
+   */
+  protected void restoreTarget(Settings settings, ElasticReindexProgress progress) {
+    final String target = progress.getTargetIndex();
+    final TransportClient client = getTransportClient();
+    final IndicesAdminClient indices = client.admin().indices();
+    Settings.Builder restore = Settings.builder().put(NUMBER_OF_REPLICAS,
+        settings.get(NUMBER_OF_REPLICAS, String.valueOf(ElasticSetting.DFLT_NUM_OF_REPS)));
+    String refreshInterval = settings.get(REFRESH_INTERVAL);
+    if (refreshInterval == null) {
+      restore.putNull(REFRESH_INTERVAL);
+    } else {
+      restore.put(REFRESH_INTERVAL, refreshInterval);
+    }
+    indices.prepareUpdateSettings(target).setSettings(restore).get();
+    indices.prepareRefresh(target).get();
+    ClusterHealthResponse health = client.admin().cluster().prepareHealth(target)
+        .setWaitForGreenStatus().setTimeout(TimeValue.timeValueMillis(healthTimeout)).get();
+    if (health.isTimedOut()) {
+      logger.warning(() -> String.format("The index %s is %s, not green within %d ms.", target,
+          health.getStatus(), healthTimeout));
+    }
+  }
+
+  /**
+   * Refresh the target index and switch the alias from the source indices to it.
+   */
+  protected void switchAlias(String[] sources, ElasticReindexProgress progress) {
+    final String alias = progress.getAlias();
+    final String target = progress.getTargetIndex();
+    final IndicesAdminClient indices = getTransportClient().admin().indices();
+    indices.prepareRefresh(target).get();
+    IndicesAliasesRequestBuilder aliases = indices.prepareAliases();
+    List<String> olds = new ArrayList<>();
+    for (String source : sources) {
+      if (source.equals(alias)) {
+        aliases.addAliasAction(AliasActions.removeIndex().index(source));
+      } else {
+        aliases.removeAlias(source, alias);
+        olds.add(source);
+      }
+    }
+    aliases.addAlias(target, alias);
+    if (!aliases.get().isAcknowledged()) {
+      throw new ElasticException("Can not switch the alias %s to %s.", alias, target);
+    }
+    progress.finished();
+    logger.info(progress::toString);
+    if (deleteOldIndices && !olds.isEmpty()) {
+      try {
+        indices.prepareDelete(olds.toArray(new String[olds.size()])).get();
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, e, () -> String.format("Can not delete the old indices %s.",
+            String.join(",", olds)));
+      }
+    }
+  }
+
+  /**
+   * Copy the documents from the stream, the bulk requests are executed asynchronously and at most
+   * {@link #concurrency} bulk requests are in flight.
+   */
+  protected void copyDocuments(ElasticIndexing indexing,
+      Stream<? extends ElasticDocument> documents, ElasticReindexProgress progress) {
+    final int permits = Math.max(1, concurrency);
+    final Semaphore semaphore = new Semaphore(permits);
+    final AtomicReference<Exception> failure = new AtomicReference<>();
+    final Iterator<? extends ElasticDocument> it = documents.iterator();
+    BulkRequest bulk = new BulkRequest();
+    try {
+      while (it.hasNext() && failure.get() == null) {
+        ElasticDocument doc = it.next();
+        if (doc != null) {
+          bulk.add(indexRequest(indexing, progress.getTargetIndex(), doc));
+          if (bulk.numberOfActions() >= batchSize) {
+            submitBulk(bulk, semaphore, failure, progress);
+            bulk = new BulkRequest();
+          }
+        }
+      }
+      if (bulk.numberOfActions() > 0 && failure.get() == null) {
+        submitBulk(bulk, semaphore, failure, progress);
+      }
+      semaphore.acquire(permits);
+      semaphore.release(permits);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ElasticException(e);
+    }
+    if (failure.get() != null) {
+      throw failure.get() instanceof ElasticException ? (ElasticException) failure.get()
+          : new ElasticException(failure.get());
+    }
+  }
+
+  /**
+   * Copy the documents from the source indices with the sliced scrolls, each slice is scrolled by
+   * a worker thread and each page is indexed with a bulk request. The catch-up pass overwrites the
+   * target documents that are not versioned.
+   */
+  protected void copyIndices(ElasticIndexing indexing, String[] sources,
+      ElasticReindexProgress progress, boolean catchUp) {
+    final int max = slices > 0 ? slices : resolvePrimaryShards(sources);
+    final int size = Math.max(1, Math.min(max, concurrency));
+    final VersionType versionType = indexing.getMapping().isVersioned()
+        ? indexing.getMapping().getVersionType()
+        : null;
+    final AtomicInteger threadNumber = new AtomicInteger(1);
+    final ExecutorService es = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread t = new Thread(r, "elastic-reindex-thread-" + threadNumber.getAndIncrement());
+          t.setDaemon(true);
+          return t;
+        });
+    try {
+      List<Future<?>> futures = new ArrayList<>(max);
+      for (int id = 0; id < max; id++) {
+        final int sliceId = id;
+        futures.add(
+            es.submit(() -> copySlice(sources, sliceId, max, versionType, progress, catchUp)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ElasticException(e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof ElasticException ? (ElasticException) e.getCause()
+          : new ElasticException(e.getCause());
+    } finally {
+      es.shutdownNow();
+    }
+  }
+
+  protected void copySlice(String[] sources, int id, int max, VersionType versionType,
+      ElasticReindexProgress progress, boolean catchUp) {
+    final TransportClient client = getTransportClient();
+    final TimeValue keepAlive = TimeValue.timeValueMillis(scrollKeepAlive);
+    SearchRequestBuilder srb = client.prepareSearch(sources).setScroll(keepAlive)
+        .setSize(batchSize).addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC)
+        .setVersion(versionType != null);
+    if (max > 1) {
+      srb.slice(new SliceBuilder(id, max));
+    }
+    SearchResponse response = srb.get();
+    String scrollId = response.getScrollId();
+    try {
+      while (response.getHits().getHits().length > 0) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new ElasticException("Reindex %s -> %s was interrupted.", progress.getAlias(),
+              progress.getTargetIndex());
+        }
+        BulkRequestBuilder brb = getBulkTransportClient().prepareBulk();
+        for (SearchHit hit : response.getHits().getHits()) {
+          brb.add(indexRequest(progress.getTargetIndex(), hit, versionType, catchUp));
+        }
+        progress.completed(brb.get());
+        checkFailures(progress);
+        response = client.prepareSearchScroll(scrollId).setScroll(keepAlive).get();
+        scrollId = response.getScrollId();
+      }
+    } finally {
+      if (scrollId != null) {
+        client.prepareClearScroll().addScrollId(scrollId).execute();
+      }
+    }
+  }
+
+  protected long countDocuments(String[] sources) {
+    if (sources.length == 0) {
+      return 0;
+    }
+    return getTransportClient().prepareSearch(sources).setSize(0).get().getHits().getTotalHits();
+  }
+
+  /**
+   * Create the target index without replicas and with the refresh disabled.
+   */
+  protected String createTargetIndex(ElasticIndexing indexing, Settings settings) {
+    String target = indexing.getName() + "_" + LocalDateTime.now().format(SUFFIX_FORMATTER);
+    Settings.Builder builder = Settings.builder().put(settings).put(NUMBER_OF_REPLICAS, 0)
+        .put(REFRESH_INTERVAL, "-1");
+    if (!getTransportClient().admin().indices().prepareCreate(target).setSettings(builder)
+        .addMapping(Elastic6Constants.TYP_NME, indexing.getSchema()).get().isAcknowledged()) {
+      throw new ElasticException("Can not create the index %s.", target);
+    }
+    return target;
+  }
+
+  protected IndexRequest indexRequest(ElasticIndexing indexing, String target,
+      ElasticDocument document) {
+    ElasticMapping mapping = shouldNotNull(indexing.getMapping(document.getClass()));
+    IndexRequest request = new IndexRequest(target, Elastic6Constants.TYP_NME, document.getEsId())
+        .source(mapping.toSmile(document), XContentType.SMILE);
+    if (isNotBlank(document.getEsRId())) {
+      request.routing(document.getEsRId());
+    }
+    if (isNotBlank(document.getEsPId())) {
+      request.parent(document.getEsPId());
+    }
+    if (document instanceof ElasticVersionedDocument && mapping.isVersioned()) {
+      request.version(ElasticVersionedDocument.class.cast(document).getEsVn())
+          .versionType(mapping.getVersionType());
+    } else {
+      request.opType(OpType.CREATE);
+    }
+    return request;
+  }
+
+  /**
+   * Copy the hit with its raw source, the source is not parsed. The hit is created only if absent
+   * unless it is versioned or it is overwritten by the catch-up pass.
+   */
+  @SuppressWarnings("deprecation")
+  protected IndexRequest indexRequest(String target, SearchHit hit, VersionType versionType,
+      boolean overwrite) {
+    BytesReference source = hit.getSourceRef();
+    IndexRequest request = new IndexRequest(target, Elastic6Constants.TYP_NME, hit.getId())
+        .source(source, XContentHelper.xContentType(source));
+    DocumentField routing = hit.field(RoutingFieldMapper.NAME);
+    if (routing != null && routing.getValue() != null) {
+      request.routing(routing.getValue().toString());
+    }
+    DocumentField parent = hit.field(ParentFieldMapper.NAME);
+    if (parent != null && parent.getValue() != null) {
+      request.parent(parent.getValue().toString());
+    }
+    if (versionType != null && hit.getVersion() > 0) {
+      request.version(hit.getVersion()).versionType(versionType);
+    } else if (!overwrite) {
+      request.opType(OpType.CREATE);
+    }
+    return request;
+  }
+
+  protected int resolvePrimaryShards(String[] sources) {
+    int shards = 0;
+    for (ObjectObjectCursor<String, Settings> cursor : getTransportClient().admin().indices()
+        .prepareGetSettings(sources).get().getIndexToSettings()) {
+      shards += cursor.value.getAsInt(NUMBER_OF_SHARDS, 1);
+    }
+    return Math.max(1, shards);
+  }
+
+  protected Settings resolveSettings(ElasticIndexing indexing) {
+    return Settings.builder().loadFromMap(indexing.getSetting().getSetting())
+        .normalizePrefix("index.").build();
+  }
+
+  /**
+   * Resolve the indices that the alias points to, if the alias is a concrete index returns itself.
+   */
+  protected String[] resolveSourceIndices(String alias) {
+    IndicesAdminClient indices = getTransportClient().admin().indices();
+    List<String> sources = new ArrayList<>();
+    if (indices.prepareAliasesExist(alias).get().exists()) {
+      for (ObjectObjectCursor<String, List<AliasMetaData>> cursor : indices
+          .prepareGetAliases(alias).get().getAliases()) {
+        if (!cursor.value.isEmpty()) {
+          sources.add(cursor.key);
+        }
+      }
+    } else if (indices.prepareExists(alias).get().isExists()) {
+      sources.add(alias);
+    }
+    return sources.toArray(new String[sources.size()]);
+  }
+
+  /**
+   * Lift the write block of the source indices that still exist, the source that has the alias
+   * name is removed when the alias is switched, the old indices may be deleted too.
+   */
+  protected void unblockWrites(String[] sources, String alias, boolean switched) {
+    String[] indices = Arrays.stream(sources)
+        .filter(source -> !switched || !deleteOldIndices && !source.equals(alias))
+        .toArray(String[]::new);
+    if (indices.length == 0) {
+      return;
+    }
+    try {
+      getTransportClient().admin().indices().prepareUpdateSettings(indices)
+          .setSettings(Settings.builder().putNull(BLOCKS_WRITE)).get();
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, e, () -> String.format("Can not lift the write block of %s.",
+          String.join(",", indices)));
+    }
+  }
+
+  void submitBulk(BulkRequest bulk, Semaphore semaphore, AtomicReference<Exception> failure,
+      ElasticReindexProgress progress) throws InterruptedException {
+    semaphore.acquire();
+    getBulkTransportClient().bulk(bulk, ActionListener.wrap(response -> {
+      progress.completed(response);
+      checkFailures(progress);
+      semaphore.release();
+    }, e -> {
+      failure.compareAndSet(null, e);
+      semaphore.release();
+    }));
+  }
+}
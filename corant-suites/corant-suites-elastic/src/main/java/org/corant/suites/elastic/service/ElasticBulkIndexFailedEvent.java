@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.elastic.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+
+/**
+ * corant-suites-elastic
+ *
+ * Fired when an asynchronous bulk index request is completed with failures. If the whole bulk
+ * request failed the failure is the cause and the failed items is empty, otherwise the failed
+ * items are the items that still failed after the retries.
+ *
+ * @author bingo 下午6:21:07
+ *
+ */
+public class ElasticBulkIndexFailedEvent {
+
+  private final BulkRequest request;
+  private final List<BulkItemResponse> failedItems;
+  private final Throwable failure;
+
+  public ElasticBulkIndexFailedEvent(BulkRequest request, List<BulkItemResponse> failedItems,
+      Throwable failure) {
+    super();
+    this.request = request;
+    this.failedItems = failedItems == null ? new ArrayList<>() : failedItems;
+    this.failure = failure;
+  }
+
+  /**
+   *
+   * @return the failed items
+   */
+  public List<BulkItemResponse> getFailedItems() {
+    return Collections.unmodifiableList(failedItems);
+  }
+
+  /**
+   *
+   * @return the failure of the whole bulk request, may be null
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   *
+   * @return the bulk request
+   */
+  public BulkRequest getRequest() {
+    return request;
+  }
+
+  public boolean isBulkFailed() {
+    return failure != null;
+  }
+
+}
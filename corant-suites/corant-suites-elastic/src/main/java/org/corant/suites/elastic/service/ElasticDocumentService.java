@@ -17,6 +17,7 @@ import static org.corant.shared.util.Assertions.shouldNotNull;
 import static org.corant.shared.util.Empties.isEmpty;
 import static org.corant.shared.util.ObjectUtils.forceCast;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -47,6 +48,21 @@ public interface ElasticDocumentService {
       Function<Class<? extends ElasticDocument>, ElasticIndexing> indexFunction,
       Function<Class<? extends ElasticDocument>, ElasticMapping> mappingFunction);
 
+  /**
+   * Add the documents to the asynchronous bulk index pipeline and return immediately, the
+   * documents are sent in bulk requests when the pipeline is flushed by count, size or interval.
+   * The failures are reported by {@link ElasticBulkIndexFailedEvent}.
+   *
+   * <p>
+   * The default implementation has no pipeline, it indexes the documents in one bulk request
+   * without waiting for the refresh.
+   *
+   * @param docList the documents to index
+   */
+  default void bulkIndexAsync(List<ElasticDocument> docList) {
+    bulkIndex(docList, false);
+  }
+
   default boolean delete(String indexName, String id) {
     return delete(indexName, id, false);
   }
@@ -58,6 +74,14 @@ public interface ElasticDocumentService {
 
   long deleteByQuery(String indexName, QueryBuilder qb, boolean flush);
 
+  /**
+   * Send the documents that are pending in the asynchronous bulk index pipeline, the default
+   * implementation has no pending documents and does nothing.
+   */
+  default void flushBulkIndex() {
+    // NOOP
+  }
+
   default <T> T get(Class<T> cls, QueryBuilder qb) {
     ElasticIndexing indexing = shouldNotNull(resolveIndexing(cls));
     return get(cls, indexing.getName(), qb);
@@ -98,6 +122,10 @@ public interface ElasticDocumentService {
   boolean index(String indexName, String id, String routingId, String parentId, Map<?, ?> obj,
       boolean flush, long version, VersionType versionType);
 
+  default void indexAsync(ElasticDocument document) {
+    bulkIndexAsync(Collections.singletonList(shouldNotNull(document)));
+  }
+
   ElasticIndexing resolveIndexing(Class<?> docCls);
 
   ElasticMapping resolveMapping(Class<?> docCls);
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.elastic.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * corant-suites-elastic
+ *
+ * The progress and the throughput of a reindex, the listener is notified after each bulk request
+ * is completed, it may be notified concurrently from the reindex workers.
+ *
+ * @author bingo 下午7:42:18
+ *
+ */
+public class ElasticReindexProgress {
+
+  private final String alias;
+  private final String targetIndex;
+  private final long total;
+  private final long startedTime = System.currentTimeMillis();
+  private final AtomicLong indexed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong bulks = new AtomicLong();
+  private final Consumer<ElasticReindexProgress> listener;
+  private volatile long finishedTime = -1;
+
+  /**
+   * @param alias the alias that is switched to the target index
+   * @param targetIndex the index that the documents are copied to
+   * @param total the number of the source documents, -1 if unknown
+   * @param listener the progress listener, may be null
+   */
+  public ElasticReindexProgress(String alias, String targetIndex, long total,
+      Consumer<ElasticReindexProgress> listener) {
+    super();
+    this.alias = alias;
+    this.targetIndex = targetIndex;
+    this.total = total;
+    this.listener = listener;
+  }
+
+  /**
+   *
+   * @return the alias
+   */
+  public String getAlias() {
+    return alias;
+  }
+
+  /**
+   *
+   * @return the number of the completed bulk requests
+   */
+  public long getBulks() {
+    return bulks.get();
+  }
+
+  /**
+   *
+   * @return the elapsed time in milliseconds
+   */
+  public long getElapsed() {
+    return (finishedTime < 0 ? System.currentTimeMillis() : finishedTime) - startedTime;
+  }
+
+  /**
+   *
+   * @return the number of the failed documents
+   */
+  public long getFailed() {
+    return failed.get();
+  }
+
+  /**
+   *
+   * @return the number of the indexed documents
+   */
+  public long getIndexed() {
+    return indexed.get();
+  }
+
+  /**
+   *
+   * @return the percentage of the processed documents, -1 if the total is unknown
+   */
+  public double getPercentage() {
+    if (total < 0) {
+      return -1;
+    }
+    return total == 0 ? 100 : Math.min(100, (getIndexed() + getFailed()) * 100.0 / total);
+  }
+
+  /**
+   *
+   * @return the started time
+   */
+  public long getStartedTime() {
+    return startedTime;
+  }
+
+  /**
+   *
+   * @return the target index
+   */
+  public String getTargetIndex() {
+    return targetIndex;
+  }
+
+  /**
+   *
+   * @return the number of the indexed documents per second
+   */
+  public double getThroughput() {
+    long elapsed = getElapsed();
+    return elapsed <= 0 ? 0 : getIndexed() * 1000.0 / elapsed;
+  }
+
+  /**
+   *
+   * @return the number of the source documents, -1 if unknown
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  public boolean isFinished() {
+    return finishedTime >= 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "Reindex %s -> %s: %d indexed, %d failed, %d total, %.2f%%, %.1f docs/s, %d ms elapsed.",
+        alias, targetIndex, getIndexed(), getFailed(), total, getPercentage(), getThroughput(),
+        getElapsed());
+  }
+
+  void completed(BulkResponse response) {
+    long failures = 0;
+    for (BulkItemResponse item : response.getItems()) {
+      // the conflicts mean that newer documents were written while copying
+      if (item.isFailed() && item.getFailure().getStatus() != RestStatus.CONFLICT) {
+        failures++;
+      }
+    }
+    failed.addAndGet(failures);
+    indexed.addAndGet(response.getItems().length - failures);
+    bulks.incrementAndGet();
+    notifyListener();
+  }
+
+  void failed(long failures) {
+    if (failures > 0) {
+      failed.addAndGet(failures);
+      notifyListener();
+    }
+  }
+
+  void finished() {
+    finishedTime = System.currentTimeMillis();
+    notifyListener();
+  }
+
+  void notifyListener() {
+    if (listener != null) {
+      listener.accept(this);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.elastic.service;
+
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.corant.suites.elastic.metadata.ElasticIndexing;
+import org.corant.suites.elastic.model.ElasticDocument;
+
+/**
+ * corant-suites-elastic
+ *
+ * Rebuild an index without downtime when the settings or the schema of the indexing are changed.
+ * The indexing name is used as an alias, the documents are copied into a new versioned index with
+ * the latest settings and schema, then the alias is switched to the new index atomically, so the
+ * searches through the alias are never interrupted.
+ *
+ * NOTE: The documents written through the alias while copying go to the old index. The
+ * {@link AbstractElasticReindexService} writes them to the new index too if they are written by the
+ * {@link AbstractElasticDocumentService} of the same JVM. For the writes of other JVMs or clients,
+ * the old index is write blocked before the alias is switched and copied again, unless this JVM is
+ * configured as the only writer; the writes through the alias fail during that window, and a
+ * document deleted by other writers while copying may remain.
+ *
+ * @author bingo 下午7:40:26
+ *
+ */
+public interface ElasticReindexService {
+
+  /**
+   * Copy the documents from the indices that the alias points to.
+   */
+  default ElasticReindexProgress reindex(ElasticIndexing indexing) {
+    return reindex(indexing, null);
+  }
+
+  /**
+   * Copy the documents from the indices that the alias points to, the listener is notified after
+   * each bulk request.
+   */
+  ElasticReindexProgress reindex(ElasticIndexing indexing,
+      Consumer<ElasticReindexProgress> listener);
+
+  /**
+   * Copy the documents from the given stream such as a JPA result stream, the stream is closed
+   * after copying.
+   */
+  ElasticReindexProgress reindex(ElasticIndexing indexing,
+      Stream<? extends ElasticDocument> documents, Consumer<ElasticReindexProgress> listener);
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.elastic.service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.corant.suites.elastic.ElasticException;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * corant-suites-elastic
+ *
+ * The target indices that are being rebuilt by the reindex services of this JVM, keyed by the
+ * alias. The document services write the documents to these indices too while the reindex is
+ * copying, so that the documents written through the alias are not lost when it is switched.
+ *
+ * <p>
+ * The copies are sent asynchronously, so the pending copies of each target are counted, the
+ * reindex service drains them before the alias is switched so that a late copy never overwrites a
+ * newer document written through the switched alias. The bulk processors of the document services
+ * are registered here to be flushed when draining.
+ *
+ * @author bingo 下午3:18:42
+ *
+ */
+final class ElasticReindexTargets {
+
+  private static final Map<String, Set<String>> TARGETS = new ConcurrentHashMap<>();
+  private static final Map<String, Copies> COPIES = new ConcurrentHashMap<>();
+  private static final Set<BulkProcessor> PROCESSORS = ConcurrentHashMap.newKeySet();
+
+  private ElasticReindexTargets() {}
+
+  static void addProcessor(BulkProcessor processor) {
+    PROCESSORS.add(processor);
+  }
+
+  /**
+   * Count the completed copies of the bulk request, the response is null if the request failed.
+   */
+  static void copied(BulkRequest request, BulkResponse response) {
+    if (COPIES.isEmpty()) {
+      return;
+    }
+    for (int i = 0; i < request.numberOfActions(); i++) {
+      Copies copies = COPIES.get(request.requests().get(i).index());
+      if (copies != null) {
+        boolean failed = true;
+        if (response != null) {
+          BulkItemResponse item = response.getItems()[i];
+          // the conflicts mean that newer documents were written to the target
+          failed = item.isFailed() && item.getFailure().getStatus() != RestStatus.CONFLICT;
+        }
+        copies.completed(failed);
+      }
+    }
+  }
+
+  /**
+   * Count a copy that is sent to the target index.
+   */
+  static void copying(String target) {
+    Copies copies = COPIES.get(target);
+    if (copies != null) {
+      copies.submitted();
+    }
+  }
+
+  static void deregister(String alias, String target) {
+    TARGETS.computeIfPresent(alias, (k, v) -> {
+      v.remove(target);
+      return v.isEmpty() ? null : v;
+    });
+  }
+
+  /**
+   * Stop counting the copies of the target index.
+   */
+  static void discard(String target) {
+    COPIES.remove(target);
+  }
+
+  /**
+   * Flush the bulk processors and wait for the pending copies of the target index, the target
+   * must have been deregistered so that no more copies are sent.
+   *
+   * @param target the target index
+   * @param timeout the time in milliseconds to wait
+   * @return the number of the failed copies
+   * @throws ElasticException if the copies are still pending after the timeout
+   */
+  static long drain(String target, long timeout) {
+    Copies copies = COPIES.get(target);
+    if (copies == null) {
+      return 0;
+    }
+    for (BulkProcessor processor : PROCESSORS) {
+      try {
+        processor.flush();
+      } catch (IllegalStateException e) {
+        // the processor has been closed
+      }
+    }
+    try {
+      return copies.await(target, timeout);
+    } finally {
+      discard(target);
+    }
+  }
+
+  static Set<String> get(String alias) {
+    Set<String> targets = alias == null ? null : TARGETS.get(alias);
+    return targets == null ? Collections.emptySet() : targets;
+  }
+
+  static void register(String alias, String target) {
+    COPIES.put(target, new Copies());
+    TARGETS.computeIfAbsent(alias, k -> ConcurrentHashMap.newKeySet()).add(target);
+  }
+
+  static void removeProcessor(BulkProcessor processor) {
+    PROCESSORS.remove(processor);
+  }
+
+  /**
+   * corant-suites-elastic
+   *
+   * The pending and the failed copies of a target index.
+   *
+   * @author bingo 下午5:02:36
+   *
+   */
+  static class Copies {
+
+    private long pending;
+    private long failed;
+
+    synchronized long await(String target, long timeout) {
+      final long deadline = System.currentTimeMillis() + timeout;
+      long remaining = timeout;
+      try {
+        while (pending > 0 && remaining > 0) {
+          wait(remaining);
+          remaining = deadline - System.currentTimeMillis();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ElasticException(e);
+      }
+      if (pending > 0) {
+        throw new ElasticException("There are %d copies to %s pending after %d ms.", pending,
+            target, timeout);
+      }
+      return failed;
+    }
+
+    synchronized void completed(boolean failed) {
+      if (failed) {
+        this.failed++;
+      }
+      if (--pending <= 0) {
+        notifyAll();
+      }
+    }
+
+    synchronized void submitted() {
+      pending++;
+    }
+  }
+}
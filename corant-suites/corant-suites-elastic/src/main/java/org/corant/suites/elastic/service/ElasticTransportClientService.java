@@ -46,6 +46,15 @@ public class ElasticTransportClientService {
     return null;
   }
 
+  /**
+   * The transport client for the bulk requests of the cluster.
+   *
+   * @see ElasticExtension#getBulkTransportClient(String)
+   */
+  public TransportClient getBulk(String clusterName) {
+    return extension.getBulkTransportClient(clusterName);
+  }
+
   /**
    * @return the extension
    */
@@ -17,6 +17,9 @@ import java.io.Serializable;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import org.corant.shared.util.Identifiers;
 import org.eclipse.microprofile.config.ConfigProvider;
@@ -28,6 +31,17 @@ import org.hibernate.id.IdentifierGenerator;
 /**
  * corant-suites-jpa-hibernate
  *
+ * The generator uses the database time, if the time lease
+ * ({@value #IDGEN_SF_TIME_LEASE} milliseconds) is greater than zero, the database time is
+ * queried once per lease and the time in the lease is advanced by {@link System#nanoTime()}, the
+ * lease is renewed by the first generation after it is expired. The leased time never moves
+ * backwards, if the database time of the renewal is behind the leased time, the leased time is
+ * kept and advanced at half speed until the database time catches up with it, then the leased time
+ * is the database time again. If the time regression mode ({@value #IDGEN_SF_TIME_REGRESSION}) is
+ * {@value #TIME_REGRESSION_REFUSE} the renewal throws instead, the leased time is frozen and the
+ * generations are refused until the database time catches up with it. The leases are kept and
+ * renewed per session factory, since the persistence units may use different databases.
+ *
  * @author bingo 下午2:06:44
  *
  */
@@ -35,19 +49,33 @@ public class HibernateSnowflakeIdGenerator implements IdentifierGenerator {
   static Logger logger = Logger.getLogger(HibernateSnowflakeIdGenerator.class.getName());
   static final String IDGEN_SF_WK_ID = "identifier.generator.snowflake.worker-id";
   static final String IDGEN_SF_DC_ID = "identifier.generator.snowflake.datacenter-id";
+  static final String IDGEN_SF_TIME_LEASE = "identifier.generator.snowflake.time-lease";
+  static final String IDGEN_SF_TIME_REGRESSION = "identifier.generator.snowflake.time-regression";
+  static final String TIME_REGRESSION_HOLD = "hold";
+  static final String TIME_REGRESSION_REFUSE = "refuse";
   static Identifiers.IdentifierGenerator GENERATOR;
   static volatile boolean ENABLED = false;
   static volatile String TSSQL = null;
   static volatile int DATA_CENTER_ID;
   static volatile int WORKER_ID;
+  static volatile long TIME_LEASE_NANOS;
+  static volatile boolean REFUSE_TIME_REGRESSION;
+  static final Map<String, TimeLease> TIME_LEASES = new ConcurrentHashMap<>();
+  static final Map<String, Object> TIME_LEASE_LOCKS = new ConcurrentHashMap<>();
   static {
     DATA_CENTER_ID =
         ConfigProvider.getConfig().getOptionalValue(IDGEN_SF_DC_ID, Integer.class).orElse(-1);
     WORKER_ID =
         ConfigProvider.getConfig().getOptionalValue(IDGEN_SF_WK_ID, Integer.class).orElse(0);
+    TIME_LEASE_NANOS = TimeUnit.MILLISECONDS.toNanos(
+        ConfigProvider.getConfig().getOptionalValue(IDGEN_SF_TIME_LEASE, Long.class).orElse(0L));
+    REFUSE_TIME_REGRESSION = TIME_REGRESSION_REFUSE.equalsIgnoreCase(ConfigProvider.getConfig()
+        .getOptionalValue(IDGEN_SF_TIME_REGRESSION, String.class).orElse(TIME_REGRESSION_HOLD));
     logger.info(() -> String.format(
-        "Use Snowflake id generator for hibernate data center id is %s, worker id is %s.",
-        DATA_CENTER_ID, WORKER_ID));
+        "Use Snowflake id generator for hibernate data center id is %s, worker id is %s, "
+            + "time lease is %s ms, time regression mode is %s.",
+        DATA_CENTER_ID, WORKER_ID, TimeUnit.NANOSECONDS.toMillis(TIME_LEASE_NANOS),
+        REFUSE_TIME_REGRESSION ? TIME_REGRESSION_REFUSE : TIME_REGRESSION_HOLD));
     if (DATA_CENTER_ID >= 0) {
       GENERATOR = Identifiers.snowflakeUUIDGenerator(DATA_CENTER_ID, WORKER_ID);
     } else {
@@ -59,9 +87,48 @@ public class HibernateSnowflakeIdGenerator implements IdentifierGenerator {
   @Override
   public Serializable generate(SharedSessionContractImplementor session, Object object)
       throws HibernateException {
+    if (TIME_LEASE_NANOS > 0) {
+      return GENERATOR.generate(() -> leasedTime(session));
+    }
     return GENERATOR.generate(() -> timeSeq(session));
   }
 
+  long leasedTime(SharedSessionContractImplementor session) {
+    final String key = session.getFactory().getUuid();
+    TimeLease lease = TIME_LEASES.get(key);
+    if (lease == null || lease.isExpired(System.nanoTime())) {
+      synchronized (TIME_LEASE_LOCKS.computeIfAbsent(key, k -> new Object())) {
+        lease = TIME_LEASES.get(key);
+        if (lease == null || lease.isExpired(System.nanoTime())) {
+          final long time = timeSeq(session);
+          final long nanos = System.nanoTime();
+          final long expiredNanos = nanos + TIME_LEASE_NANOS;
+          if (lease != null && time < lease.currentTime(nanos)) {
+            final long leasedTime = lease.currentTime(nanos);
+            if (REFUSE_TIME_REGRESSION) {
+              TIME_LEASES.put(key, new TimeLease(leasedTime, nanos, nanos, false, true));
+              throw new HibernateException(String.format(
+                  "The database time moved backwards %s ms, refuse to generate the identifier.",
+                  leasedTime - time));
+            }
+            if (!lease.catchingUp) {
+              final long regression = leasedTime - time;
+              logger.warning(() -> String.format(
+                  "The database time moved backwards %s ms, hold the leased time until the "
+                      + "database time catches up.",
+                  regression));
+            }
+            lease = new TimeLease(leasedTime, nanos, expiredNanos, true, false);
+          } else {
+            lease = new TimeLease(time, nanos, expiredNanos, false, false);
+          }
+          TIME_LEASES.put(key, lease);
+        }
+      }
+    }
+    return lease.currentTime(System.nanoTime());
+  }
+
   long timeSeq(SharedSessionContractImplementor session) {
     if (TSSQL == null) {
       synchronized (HibernateSnowflakeIdGenerator.class) {
@@ -97,4 +164,36 @@ public class HibernateSnowflakeIdGenerator implements IdentifierGenerator {
           .getSqlExceptionHelper().convert(sqle, "could not get next sequence value", TSSQL);
     }
   }
+
+  static final class TimeLease {
+    final long time;
+    final long nanos;
+    final long expiredNanos;
+    final boolean catchingUp;
+    final boolean refused;
+
+    TimeLease(long time, long nanos, long expiredNanos, boolean catchingUp, boolean refused) {
+      this.time = time;
+      this.nanos = nanos;
+      this.expiredNanos = expiredNanos;
+      this.catchingUp = catchingUp;
+      this.refused = refused;
+    }
+
+    /**
+     * The time advances at half speed while catching up, so that the database time overtakes it,
+     * and is frozen while refused, the refused lease is always expired.
+     */
+    long currentTime(long currentNanos) {
+      if (refused) {
+        return time;
+      }
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(currentNanos - nanos);
+      return time + (catchingUp ? elapsed >> 1 : elapsed);
+    }
+
+    boolean isExpired(long currentNanos) {
+      return currentNanos - expiredNanos >= 0;
+    }
+  }
 }
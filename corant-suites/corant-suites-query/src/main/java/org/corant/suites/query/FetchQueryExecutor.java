@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query;
+
+import static org.corant.shared.util.Empties.isEmpty;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * corant-suites-query
+ *
+ * Execute the fetch query tasks of one query result concurrently. The number of the concurrent
+ * tasks of one query is limited by {@link #FE_CONCURRENCY}, the default value is 1 that means the
+ * tasks are executed one after another on the caller thread. The nested fetch tasks that are
+ * submitted from the fetch thread are executed on that thread to avoid pool starvation.
+ *
+ * If the tasks are timed out or failed the tasks are aborted, the tasks that are still running may
+ * complete their queries but their results are discarded, the fetched results must be injected
+ * through {@link #inject(Runnable)}.
+ *
+ * NOTE: The fetch tasks that executed in the pool threads do not participate in the transaction of
+ * the caller thread.
+ *
+ * @author bingo 下午3:12:36
+ *
+ */
+@ApplicationScoped
+public class FetchQueryExecutor {
+
+  public static final String FE = "query.fetch.executor";
+  public static final String FE_CONCURRENCY = FE + ".concurrency";
+  public static final String FE_POOL_SIZE = FE + ".poolSize";
+  public static final String FE_TIMEOUT = FE + ".timeout";
+
+  static final ThreadLocal<Boolean> IN_FETCH_THREAD = ThreadLocal.withInitial(() -> false);
+  static final ThreadLocal<AtomicBoolean> ABORTED = new ThreadLocal<>();
+
+  @Inject
+  @ConfigProperty(name = FE_CONCURRENCY, defaultValue = "1")
+  int concurrency;
+
+  @Inject
+  @ConfigProperty(name = FE_POOL_SIZE, defaultValue = "0")
+  int poolSize;
+
+  /**
+   * The timeout in milliseconds of all the fetch tasks of one query.
+   */
+  @Inject
+  @ConfigProperty(name = FE_TIMEOUT, defaultValue = "30000")
+  long timeout;
+
+  ExecutorService executorService;
+
+  /**
+   * Inject the fetched results of the fetch task of the current thread, the injection is skipped if
+   * the fetch tasks have been aborted. The injection and the abort are mutually exclusive, so no
+   * injection happens after {@link #execute(List)} returns or throws.
+   *
+   * @param injection the injection of the fetched results
+   * @return false if the injection is skipped
+   */
+  public static boolean inject(Runnable injection) {
+    final AtomicBoolean aborted = ABORTED.get();
+    if (aborted == null) {
+      injection.run();
+      return true;
+    }
+    synchronized (aborted) {
+      if (aborted.get()) {
+        return false;
+      }
+      injection.run();
+      return true;
+    }
+  }
+
+  /**
+   * Execute the given tasks and wait for all of them, if any task fails the tasks that are not yet
+   * started are skipped and the failures of all the started tasks are merged into one
+   * {@link QueryRuntimeException}, the first failure is the cause and the others are suppressed.
+   *
+   * @param tasks the fetch tasks
+   */
+  public void execute(List<Runnable> tasks) {
+    if (isEmpty(tasks)) {
+      return;
+    }
+    if (!isConcurrent() || tasks.size() == 1 || IN_FETCH_THREAD.get()) {
+      tasks.forEach(Runnable::run);
+      return;
+    }
+    final ExecutorCompletionService<Void> ecs = new ExecutorCompletionService<>(executorService);
+    final List<Future<Void>> futures = new ArrayList<>(tasks.size());
+    final List<Throwable> failures = new ArrayList<>();
+    final Iterator<Runnable> it = tasks.iterator();
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    final AtomicBoolean aborted = new AtomicBoolean();
+    int running = 0;
+    try {
+      while (running < concurrency && it.hasNext()) {
+        futures.add(ecs.submit(wrap(it.next(), aborted), null));
+        running++;
+      }
+      while (running > 0) {
+        long remaining = deadline - System.nanoTime();
+        Future<Void> done = remaining > 0 ? ecs.poll(remaining, TimeUnit.NANOSECONDS) : null;
+        if (done == null) {
+          failures.add(new TimeoutException(
+              String.format("The fetch queries were not completed within %d ms.", timeout)));
+          break;
+        }
+        running--;
+        try {
+          done.get();
+        } catch (ExecutionException e) {
+          failures.add(e.getCause());
+        }
+        if (failures.isEmpty() && it.hasNext()) {
+          futures.add(ecs.submit(wrap(it.next(), aborted), null));
+          running++;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failures.add(e);
+    } finally {
+      if (!failures.isEmpty()) {
+        synchronized (aborted) {
+          aborted.set(true);
+        }
+      }
+      futures.forEach(f -> f.cancel(true));
+    }
+    if (!failures.isEmpty()) {
+      QueryRuntimeException ex = new QueryRuntimeException(failures.get(0),
+          "%d of %d fetch query tasks failed!", failures.size(), tasks.size());
+      failures.stream().skip(1).forEach(ex::addSuppressed);
+      throw ex;
+    }
+  }
+
+  public boolean isConcurrent() {
+    return concurrency > 1 && executorService != null;
+  }
+
+  @PreDestroy
+  synchronized void destroy() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+      executorService = null;
+    }
+  }
+
+  @PostConstruct
+  synchronized void enable() {
+    if (concurrency > 1) {
+      final int size =
+          poolSize < 1 ? Math.max(2, Runtime.getRuntime().availableProcessors() * 2) : poolSize;
+      executorService = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), new FetchThreadFactory());
+      ThreadPoolExecutor.class.cast(executorService).allowCoreThreadTimeOut(true);
+    }
+  }
+
+  Runnable wrap(Runnable task, AtomicBoolean aborted) {
+    return () -> {
+      IN_FETCH_THREAD.set(true);
+      ABORTED.set(aborted);
+      try {
+        if (!aborted.get()) {
+          task.run();
+        }
+      } finally {
+        IN_FETCH_THREAD.remove();
+        ABORTED.remove();
+      }
+    };
+  }
+
+  static class FetchThreadFactory implements ThreadFactory {
+    private final ThreadGroup group;
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+    private final String namePrefix = "query-fetch-pool-thread-";
+
+    FetchThreadFactory() {
+      SecurityManager s = System.getSecurityManager();
+      group = s != null ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(group, r, namePrefix + threadNumber.getAndIncrement(), 0);
+      t.setDaemon(true);
+      if (t.getPriority() != Thread.NORM_PRIORITY) {
+        t.setPriority(Thread.NORM_PRIORITY);
+      }
+      return t;
+    }
+  }
+}
@@ -80,6 +80,7 @@ public interface Query<Q, P> {
   public static class ForwardList<T> {
 
     private boolean hasNext;
+    private String continuation;
     private final List<T> results = new ArrayList<>();
 
     ForwardList() {}
@@ -93,6 +94,16 @@ public interface Query<Q, P> {
       return il.withResults(results).withHasNext(hasNext);
     }
 
+    /**
+     * The opaque continuation token of the keyset pagination, use it to retrieve the next list, may
+     * be null if the query is not in keyset pagination mode or there are no more results.
+     *
+     * @return the continuation
+     */
+    public String getContinuation() {
+      return continuation;
+    }
+
     /**
      * @return the data
      */
@@ -111,6 +122,11 @@ public interface Query<Q, P> {
       return hasNext;
     }
 
+    public ForwardList<T> withContinuation(String continuation) {
+      this.continuation = continuation;
+      return this;
+    }
+
     public ForwardList<T> withHasNext(boolean hasNext) {
       this.hasNext = hasNext;
       return this;
@@ -133,6 +149,8 @@ public interface Query<Q, P> {
     private int currentPage;
     private int totalPages;
     private int offset;
+    private String continuation;
+    private boolean approximateTotal;
     private List<T> results = new ArrayList<>();
 
     public static <T> PagedList<T> inst() {
@@ -149,6 +167,16 @@ public interface Query<Q, P> {
       return pl.withResults(results).withTotal(total).withOffset(offset).withPageSize(pageSize);
     }
 
+    /**
+     * The opaque continuation token of the keyset pagination, use it to retrieve the next page, may
+     * be null if the query is not in keyset pagination mode or there are no more results.
+     *
+     * @return the continuation
+     */
+    public String getContinuation() {
+      return continuation;
+    }
+
     /**
      * @return the currentPage
      */
@@ -185,6 +213,25 @@ public interface Query<Q, P> {
       return totalPages;
     }
 
+    /**
+     * Whether the total is an estimate rather than the exact count.
+     *
+     * @return the approximateTotal
+     */
+    public boolean isApproximateTotal() {
+      return approximateTotal;
+    }
+
+    public PagedList<T> withApproximateTotal(boolean approximateTotal) {
+      this.approximateTotal = approximateTotal;
+      return this;
+    }
+
+    public PagedList<T> withContinuation(String continuation) {
+      this.continuation = continuation;
+      return this;
+    }
+
     public PagedList<T> withOffset(int offset) {
       this.offset = offset;
       calPages();
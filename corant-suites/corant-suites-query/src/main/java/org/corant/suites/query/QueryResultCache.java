@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query;
+
+import static org.corant.shared.util.ConversionUtils.toInteger;
+import static org.corant.shared.util.ConversionUtils.toLong;
+import static org.corant.shared.util.StringUtils.split;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.corant.suites.query.mapping.QueryHint;
+import org.corant.suites.query.Query.ForwardList;
+import org.corant.suites.query.Query.PagedList;
+import org.corant.suites.query.mapping.QueryHint.QueryHintParameter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * corant-suites-query
+ *
+ * The named query result cache, a query is cached only if it declares a cache hint such as:
+ *
+ * <pre>
+ * &lt;hint key="cache"&gt;
+ *   &lt;parameter name="ttl" value="300000"/&gt;
+ *   &lt;parameter name="max-entries" value="64"/&gt;
+ *   &lt;parameter name="depends-on" value="com.xx.Currency,com.xx.Country"/&gt;
+ * &lt;/hint&gt;
+ * </pre>
+ *
+ * The ttl is the time to live in milliseconds and the max-entries is the maximum number of the
+ * cached results of the query, the least recently used result is evicted when it's full. The
+ * depends-on is the aggregate type names that the query depends on, the cached results are evicted
+ * when any of these aggregates is changed, see {@link #invalidate(Collection)}.
+ *
+ * The results are keyed by the query name and the query parameters after the parameters were
+ * revised, or by the query name and a given key such as the rendered query script. The parameter
+ * values and the keys should implement equals and hashCode, the collections, the maps and the
+ * arrays in the parameters are copied into unmodifiable collections for the key so that the later
+ * changes of the caller do not affect the key.
+ * <p>
+ * By default a copy of the result is cached and each caller gets its own copy, so that the callers
+ * can not change the cached result. The maps, the collections, the arrays, the paged and forward
+ * lists are copied deeply, the other objects are copied by their public clone method or by the
+ * serialization, the immutable values such as the strings, the numbers and the java.time values
+ * are shared. A result that can not be copied is not cached. The callers whose results are read
+ * only, such as the search responses, can pass their own copier.
+ *
+ * @author bingo 下午2:41:09
+ *
+ */
+@ApplicationScoped
+public class QueryResultCache {
+
+  public static final String HINT_CACHE = "cache";
+  public static final String HINT_TTL = "ttl";
+  public static final String HINT_MAX_ENTRIES = "max-entries";
+  public static final String HINT_DEPENDS_ON = "depends-on";
+
+  public static final String QC = "query.cache";
+  public static final String QC_TTL = QC + ".ttl";
+  public static final String QC_MAX_ENTRIES = QC + ".maxEntries";
+
+  /**
+   * The public clone methods of the cloneable classes.
+   */
+  static final ClassValue<Method> CLONE_METHODS = new ClassValue<Method>() {
+    @Override
+    protected Method computeValue(Class<?> type) {
+      if (Cloneable.class.isAssignableFrom(type)) {
+        try {
+          return type.getMethod("clone");
+        } catch (NoSuchMethodException | SecurityException e) {
+          return null;
+        }
+      }
+      return null;
+    }
+  };
+
+  /**
+   * The default time to live in milliseconds of the cached results.
+   */
+  @Inject
+  @ConfigProperty(name = QC_TTL, defaultValue = "60000")
+  long ttl;
+
+  @Inject
+  @ConfigProperty(name = QC_MAX_ENTRIES, defaultValue = "256")
+  int maxEntries;
+
+  final Map<String, Region> regions = new ConcurrentHashMap<>();
+  final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+  public void clear() {
+    regions.values().forEach(Region::clear);
+  }
+
+  /**
+   * Returns the cached result of the query, if the query does not declare the cache hint or the
+   * result is not cached, the loader is invoked and the result is cached.
+   *
+   * @param queryName the query name
+   * @param hints the query hints
+   * @param kind the kind of the query such as select, get, page
+   * @param param the query parameters
+   * @param loader the loader that executes the query
+   * @return the query result
+   */
+  public <T> T computeIfAbsent(String queryName, List<QueryHint> hints, String kind,
+      Map<String, Object> param, Supplier<T> loader) {
+    return computeIfAbsent(queryName, hints, kind,
+        (Object) (param == null ? new HashMap<>() : freeze(param)), loader);
+  }
+
+  /**
+   * Returns the cached result of the query by the given key, if the query does not declare the
+   * cache hint or the result is not cached, the loader is invoked and the result is cached.
+   *
+   * @param queryName the query name
+   * @param hints the query hints
+   * @param kind the kind of the query such as select, get, page
+   * @param key the cache key such as the rendered query script
+   * @param loader the loader that executes the query
+   * @return the query result
+   */
+  public <T> T computeIfAbsent(String queryName, List<QueryHint> hints, String kind, Object key,
+      Supplier<T> loader) {
+    return computeIfAbsent(queryName, hints, kind, key, loader, QueryResultCache::copy);
+  }
+
+  /**
+   * Returns the cached result of the query by the given key, the cached result is copied by the
+   * given copier when it's cached and when it's returned, if the copier returns null the result is
+   * not cached.
+   *
+   * @param queryName the query name
+   * @param hints the query hints
+   * @param kind the kind of the query such as select, get, page
+   * @param key the cache key such as the rendered query script
+   * @param loader the loader that executes the query
+   * @param copier the copier of the result, use the identity if the result is read only
+   * @return the query result
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T computeIfAbsent(String queryName, List<QueryHint> hints, String kind, Object key,
+      Supplier<T> loader, UnaryOperator<T> copier) {
+    QueryHint hint = hints == null ? null
+        : hints.stream().filter(h -> HINT_CACHE.equalsIgnoreCase(h.getKey())).findFirst()
+            .orElse(null);
+    if (hint == null) {
+      return loader.get();
+    }
+    Region region = regions.computeIfAbsent(queryName, n -> createRegion(hint));
+    CacheKey cacheKey = new CacheKey(kind, key);
+    Object[] cached = region.get(cacheKey);
+    if (cached != null) {
+      return copier.apply((T) cached[0]);
+    }
+    long[] stamp = stamp(region.dependsOn);
+    T result = loader.get();
+    if (result != null) {
+      T snapshot = copier.apply(result);
+      if (snapshot != null) {
+        region.put(cacheKey, snapshot, () -> Arrays.equals(stamp, stamp(region.dependsOn)));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Evict the cached results of the queries that depend on the given aggregate types, the results
+   * of these queries that are being loaded will not be cached.
+   *
+   * @param aggregateTypes the changed aggregate type names
+   */
+  public void invalidate(Collection<String> aggregateTypes) {
+    if (aggregateTypes == null || aggregateTypes.isEmpty()) {
+      return;
+    }
+    aggregateTypes
+        .forEach(t -> generations.computeIfAbsent(t, k -> new AtomicLong()).incrementAndGet());
+    regions.values().stream()
+        .filter(r -> Arrays.stream(r.dependsOn).anyMatch(aggregateTypes::contains))
+        .forEach(Region::clear);
+  }
+
+  /**
+   * Returns a deep copy of the given result, returns null if the result or any of its elements can
+   * not be copied.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T copy(T result) {
+    try {
+      return (T) deepCopy(result);
+    } catch (UncopyableException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the copy of the given key value in which the collections, the maps and the arrays are
+   * replaced by the unmodifiable copies.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T freeze(T value) {
+    return (T) doFreeze(value);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static Object deepCopy(Object value) throws UncopyableException {
+    if (value == null || isImmutable(value)) {
+      return value;
+    }
+    Class<?> cls = value.getClass();
+    if (cls.isArray()) {
+      int length = Array.getLength(value);
+      Object copy = Array.newInstance(cls.getComponentType(), length);
+      System.arraycopy(value, 0, copy, 0, length);
+      if (!cls.getComponentType().isPrimitive()) {
+        Object[] elements = (Object[]) copy;
+        for (int i = 0; i < length; i++) {
+          elements[i] = deepCopy(elements[i]);
+        }
+      }
+      return copy;
+    } else if (value instanceof PagedList) {
+      PagedList<Object> paged = (PagedList<Object>) value;
+      return PagedList.of(paged.getOffset(), paged.getPageSize()).withTotal(paged.getTotal())
+          .withApproximateTotal(paged.isApproximateTotal())
+          .withContinuation(paged.getContinuation())
+          .withResults((List<Object>) deepCopy(paged.getResults()));
+    } else if (value instanceof ForwardList) {
+      ForwardList<Object> forward = (ForwardList<Object>) value;
+      return ForwardList.of((List<Object>) deepCopy(forward.getResults()), forward.isHasNext())
+          .withContinuation(forward.getContinuation());
+    }
+    Object clone = shallowClone(value);
+    if (value instanceof Map) {
+      Map<Object, Object> copy = clone != null ? (Map) clone : new LinkedHashMap<>((Map) value);
+      for (Map.Entry<Object, Object> e : copy.entrySet()) {
+        Object v = e.getValue();
+        Object cv = deepCopy(v);
+        if (cv != v) {
+          e.setValue(cv);
+        }
+      }
+      return copy;
+    } else if (value instanceof List) {
+      List<Object> copy = clone != null ? (List) clone : new ArrayList<>((List) value);
+      for (ListIterator<Object> it = copy.listIterator(); it.hasNext();) {
+        Object v = it.next();
+        Object cv = deepCopy(v);
+        if (cv != v) {
+          it.set(cv);
+        }
+      }
+      return copy;
+    } else if (value instanceof Collection) {
+      Collection<Object> copy = clone != null ? (Collection) clone
+          : value instanceof Set ? new LinkedHashSet<>((Set) value)
+              : new ArrayList<>((Collection) value);
+      List<Object> elements = new ArrayList<>(copy.size());
+      boolean changed = false;
+      for (Object v : copy) {
+        Object cv = deepCopy(v);
+        changed |= cv != v;
+        elements.add(cv);
+      }
+      if (changed) {
+        copy.clear();
+        copy.addAll(elements);
+      }
+      return copy;
+    } else if (clone != null) {
+      return clone;
+    } else if (value instanceof Serializable) {
+      return serialCopy(value);
+    }
+    throw new UncopyableException();
+  }
+
+  static Object doFreeze(Object value) {
+    if (value == null || isImmutable(value)) {
+      return value;
+    } else if (value instanceof Map) {
+      Map<Object, Object> frozen = new HashMap<>();
+      ((Map<?, ?>) value).forEach((k, v) -> frozen.put(doFreeze(k), doFreeze(v)));
+      return Collections.unmodifiableMap(frozen);
+    } else if (value instanceof Set) {
+      Set<Object> frozen = new LinkedHashSet<>();
+      ((Set<?>) value).forEach(v -> frozen.add(doFreeze(v)));
+      return Collections.unmodifiableSet(frozen);
+    } else if (value instanceof Collection) {
+      List<Object> frozen = new ArrayList<>();
+      ((Collection<?>) value).forEach(v -> frozen.add(doFreeze(v)));
+      return Collections.unmodifiableList(frozen);
+    } else if (value.getClass().isArray()) {
+      List<Object> frozen = new ArrayList<>();
+      for (int i = 0; i < Array.getLength(value); i++) {
+        frozen.add(doFreeze(Array.get(value, i)));
+      }
+      return Collections.unmodifiableList(frozen);
+    } else if (value instanceof Date) {
+      return ((Date) value).clone();
+    }
+    return value;
+  }
+
+  static boolean isImmutable(Object value) {
+    return value instanceof String || value instanceof Boolean || value instanceof Character
+        || value instanceof Integer || value instanceof Long || value instanceof Double
+        || value instanceof Float || value instanceof Short || value instanceof Byte
+        || value instanceof BigDecimal || value instanceof BigInteger || value instanceof Enum
+        || value instanceof UUID || value instanceof Locale || value instanceof Class
+        || value.getClass().getName().startsWith("java.time.");
+  }
+
+  static Object serialCopy(Object value) throws UncopyableException {
+    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(value);
+      oos.flush();
+      try (ObjectInputStream ois =
+          new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+        return ois.readObject();
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      throw new UncopyableException();
+    }
+  }
+
+  static Object shallowClone(Object value) {
+    Method clone = CLONE_METHODS.get(value.getClass());
+    if (clone != null) {
+      try {
+        return clone.invoke(value);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // fall back to the other copy ways
+      }
+    }
+    return null;
+  }
+
+  Region createRegion(QueryHint hint) {
+    Long hintTtl = toLong(getHintValue(hint, HINT_TTL));
+    Integer hintMaxEntries = toInteger(getHintValue(hint, HINT_MAX_ENTRIES));
+    return new Region(hintTtl == null ? ttl : hintTtl,
+        hintMaxEntries == null ? maxEntries : hintMaxEntries,
+        split(getHintValue(hint, HINT_DEPENDS_ON), ",", true, true));
+  }
+
+  String getHintValue(QueryHint hint, String name) {
+    List<QueryHintParameter> params = hint.getParameters(name);
+    return params.isEmpty() ? null : params.get(0).getValue();
+  }
+
+  long[] stamp(String[] aggregateTypes) {
+    long[] stamp = new long[aggregateTypes.length];
+    for (int i = 0; i < stamp.length; i++) {
+      AtomicLong generation = generations.get(aggregateTypes[i]);
+      stamp[i] = generation == null ? 0 : generation.get();
+    }
+    return stamp;
+  }
+
+  static class CacheKey {
+    final String kind;
+    final Object key;
+    final int hash;
+
+    CacheKey(String kind, Object key) {
+      this.kind = kind;
+      this.key = key;
+      hash = Objects.hash(kind, key);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) obj;
+      return hash == other.hash && Objects.equals(kind, other.kind)
+          && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  static class Region {
+    final long ttl;
+    final String[] dependsOn;
+    final Map<CacheKey, Object[]> entries;
+
+    Region(long ttl, int maxEntries, String[] dependsOn) {
+      this.ttl = ttl;
+      this.dependsOn = dependsOn;
+      final int max = Math.max(maxEntries, 1);
+      entries = new LinkedHashMap<CacheKey, Object[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 4961716264096286342L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, Object[]> eldest) {
+          return size() > max;
+        }
+      };
+    }
+
+    synchronized void clear() {
+      entries.clear();
+    }
+
+    /**
+     * Returns an array that holds the cached result and the expiration time, returns null if not
+     * cached or expired.
+     */
+    synchronized Object[] get(CacheKey key) {
+      Object[] entry = entries.get(key);
+      if (entry != null && (Long) entry[1] <= System.currentTimeMillis()) {
+        entries.remove(key);
+        return null;
+      }
+      return entry;
+    }
+
+    synchronized void put(CacheKey key, Object result, BooleanSupplier valid) {
+      if (ttl > 0 && valid.getAsBoolean()) {
+        entries.put(key, new Object[] {result, System.currentTimeMillis() + ttl});
+      }
+    }
+  }
+
+  static class UncopyableException extends Exception {
+
+    private static final long serialVersionUID = -3391624816542771932L;
+
+    UncopyableException() {
+      super(null, null, false, false);
+    }
+  }
+}
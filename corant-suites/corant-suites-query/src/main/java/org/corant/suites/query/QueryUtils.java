@@ -20,6 +20,7 @@ import static org.corant.shared.util.StringUtils.isBlank;
 import static org.corant.shared.util.StringUtils.split;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,6 +35,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
@@ -47,14 +49,14 @@ import com.fasterxml.jackson.datatype.jsr310.ser.LocalTimeSerializer;
  */
 public class QueryUtils {
 
-  public static final ObjectMapper ESJOM = new ObjectMapper().registerModule(new JavaTimeModule())
-      .registerModule(new SimpleModule()
-          .addSerializer(new LocalDateSerializer(DateTimeFormatter.ISO_LOCAL_DATE))
-          .addSerializer(new LocalDateTimeSerializer(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-          .addSerializer(new LocalTimeSerializer(DateTimeFormatter.ISO_LOCAL_TIME)))
-      .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS)
-      .enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
-      .disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS);
+  public static final ObjectMapper ESJOM = configureEsObjectMapper(new ObjectMapper());
+
+  /**
+   * The SMILE object mapper that configured in the same way as the {@link #ESJOM}, used to read the
+   * SMILE sources of the search hits.
+   */
+  public static final ObjectMapper ESSOM =
+      configureEsObjectMapper(new ObjectMapper(new SmileFactory()));
 
   public static <T> T converDataFromJsonStr(String str, Class<T> cls) {
     if (str == null) {
@@ -104,8 +106,104 @@ public class QueryUtils {
     }
   }
 
+  /**
+   * Resolve the key value of the fetched result in batch fetch mode, the key is used to fan out the
+   * fetched results to the parent results, the number values are normalized so that the values of
+   * different number types can match each other.
+   *
+   * @param fetched the fetched result
+   * @param keyName the property name of the key, may be a dot separated path for map result
+   * @return the normalized key value
+   */
+  public static Object resolveFetchBatchKey(Object fetched, String keyName) {
+    Object key = null;
+    if (fetched instanceof Map) {
+      if (keyName.indexOf('.') != -1) {
+        List<Object> keyVal = new ArrayList<>();
+        extractResult(fetched, keyName, true, keyVal);
+        key = keyVal.isEmpty() ? null : keyVal.get(0);
+      } else {
+        key = Map.class.cast(fetched).get(keyName);
+      }
+    } else if (fetched != null) {
+      try {
+        key = BeanUtils.getProperty(fetched, keyName);
+      } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+        throw new QueryRuntimeException(
+            String.format("Can not extract batch key [%s] from fetched result!", keyName), e);
+      }
+    }
+    return normalizeFetchBatchKey(key);
+  }
+
+  /**
+   * Normalize the batch fetch key, number values are converted to plain string without trailing
+   * zeros, other values and the non-finite floating point values are converted to string.
+   *
+   * @param key
+   * @return the normalized key value
+   */
+  public static Object normalizeFetchBatchKey(Object key) {
+    if (key == null) {
+      return null;
+    } else if (key instanceof Double && !Double.isFinite((Double) key)
+        || key instanceof Float && !Float.isFinite((Float) key)) {
+      return key.toString();
+    } else if (key instanceof Number) {
+      return new BigDecimal(key.toString()).stripTrailingZeros().toPlainString();
+    } else {
+      return key.toString();
+    }
+  }
+
   public static Map<String, Object> resolveFetchParam(Object obj, FetchQuery fetchQuery,
       Map<String, Object> param) {
+    if (obj == null) {
+      return doResolveFetchParam(obj, fetchQuery, param);
+    }
+    // the fetch queries of one result may be executed concurrently
+    synchronized (obj) {
+      return doResolveFetchParam(obj, fetchQuery, param);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public static void resolveFetchResult(Object result, Object fetchedResult, String injectProName) {
+    if (isBlank(injectProName) || result == null) {
+      return;
+    }
+    // the fetch queries of one result may be executed concurrently
+    synchronized (result) {
+      if (result instanceof Map) {
+        if (injectProName.indexOf('.') != -1) {
+          Map<String, Object> mapResult = Map.class.cast(result);
+          putKeyPathMapValue(mapResult, injectProName, ".", fetchedResult);
+        } else {
+          Map.class.cast(result).put(injectProName, fetchedResult);
+        }
+      } else {
+        try {
+          BeanUtils.setProperty(result, injectProName, fetchedResult);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+          throw new QueryRuntimeException(e);
+        }
+      }
+    }
+  }
+
+  static ObjectMapper configureEsObjectMapper(ObjectMapper objectMapper) {
+    return objectMapper.registerModule(new JavaTimeModule())
+        .registerModule(new SimpleModule()
+            .addSerializer(new LocalDateSerializer(DateTimeFormatter.ISO_LOCAL_DATE))
+            .addSerializer(new LocalDateTimeSerializer(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+            .addSerializer(new LocalTimeSerializer(DateTimeFormatter.ISO_LOCAL_TIME)))
+        .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS)
+        .enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS);
+  }
+
+  static Map<String, Object> doResolveFetchParam(Object obj, FetchQuery fetchQuery,
+      Map<String, Object> param) {
     Map<String, Object> pmToUse = new HashMap<>();
     fetchQuery.getParameters().forEach(p -> {
       if (p.getSource() == FetchQueryParameterSource.C) {
@@ -139,27 +237,6 @@ public class QueryUtils {
     return pmToUse;
   }
 
-  @SuppressWarnings("unchecked")
-  public static void resolveFetchResult(Object result, Object fetchedResult, String injectProName) {
-    if (isBlank(injectProName)) {
-      return;
-    }
-    if (result instanceof Map) {
-      if (injectProName.indexOf('.') != -1) {
-        Map<String, Object> mapResult = Map.class.cast(result);
-        putKeyPathMapValue(mapResult, injectProName, ".", fetchedResult);
-      } else {
-        Map.class.cast(result).put(injectProName, fetchedResult);
-      }
-    } else if (result != null) {
-      try {
-        BeanUtils.setProperty(result, injectProName, fetchedResult);
-      } catch (IllegalAccessException | InvocationTargetException e) {
-        throw new QueryRuntimeException(e);
-      }
-    }
-  }
-
   static boolean interruptExtract(Object result, String[] paths, boolean flatList,
       List<Object> list) {
     if (isEmpty(paths)) {
@@ -21,9 +21,17 @@ import static org.corant.shared.util.StringUtils.isNotBlank;
 import static org.corant.suites.query.sqlquery.SqlHelper.getLimit;
 import static org.corant.suites.query.sqlquery.SqlHelper.getOffset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 import javax.enterprise.context.ApplicationScoped;
@@ -32,25 +40,47 @@ import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import org.corant.shared.exception.CorantRuntimeException;
 import org.corant.shared.util.ObjectUtils.Pair;
+import org.corant.suites.query.FetchQueryExecutor;
+import org.corant.suites.query.QueryResultCache;
 import org.corant.suites.query.QueryRuntimeException;
 import org.corant.suites.query.QueryUtils;
 import org.corant.suites.query.esquery.EsInLineNamedQueryResolver.Querier;
 import org.corant.suites.query.mapping.FetchQuery;
 import org.corant.suites.query.mapping.QueryHint;
 import org.corant.suites.query.spi.ResultHintHandler;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * corant-suites-query
  *
+ * The search responses of the queries that declare the cache hint are cached by the index name
+ * and the rendered script, see {@link QueryResultCache}. The concurrent identical searches share
+ * one outstanding search response instead of each hitting the cluster, unless it is disabled by
+ * {@link #ES_COALESCE_SEARCHES}. The cached or shared responses are decoded for each caller, so
+ * the results are never shared.
+ *
  * @author bingo 下午8:20:43
  *
  */
 @ApplicationScoped
 public abstract class AbstractEsNamedQuery implements EsNamedQuery {
 
+  public static final String ES_FETCH_MULTI_SEARCH_SIZE = "query.es.fetch.multiSearchSize";
+  public static final String ES_COALESCE_SEARCHES = "query.es.coalesceSearches";
+  public static final String ES_COALESCE_TIMEOUT = "query.es.coalesceTimeout";
+
   protected EsQueryExecutor executor;
 
+  protected final Map<Class<?>, EsHitReader> hitReaders = new ConcurrentHashMap<>();
+
+  protected final Map<Pair<String, String>, CompletableFuture<SearchResponse>> inflightSearches =
+      new ConcurrentHashMap<>();
+
   @Inject
   Logger logger;
 
@@ -61,12 +91,29 @@ public abstract class AbstractEsNamedQuery implements EsNamedQuery {
   @Any
   Instance<ResultHintHandler> resultHintHandlers;
 
+  @Inject
+  FetchQueryExecutor fetchExecutor;
+
+  @Inject
+  QueryResultCache resultCache;
+
+  @Inject
+  @ConfigProperty(name = ES_FETCH_MULTI_SEARCH_SIZE, defaultValue = "64")
+  int multiSearchSize;
+
+  @Inject
+  @ConfigProperty(name = ES_COALESCE_SEARCHES, defaultValue = "true")
+  boolean coalesceSearches;
+
+  @Inject
+  @ConfigProperty(name = ES_COALESCE_TIMEOUT, defaultValue = "60000")
+  long coalesceTimeout;
+
   @Override
   public Map<String, Object> aggregate(String q, Map<String, Object> param) {
     Querier<String, FetchQuery, QueryHint> querier = getResolver().resolve(q, param);
-    String script = querier.getScript();
     try {
-      return getExecutor().searchAggregation(resolveIndexName(q), script);
+      return getExecutor().readAggregation(executeSearch(q, param, querier));
     } catch (Exception e) {
       throw new QueryRuntimeException(e);
     }
@@ -103,9 +150,8 @@ public abstract class AbstractEsNamedQuery implements EsNamedQuery {
   @Override
   public Map<String, Object> search(String q, Map<String, Object> param) {
     Querier<String, FetchQuery, QueryHint> querier = getResolver().resolve(q, param);
-    String script = querier.getScript();
     try {
-      return getExecutor().search(resolveIndexName(q), script);
+      return getExecutor().readResponse(executeSearch(q, param, querier));
     } catch (Exception e) {
       throw new QueryRuntimeException(e);
     }
@@ -117,71 +163,204 @@ public abstract class AbstractEsNamedQuery implements EsNamedQuery {
     return hits.getValue();
   }
 
+  /**
+   * Returns a stream of all the hits, the hits are pulled in batches with scroll or search_after,
+   * the fetch queries and the result hints are applied to each batch as it goes by. The caller must
+   * close the returned stream to release the scroll.
+   *
+   * @see EsHitBatchIterator
+   */
   @Override
   public <T> Stream<T> stream(String q, Map<String, Object> param) {
-    return Stream.empty();
+    Querier<String, FetchQuery, QueryHint> querier = getResolver().resolve(q, param);
+    Class<T> rcls = querier.getResultClass();
+    List<FetchQuery> fetchQueries = querier.getFetchQueries();
+    List<QueryHint> hints = querier.getHints();
+    String script = querier.getScript();
+    log("stream-> " + q, param, script);
+    Stream<List<T>> batches = getExecutor().streamHits(resolveIndexName(q), script,
+        getHitReader(rcls), resolveStreamKeepAlive(), resolveStreamBatchSize());
+    return batches.flatMap(batch -> {
+      this.fetch(batch, fetchQueries, param);
+      handleResultHints(hints, batch);
+      return batch.stream();
+    }).onClose(batches::close);
   }
 
-  protected <T> void fetch(List<T> list, List<FetchQuery> fetchQueries, Map<String, Object> param) {
-    if (!isEmpty(list) && !isEmpty(fetchQueries)) {
-      list.forEach(e -> fetchQueries.stream().forEach(f -> fetch(e, f, new HashMap<>(param))));
+  /**
+   * Execute the search or join the identical search that is in flight, the joined callers wait at
+   * most {@link #ES_COALESCE_TIMEOUT} milliseconds.
+   */
+  protected SearchResponse coalesceSearch(String indexName, String script) throws Exception {
+    if (!coalesceSearches) {
+      return getExecutor().execute(indexName, script);
+    }
+    final Pair<String, String> key = Pair.of(indexName, script);
+    final CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+    final CompletableFuture<SearchResponse> inflight = inflightSearches.putIfAbsent(key, future);
+    if (inflight != null) {
+      try {
+        return inflight.get(coalesceTimeout, TimeUnit.MILLISECONDS);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new QueryRuntimeException(e);
+      } catch (TimeoutException e) {
+        throw new QueryRuntimeException(e,
+            "Timed out waiting for the in flight search of index %s.", indexName);
+      }
+    }
+    try {
+      SearchResponse response = getExecutor().execute(indexName, script);
+      future.complete(response);
+      return response;
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+      throw t;
+    } finally {
+      inflightSearches.remove(key, future);
     }
   }
 
-  protected <T> void fetch(T obj, FetchQuery fetchQuery, Map<String, Object> param) {
-    if (null == obj || fetchQuery == null) {
+  /**
+   * Execute the search of the query, the response is cached if the query declares the cache hint,
+   * the cached response is shared since it's read only, the hits are read into new results.
+   */
+  protected SearchResponse executeSearch(String q, Map<String, Object> param,
+      Querier<String, FetchQuery, QueryHint> querier) throws Exception {
+    final String indexName = resolveIndexName(q);
+    final String script = querier.getScript();
+    log(q, param, script);
+    return getResultCache().computeIfAbsent(q, querier.getHints(), indexName, script, () -> {
+      try {
+        return coalesceSearch(indexName, script);
+      } catch (QueryRuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new QueryRuntimeException(e);
+      }
+    }, UnaryOperator.identity());
+  }
+
+  /**
+   * Fetch the fetch queries of all the given results, the searches of the fetch queries are sent in
+   * multi search requests of at most {@link #resolveMultiSearchSize()} searches, the responses are
+   * mapped back to the results by position. The fetched results of the same fetch query are fetched
+   * together in the next level.
+   */
+  protected <T> void fetch(List<T> list, List<FetchQuery> fetchQueries, Map<String, Object> param) {
+    if (isEmpty(list) || isEmpty(fetchQueries)) {
       return;
     }
-    Map<String, Object> fetchParam = QueryUtils.resolveFetchParam(obj, fetchQuery, param);
-    boolean multiRecords = fetchQuery.isMultiRecords();
-    String injectProName = fetchQuery.getInjectPropertyName();
-    String refQueryName = fetchQuery.getVersionedReferenceQueryName();
-    Querier<String, FetchQuery, QueryHint> querier = resolver.resolve(refQueryName, fetchParam);
-    String script = querier.getScript();
-    Class<?> rcls = defaultObject(fetchQuery.getResultClass(), querier.getResultClass());
-    List<FetchQuery> fetchQueries = querier.getFetchQueries();
+    List<FetchSearch> searches = new ArrayList<>();
+    list.forEach(e -> fetchQueries.forEach(f -> {
+      if (e != null && f != null) {
+        searches.add(new FetchSearch(e, f, new HashMap<>(param)));
+      }
+    }));
+    int size = Math.max(resolveMultiSearchSize(), 1);
+    List<Runnable> tasks = new ArrayList<>();
+    for (int i = 0; i < searches.size(); i += size) {
+      List<FetchSearch> batch = searches.subList(i, Math.min(i + size, searches.size()));
+      tasks.add(() -> this.multiFetch(batch));
+    }
+    getFetchExecutor().execute(tasks);
+    Map<FetchQuery, Pair<List<FetchQuery>, List<Object>>> nexts = new LinkedHashMap<>();
+    searches.stream().filter(fs -> !isEmpty(fs.fetchedList)).forEach(fs -> nexts
+        .computeIfAbsent(fs.fetchQuery,
+            f -> Pair.of(fs.querier.getFetchQueries(), new ArrayList<>()))
+        .getValue().addAll(fs.fetchedList));
+    nexts.values().forEach(n -> this.fetch(n.getValue(), n.getKey(), param));
+  }
+
+  protected <T> void fetch(T obj, List<FetchQuery> fetchQueries, Map<String, Object> param) {
+    if (obj != null) {
+      this.fetch(Collections.singletonList(obj), fetchQueries, param);
+    }
+  }
+
+  /**
+   * Execute the searches in one multi search request and inject the fetched results.
+   */
+  protected void multiFetch(List<FetchSearch> searches) {
+    MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+    searches.forEach(fs -> {
+      log("fetch-> " + fs.refQueryName, fs.fetchParam, fs.querier.getScript());
+      multiSearchRequest.add(getExecutor().buildSearchRequest(fs.querier.getScript(),
+          resolveIndexName(fs.refQueryName)));
+    });
     try {
-      log("fetch-> " + refQueryName, fetchParam, script);
-      Pair<Long, List<Map<String, Object>>> hits =
-          getExecutor().searchHits(resolveIndexName(refQueryName), script);
-      if (!isEmpty(hits.getValue())) {
-        List<Object> fetchedList = new ArrayList<>();
-        for (Map<String, Object> map : hits.getValue()) {
-          fetchedList.add(getObjectMapper().convertValue(map, rcls));
+      MultiSearchResponse.Item[] items = getExecutor().execute(multiSearchRequest).getResponses();
+      for (int i = 0; i < items.length; i++) {
+        if (items[i].isFailure()) {
+          throw new QueryRuntimeException(items[i].getFailure());
         }
-        Object fetchedResult = null;
-        if (multiRecords) {
-          fetchedResult = fetchedList;
-        } else if (!isEmpty(fetchedList)) {
-          fetchedResult = fetchedList.get(0);
-          fetchedList = fetchedList.subList(0, 1);
+        FetchSearch fs = searches.get(i);
+        List<Object> fetchedList = XContentUtils.readHits(items[i].getResponse().getHits(),
+            getHitReader(fs.resultClass));
+        if (!isEmpty(fetchedList)) {
+          Object fetchedResult;
+          if (fs.fetchQuery.isMultiRecords()) {
+            fetchedResult = fetchedList;
+          } else {
+            fetchedResult = fetchedList.get(0);
+            fetchedList = fetchedList.subList(0, 1);
+          }
+          final Object result = fetchedResult;
+          final List<Object> fetched = fetchedList;
+          FetchQueryExecutor.inject(() -> {
+            QueryUtils.resolveFetchResult(fs.obj, result, fs.fetchQuery.getInjectPropertyName());
+            fs.fetchedList = fetched;
+          });
         }
-        QueryUtils.resolveFetchResult(obj, fetchedResult, injectProName);
-        this.fetch(fetchedList, fetchQueries, param);
       }
+    } catch (QueryRuntimeException e) {
+      throw e;
     } catch (Exception e) {
       throw new QueryRuntimeException(e);
     }
   }
 
-  protected <T> void fetch(T obj, List<FetchQuery> fetchQueries, Map<String, Object> param) {
-    if (obj != null && !isEmpty(fetchQueries)) {
-      fetchQueries.stream().forEach(f -> this.fetch(obj, f, new HashMap<>(param)));
-    }
-  }
-
   protected EsQueryExecutor getExecutor() {
     return executor;
   }
 
+  protected FetchQueryExecutor getFetchExecutor() {
+    return fetchExecutor;
+  }
+
+  /**
+   * Returns the cached hit reader that reads the JSON or SMILE hit source into the result class.
+   */
+  protected EsHitReader getHitReader(Class<?> resultClass) {
+    return hitReaders.computeIfAbsent(defaultObject(resultClass, Map.class),
+        c -> EsHitReader.of(getObjectMapper(), getSmileObjectMapper(), c));
+  }
+
   protected ObjectMapper getObjectMapper() {
     return QueryUtils.ESJOM;
   }
 
+  /**
+   * Returns the SMILE object mapper that configured in the same way as the
+   * {@link #getObjectMapper()}.
+   */
+  protected ObjectMapper getSmileObjectMapper() {
+    return QueryUtils.ESSOM;
+  }
+
   protected EsInLineNamedQueryResolver<String, Map<String, Object>, String, FetchQuery, QueryHint> getResolver() {
     return resolver;
   }
 
+  protected QueryResultCache getResultCache() {
+    return resultCache;
+  }
+
   protected void handleResultHints(List<QueryHint> hints, Object result) {
     if (result != null && !resultHintHandlers.isUnsatisfied()) {
       hints.forEach(qh -> {
@@ -212,16 +391,11 @@ public abstract class AbstractEsNamedQuery implements EsNamedQuery {
     Querier<String, FetchQuery, QueryHint> querier = getResolver().resolve(q, param);
     Class<T> rcls = querier.getResultClass();
     List<FetchQuery> fetchQueries = querier.getFetchQueries();
-    String script = querier.getScript();
     try {
-      log(q, param, script);
-      Pair<Long, List<Map<String, Object>>> hits =
-          getExecutor().searchHits(resolveIndexName(q), script);
-      List<T> result = new ArrayList<>();
-      if (!isEmpty(hits.getValue())) {
-        for (Map<String, Object> map : hits.getValue()) {
-          result.add(getObjectMapper().convertValue(map, rcls));
-        }
+      Pair<Long, List<T>> hits =
+          getExecutor().readHits(executeSearch(q, param, querier), getHitReader(rcls));
+      List<T> result = hits.getValue();
+      if (!isEmpty(result)) {
         this.fetch(result, fetchQueries, param);
       }
       handleResultHints(querier.getHints(), result);
@@ -231,7 +405,47 @@ public abstract class AbstractEsNamedQuery implements EsNamedQuery {
     }
   }
 
+  /**
+   * Returns the batch size of the stream if the script does not specify the size.
+   */
+  protected int resolveStreamBatchSize() {
+    return EsHitBatchIterator.DFLT_BATCH_SIZE;
+  }
+
+  protected TimeValue resolveStreamKeepAlive() {
+    return TimeValue.timeValueMinutes(1);
+  }
+
+  /**
+   * Returns the maximum number of the fetch searches in one multi search request.
+   */
+  protected int resolveMultiSearchSize() {
+    return multiSearchSize;
+  }
+
   protected void setExecutor(EsQueryExecutor executor) {
     this.executor = executor;
   }
+
+  /**
+   * The search of a fetch query for one result.
+   */
+  protected class FetchSearch {
+    final Object obj;
+    final FetchQuery fetchQuery;
+    final Map<String, Object> fetchParam;
+    final String refQueryName;
+    final Querier<String, FetchQuery, QueryHint> querier;
+    final Class<?> resultClass;
+    volatile List<Object> fetchedList;
+
+    FetchSearch(Object obj, FetchQuery fetchQuery, Map<String, Object> param) {
+      this.obj = obj;
+      this.fetchQuery = fetchQuery;
+      fetchParam = QueryUtils.resolveFetchParam(obj, fetchQuery, param);
+      refQueryName = fetchQuery.getVersionedReferenceQueryName();
+      querier = getResolver().resolve(refQueryName, fetchParam);
+      resultClass = defaultObject(fetchQuery.getResultClass(), querier.getResultClass());
+    }
+  }
 }
@@ -26,11 +26,22 @@ import org.corant.suites.query.mapping.Query;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonpCharacterEscapes;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import freemarker.template.TemplateException;
 
 /**
  * corant-suites-query
  *
+ * The rendered script is passed to the executor as is and is parsed only once when the search
+ * request is built. The parameter values are the only untrusted content of the script, each of them
+ * is converted to a JSON value with the JSONP character escapes before rendering, so a parameter
+ * can not break the JSON structure of the script.
+ *
+ * NOTE: Since the script is no longer read into a map and written back before it is passed to the
+ * executor, a duplicate key in the rendered script is not collapsed to its last value any more, the
+ * Elasticsearch parser rejects it with the strict duplicate detection that is enabled by default,
+ * so the templates must render each key of an object once.
+ *
  * @author bingo 下午8:25:44
  *
  */
@@ -38,6 +49,7 @@ public class DefaultEsNamedQueryTpl
     extends FreemarkerDynamicQueryTpl<DefaultEsNamedQuerier, Map<String, Object>> {
 
   public final static ObjectMapper OM = new ObjectMapper();
+  public final static ObjectWriter OW = OM.writer(JsonpCharacterEscapes.instance());
 
   /**
    * @param query
@@ -56,7 +68,7 @@ public class DefaultEsNamedQueryTpl
         if (convertedParam.containsKey(pn)) {
           try {
             Object cvtVal = conversionService.convert(param.get(pn), pc);
-            String jsonVal = cvtVal == null ? null : OM.writeValueAsString(cvtVal);
+            String jsonVal = cvtVal == null ? null : OW.writeValueAsString(cvtVal);
             convertedParam.put(pn, jsonVal);
           } catch (JsonProcessingException e) {
             throw new CorantRuntimeException(e, "Can not convert parameter %s to json string", pn);
@@ -72,11 +84,8 @@ public class DefaultEsNamedQueryTpl
       DynamicQueryTplMmResolver<Map<String, Object>> tmm) {
     try (StringWriter sw = new StringWriter()) {
       getTemplate().process(param, sw);
-      return new DefaultEsNamedQuerier(
-          OM.writer(JsonpCharacterEscapes.instance())
-              .writeValueAsString(OM.readValue(sw.toString(), Object.class)),
-          getResultClass(), getHints(), getFetchQueries());// FIXME Do some
-                                                           // protection
+      return new DefaultEsNamedQuerier(sw.toString(), getResultClass(), getHints(),
+          getFetchQueries());
     } catch (TemplateException | IOException | NullPointerException e) {
       throw new QueryRuntimeException("Freemarker process stringTemplate is error", e);
     }
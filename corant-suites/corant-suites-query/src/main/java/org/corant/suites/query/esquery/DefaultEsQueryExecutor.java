@@ -13,9 +13,13 @@
  */
 package org.corant.suites.query.esquery;
 
+import java.util.concurrent.Future;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.unit.TimeValue;
 
 /**
  * corant-suites-query
@@ -32,9 +36,29 @@ public class DefaultEsQueryExecutor implements EsQueryExecutor {
     this.transportClient = transportClient;
   }
 
+  @Override
+  public void clearScroll(String scrollId) {
+    transportClient.prepareClearScroll().addScrollId(scrollId).execute();
+  }
+
+  @Override
+  public MultiSearchResponse execute(MultiSearchRequest multiSearchRequest) throws Exception {
+    return transportClient.multiSearch(multiSearchRequest).get();
+  }
+
   @Override
   public SearchResponse execute(SearchRequest searchRequest) throws Exception {
     return transportClient.search(searchRequest).get();
   }
 
+  @Override
+  public Future<SearchResponse> submit(SearchRequest searchRequest) {
+    return transportClient.search(searchRequest);
+  }
+
+  @Override
+  public Future<SearchResponse> submitScroll(String scrollId, TimeValue keepAlive) {
+    return transportClient.prepareSearchScroll(scrollId).setScroll(keepAlive).execute();
+  }
+
 }
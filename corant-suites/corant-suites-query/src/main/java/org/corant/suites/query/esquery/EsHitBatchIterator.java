@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.esquery;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Future;
+import org.corant.suites.query.QueryRuntimeException;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+
+/**
+ * corant-suites-query
+ *
+ * Iterate over all the hits of a search request batch by batch, the result window limit does not
+ * apply. If the search request declares sorts the batches are pulled with search_after on the sort
+ * values of the last hit, the sorts should end with a unique tie breaker field; otherwise the
+ * batches are pulled with a scroll sorted by _doc. The next batch is requested as soon as the
+ * current batch is received, so at most one batch is prefetched.
+ *
+ * NOTE: The search_after batches are not a point in time snapshot of the index. The iterator must
+ * be closed to release the scroll if it is not exhausted.
+ *
+ * @author bingo 下午6:12:40
+ *
+ */
+public class EsHitBatchIterator<T> implements Iterator<List<T>>, AutoCloseable {
+
+  public static final int DFLT_BATCH_SIZE = 500;
+
+  final EsQueryExecutor executor;
+  final SearchRequest request;
+  final EsHitReader reader;
+  final TimeValue keepAlive;
+  final boolean searchAfter;
+  final int batchSize;
+
+  Future<SearchResponse> pending;
+  String scrollId;
+  List<T> next;
+  boolean exhausted;
+
+  public EsHitBatchIterator(EsQueryExecutor executor, SearchRequest request, EsHitReader reader,
+      TimeValue keepAlive, int batchSize) {
+    this.executor = executor;
+    this.request = request;
+    this.reader = reader;
+    this.keepAlive = keepAlive;
+    SearchSourceBuilder source = request.source();
+    if (source == null) {
+      request.source(source = new SearchSourceBuilder());
+    }
+    if (source.size() > 0) {
+      this.batchSize = source.size();
+    } else {
+      this.batchSize = batchSize > 0 ? batchSize : DFLT_BATCH_SIZE;
+    }
+    source.from(0).size(this.batchSize);
+    searchAfter = source.sorts() != null && !source.sorts().isEmpty();
+    if (!searchAfter) {
+      source.sort(SortBuilders.fieldSort(FieldSortBuilder.DOC_FIELD_NAME));
+      request.scroll(keepAlive);
+    }
+  }
+
+  /**
+   * Cancel the prefetching and clear the scroll.
+   */
+  @Override
+  public void close() {
+    exhausted = true;
+    next = null;
+    if (pending != null) {
+      pending.cancel(true);
+      pending = null;
+    }
+    if (scrollId != null) {
+      executor.clearScroll(scrollId);
+      scrollId = null;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null && !exhausted) {
+      next = pull();
+    }
+    return next != null;
+  }
+
+  @Override
+  public List<T> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<T> batch = next;
+    next = null;
+    return batch;
+  }
+
+  List<T> pull() {
+    try {
+      if (pending == null) {
+        pending = executor.submit(request);
+      }
+      SearchResponse response = pending.get();
+      pending = null;
+      if (!searchAfter && response.getScrollId() != null) {
+        scrollId = response.getScrollId();
+      }
+      SearchHits hits = response.getHits();
+      int length = hits == null ? 0 : hits.getHits().length;
+      if (length == 0) {
+        close();
+        return null;
+      }
+      if (length < batchSize) {
+        close();
+      } else if (searchAfter) {
+        request.source().searchAfter(hits.getAt(length - 1).getSortValues());
+        pending = executor.submit(request);
+      } else {
+        pending = executor.submitScroll(scrollId, keepAlive);
+      }
+      return XContentUtils.readHits(hits, reader);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new QueryRuntimeException(e);
+    } catch (Exception e) {
+      close();
+      throw new QueryRuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.esquery;
+
+import org.corant.suites.query.QueryUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * corant-suites-query
+ *
+ * The object readers of a result type that read the search hit sources, the transport client
+ * receives the sources in SMILE by default, they are read by the SMILE reader directly and the JSON
+ * sources are read by the JSON reader, see {@link XContentUtils#readSource}. The readers are
+ * immutable and should be cached per result type by the caller.
+ *
+ * @author bingo 下午6:35:20
+ *
+ */
+public class EsHitReader {
+
+  final ObjectReader jsonReader;
+  final ObjectReader smileReader;
+
+  /**
+   * @param jsonReader the reader that built on a JSON object mapper
+   * @param smileReader the reader that built on a SMILE object mapper with the same configuration
+   */
+  public EsHitReader(ObjectReader jsonReader, ObjectReader smileReader) {
+    this.jsonReader = jsonReader;
+    this.smileReader = smileReader;
+  }
+
+  /**
+   * Returns the readers of the given result type that built on the {@link QueryUtils#ESJOM} and the
+   * {@link QueryUtils#ESSOM}.
+   */
+  public static EsHitReader of(Class<?> resultClass) {
+    return of(QueryUtils.ESJOM, QueryUtils.ESSOM, resultClass);
+  }
+
+  /**
+   * Returns the readers of the given result type that built on the given JSON and SMILE object
+   * mappers, the two mappers should be configured in the same way.
+   */
+  public static EsHitReader of(ObjectMapper jsonMapper, ObjectMapper smileMapper,
+      Class<?> resultClass) {
+    return new EsHitReader(jsonMapper.readerFor(resultClass), smileMapper.readerFor(resultClass));
+  }
+
+  public ObjectReader getJsonReader() {
+    return jsonReader;
+  }
+
+  public ObjectReader getSmileReader() {
+    return smileReader;
+  }
+
+}
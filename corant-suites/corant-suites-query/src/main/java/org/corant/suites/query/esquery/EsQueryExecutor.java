@@ -20,11 +20,18 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.corant.shared.util.ObjectUtils.Pair;
 import org.corant.suites.query.QueryRuntimeException;
-import org.corant.suites.query.QueryUtils;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
@@ -41,6 +48,7 @@ public interface EsQueryExecutor {
   String[] HIT_RS_ETR_PATHS = split(HIT_RS_ETR_PATH, ".");
   String AGG_RS_ETR_PATH = "aggregations";
   String SUG_RS_ERT_PATH = "suggest";
+  EsHitReader HIT_MAP_READER = EsHitReader.of(Map.class);
 
   default SearchRequest buildSearchRequest(String script, String... indexNames) {
     try (XContentParser parser = XContentUtils.createParser(JsonXContent.jsonXContent, script)) {
@@ -50,24 +58,25 @@ public interface EsQueryExecutor {
     }
   }
 
+  /**
+   * Clear the scroll, the scroll is released asynchronously and the failures are ignored.
+   *
+   * @param scrollId the scroll id
+   */
+  void clearScroll(String scrollId);
+
   SearchResponse execute(SearchRequest searchRequest) throws Exception;
 
+  MultiSearchResponse execute(MultiSearchRequest multiSearchRequest) throws Exception;
+
   default SearchResponse execute(String indexName, String script) throws Exception {
     return execute(buildSearchRequest(script, indexName));
   }
 
-  default Map<String, Object> search(String indexName, String script) throws Exception {
-    SearchResponse searchResponse = execute(indexName, script);
-    if (searchResponse != null) {
-      Map<String, Object> result = XContentUtils.searchResponseToMap(searchResponse);
-      return result;
-    } else {
-      return new HashMap<>();
-    }
-  }
-
-  default Map<String, Object> searchAggregation(String indexName, String script) throws Exception {
-    SearchResponse searchResponse = execute(indexName, script);
+  /**
+   * Read the aggregations of the search response into a map.
+   */
+  default Map<String, Object> readAggregation(SearchResponse searchResponse) throws Exception {
     if (searchResponse != null) {
       Map<String, Object> result =
           XContentUtils.searchResponseToMap(searchResponse, AGG_RS_ETR_PATH);
@@ -79,22 +88,77 @@ public interface EsQueryExecutor {
     return new HashMap<>();
   }
 
-  default Pair<Long, List<Map<String, Object>>> searchHits(String indexName, String script)
+  /**
+   * Read the total hits and the source of each hit of the search response into the type of the
+   * given reader.
+   */
+  default <T> Pair<Long, List<T>> readHits(SearchResponse searchResponse, EsHitReader reader)
       throws Exception {
-    List<Map<String, Object>> list = new ArrayList<>();
-    SearchResponse searchResponse = execute(indexName, script);
-    long total = 0;
+    if (searchResponse != null && searchResponse.getHits() != null) {
+      return Pair.of(searchResponse.getHits().getTotalHits(),
+          XContentUtils.readHits(searchResponse.getHits(), reader));
+    }
+    return Pair.of(0L, new ArrayList<>());
+  }
+
+  /**
+   * Convert the search response to a map.
+   */
+  default Map<String, Object> readResponse(SearchResponse searchResponse) throws Exception {
     if (searchResponse != null) {
-      total = searchResponse.getHits() != null ? searchResponse.getHits().getTotalHits() : 0;
-      if (total > 0) {
-        Map<String, Object> result =
-            XContentUtils.searchResponseToMap(searchResponse, HIT_RS_ETR_PATH);
-        List<Object> extracted = new ArrayList<>();
-        QueryUtils.extractResult(result, HIT_RS_ETR_PATHS, false, extracted);
-        extracted.forEach(obj -> list.add(forceCast(obj)));
-      }
+      Map<String, Object> result = XContentUtils.searchResponseToMap(searchResponse);
+      return result;
+    } else {
+      return new HashMap<>();
     }
-    return Pair.of(total, list);
   }
 
+  default Map<String, Object> search(String indexName, String script) throws Exception {
+    return readResponse(execute(indexName, script));
+  }
+
+  default Map<String, Object> searchAggregation(String indexName, String script) throws Exception {
+    return readAggregation(execute(indexName, script));
+  }
+
+  default Pair<Long, List<Map<String, Object>>> searchHits(String indexName, String script)
+      throws Exception {
+    return searchHits(indexName, script, HIT_MAP_READER);
+  }
+
+  /**
+   * Search and read the source of each hit into the type of the given reader, the hit sources are
+   * read directly from the search response without converting the whole response to a map.
+   *
+   * @param indexName the index name
+   * @param script the search script
+   * @param reader the hit reader of the result type, should be cached by the caller
+   * @return a pair of the total hits and the results
+   * @throws Exception
+   */
+  default <T> Pair<Long, List<T>> searchHits(String indexName, String script, EsHitReader reader)
+      throws Exception {
+    return readHits(execute(indexName, script), reader);
+  }
+
+  /**
+   * Returns a stream of the hit batches of all the hits, the caller must close the returned stream
+   * to release the scroll.
+   *
+   * @see EsHitBatchIterator
+   */
+  default <T> Stream<List<T>> streamHits(String indexName, String script, EsHitReader reader,
+      TimeValue keepAlive, int batchSize) {
+    EsHitBatchIterator<T> it = new EsHitBatchIterator<>(this,
+        buildSearchRequest(script, indexName), reader, keepAlive, batchSize);
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(it, Spliterator.NONNULL | Spliterator.ORDERED),
+            false)
+        .onClose(it::close);
+  }
+
+  Future<SearchResponse> submit(SearchRequest searchRequest);
+
+  Future<SearchResponse> submitScroll(String scrollId, TimeValue keepAlive);
+
 }
@@ -20,7 +20,9 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.ParseField;
@@ -39,6 +41,8 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.join.query.HasChildQueryBuilder;
 import org.elasticsearch.join.query.HasParentQueryBuilder;
 import org.elasticsearch.join.query.ParentIdQueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.SearchModule;
 
 /**
@@ -104,6 +108,52 @@ public class XContentUtils {
         BytesReference.bytes(builder).streamInput());
   }
 
+  /**
+   * Read the sources of the search hits into the result type of the given reader, the hits without
+   * source are skipped.
+   *
+   * @param hits the search hits, may be null
+   * @param reader the hit reader of the result type
+   * @return the results
+   * @throws IOException
+   */
+  public static <T> List<T> readHits(SearchHits hits, EsHitReader reader) throws IOException {
+    if (hits == null || hits.getHits().length == 0) {
+      return new ArrayList<>();
+    }
+    List<T> list = new ArrayList<>(hits.getHits().length);
+    for (SearchHit hit : hits.getHits()) {
+      BytesReference source = hit.getSourceRef();
+      if (source != null) {
+        list.add(readSource(source, reader));
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Read the source of a search hit into the result type of the given reader, the JSON and the
+   * SMILE source bytes are read in place by the reader of the same content type without being
+   * converted to a map, the source in other content types such as YAML is converted to JSON first.
+   *
+   * @param source the search hit source
+   * @param reader the hit reader of the result type
+   * @return the result
+   * @throws IOException
+   */
+  @SuppressWarnings("deprecation")
+  public static <T> T readSource(BytesReference source, EsHitReader reader) throws IOException {
+    XContentType xContentType = XContentHelper.xContentType(source);
+    if (xContentType == XContentType.JSON || xContentType == XContentType.SMILE) {
+      BytesRef bytes = source.toBytesRef();
+      return (xContentType == XContentType.JSON ? reader.getJsonReader() : reader.getSmileReader())
+          .readValue(bytes.bytes, bytes.offset, bytes.length);
+    } else {
+      return reader.getJsonReader()
+          .readValue(XContentHelper.convertToJson(source, false, xContentType));
+    }
+  }
+
   public static Map<String, Object> searchResponseToMap(SearchResponse searchResponse,
       String... paths) throws ElasticsearchParseException, IOException {
     if (searchResponse == null) {
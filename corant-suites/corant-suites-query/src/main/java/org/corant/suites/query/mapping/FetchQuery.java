@@ -28,6 +28,8 @@ import java.util.Map;
  */
 public class FetchQuery implements Serializable {
 
+  public static final int DFLT_BATCH_SIZE = 128;
+
   private static final long serialVersionUID = 449192431797295206L;
   private String referenceQuery;
   private String injectPropertyName;
@@ -36,6 +38,29 @@ public class FetchQuery implements Serializable {
   private List<FetchQueryParameter> parameters = new ArrayList<>();
   private String referenceQueryversion = "";
   private boolean multiRecords = true;
+  private boolean batch = false;
+  private int batchSize = DFLT_BATCH_SIZE;
+  private String batchKey;
+
+  /**
+   * The property name in the fetched result used to fan out the fetched result to the parent
+   * results in batch mode, the value of this property must equal the value of the parameter whose
+   * source is {@link FetchQueryParameterSource#R}.
+   *
+   * @return the batchKey
+   */
+  public String getBatchKey() {
+    return batchKey;
+  }
+
+  /**
+   * The max number of parent keys in one batched fetch query.
+   *
+   * @return the batchSize
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
 
   /**
    * @return the injectPropertyName
@@ -84,10 +109,34 @@ public class FetchQuery implements Serializable {
         + (isNotBlank(getReferenceQueryversion()) ? "_" + getReferenceQueryversion() : "");
   }
 
+  /**
+   * Whether the fetch query is executed once for a batch of parent results instead of once for
+   * each parent result. In batch mode the value of the parameter whose source is
+   * {@link FetchQueryParameterSource#R} is a list of distinct parent values, the reference query
+   * should use it as an IN condition.
+   *
+   * @return the batch
+   */
+  public boolean isBatch() {
+    return batch;
+  }
+
   public boolean isMultiRecords() {
     return multiRecords;
   }
 
+  void setBatch(boolean batch) {
+    this.batch = batch;
+  }
+
+  void setBatchKey(String batchKey) {
+    this.batchKey = batchKey;
+  }
+
+  void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
   void setInjectPropertyName(String injectPropertyName) {
     this.injectPropertyName = injectPropertyName;
   }
@@ -171,17 +171,29 @@ public class QueryParseHandler extends DefaultHandler {
           fq.setResultClass(isBlank(atv) ? java.util.Map.class : tryAsClass(atv));
         } else if (SchemaNames.FQE_ATT_MULT.equalsIgnoreCase(aqn)) {
           fq.setMultiRecords(isBlank(atv) ? true : ConversionUtils.toBoolean(atv));
+        } else if (SchemaNames.FQE_ATT_BATCH.equalsIgnoreCase(aqn)) {
+          fq.setBatch(isBlank(atv) ? false : ConversionUtils.toBoolean(atv));
+        } else if (SchemaNames.FQE_ATT_BATCH_SIZE.equalsIgnoreCase(aqn)) {
+          fq.setBatchSize(
+              isBlank(atv) ? FetchQuery.DFLT_BATCH_SIZE : ConversionUtils.toInteger(atv));
+        } else if (SchemaNames.FQE_ATT_BATCH_KEY.equalsIgnoreCase(aqn)) {
+          fq.setBatchKey(atv);
         }
       }
       valueStack.push(fq);
       nameStack.push(qName);
     } else {
-      Object obj = valueStack.pop();
+      FetchQuery fq = (FetchQuery) valueStack.pop();
       Query q = this.currentObject();
       if (q == null) {
         throw new QueryRuntimeException("Parse error the fetch query must be in query element!");
       }
-      q.getFetchQueries().add((FetchQuery) obj);
+      if (fq.isBatch() && (isBlank(fq.getBatchKey()) || fq.getParameters().stream()
+          .filter(p -> p.getSource() == FetchQueryParameterSource.R).count() != 1)) {
+        throw new QueryRuntimeException(
+            "Parse error the batch fetch query must have a batch key and only one parameter that source is parent query result!");
+      }
+      q.getFetchQueries().add(fq);
       nameStack.pop();
     }
   }
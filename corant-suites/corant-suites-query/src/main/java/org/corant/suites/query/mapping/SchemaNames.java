@@ -51,6 +51,9 @@ public class SchemaNames {
   public static final String FQE_ATT_MAX_SIZE = "max-size";
   public static final String FQE_ATT_VER = "reference-query-version";
   public static final String FQE_ATT_MULT = "multi-records";
+  public static final String FQE_ATT_BATCH = "batch";
+  public static final String FQE_ATT_BATCH_SIZE = "batch-size";
+  public static final String FQE_ATT_BATCH_KEY = "batch-key";
 
   private SchemaNames() {}
 
@@ -14,16 +14,24 @@
 package org.corant.suites.query.sqlquery;
 
 import static org.corant.shared.util.CollectionUtils.getSize;
+import static org.corant.shared.util.CollectionUtils.partition;
 import static org.corant.shared.util.Empties.isEmpty;
-import static org.corant.shared.util.MapUtils.getMapInteger;
 import static org.corant.shared.util.ObjectUtils.asStrings;
 import static org.corant.shared.util.ObjectUtils.defaultObject;
+import static org.corant.shared.util.StreamUtils.batchCollectStream;
+import static org.corant.suites.query.sqlquery.SqlHelper.getKeyset;
 import static org.corant.suites.query.sqlquery.SqlHelper.getLimit;
 import static org.corant.suites.query.sqlquery.SqlHelper.getOffset;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 import javax.enterprise.context.ApplicationScoped;
@@ -31,12 +39,17 @@ import javax.enterprise.inject.Any;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import org.corant.shared.exception.CorantRuntimeException;
+import org.corant.suites.query.FetchQueryExecutor;
 import org.corant.suites.query.NamedQuery;
+import org.corant.suites.query.QueryResultCache;
 import org.corant.suites.query.QueryRuntimeException;
 import org.corant.suites.query.QueryUtils;
 import org.corant.suites.query.mapping.FetchQuery;
+import org.corant.suites.query.mapping.FetchQuery.FetchQueryParameterSource;
 import org.corant.suites.query.mapping.QueryHint;
 import org.corant.suites.query.spi.ResultHintHandler;
+import org.corant.suites.query.sqlquery.SqlCountStrategy.CountContext;
+import org.corant.suites.query.sqlquery.SqlCountStrategy.Counting;
 import org.corant.suites.query.sqlquery.SqlNamedQueryResolver.Querier;
 import org.corant.suites.query.sqlquery.dialect.Dialect;
 
@@ -49,6 +62,8 @@ import org.corant.suites.query.sqlquery.dialect.Dialect;
 @ApplicationScoped
 public abstract class AbstractSqlNamedQuery implements NamedQuery {
 
+  public static final int DERIVED_SQL_CACHE_SIZE = 512;
+
   protected SqlQueryExecutor executor;
 
   @Inject
@@ -61,8 +76,21 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
   @Any
   Instance<ResultHintHandler> resultHintHandlers;
 
+  @Inject
+  FetchQueryExecutor fetchExecutor;
+
+  @Inject
+  @Any
+  Instance<SqlCountStrategy> countStrategies;
+
+  @Inject
+  QueryResultCache resultCache;
+
+  final SqlCache<String, String> countSqls = new SqlCache<>(DERIVED_SQL_CACHE_SIZE);
+
   public Object adaptiveSelect(String q, Map<String, Object> param) {
-    if (param != null && param.containsKey(SqlHelper.OFFSET_PARAM_NME)) {
+    if (param != null && (param.containsKey(SqlHelper.OFFSET_PARAM_NME)
+        || param.containsKey(SqlHelper.KEYSET_PARAM_NME))) {
       if (param.containsKey(SqlHelper.LIMIT_PARAM_NME)) {
         return this.page(q, param);
       } else {
@@ -83,13 +111,24 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
     String sql = querier.getScript();
     int offset = getOffset(param);
     int limit = getLimit(param);
-    String limitSql = getDialect().getLimitSql(sql, offset, limit + 1);
+    SqlKeyset keyset = SqlKeyset.of(hints);
+    String limitSql;
+    if (keyset != null) {
+      Object[] keyValues = keyset.decode(getKeyset(param));
+      limitSql = keyset.getLimitSql(getDialect(), sql, keyValues, limit + 1);
+      queryParam = keyset.getParameters(getDialect(), queryParam, keyValues);
+    } else {
+      limitSql = getLimitSql(sql, offset, limit + 1);
+    }
     try {
       log(q, queryParam, sql, "Limit: " + limitSql);
       ForwardList<T> result = ForwardList.inst();
       List<T> list = getExecutor().select(limitSql, resultClass, queryParam);
       int size = getSize(list);
       if (size > 0) {
+        if (keyset != null && size > limit) {
+          result.withContinuation(keyset.encode(list.get(limit - 1)));
+        }
         this.fetch(list, fetchQueries, param);
         if (size > limit) {
           list.remove(size - 1);
@@ -109,6 +148,12 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
   @Override
   public <T> T get(String q, Map<String, Object> param) {
     Querier<String, Object[], FetchQuery, QueryHint> querier = getResolver().resolve(q, param);
+    return getResultCache().computeIfAbsent(q, querier.getHints(), "get", param,
+        () -> doGet(q, param, querier));
+  }
+
+  protected <T> T doGet(String q, Map<String, Object> param,
+      Querier<String, Object[], FetchQuery, QueryHint> querier) {
     Class<T> resultClass = querier.getResultClass();
     Object[] queryParam = querier.getConvertedParameters();
     List<FetchQuery> fetchQueries = querier.getFetchQueries();
@@ -128,6 +173,12 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
   @Override
   public <T> PagedList<T> page(String q, Map<String, Object> param) {
     Querier<String, Object[], FetchQuery, QueryHint> querier = getResolver().resolve(q, param);
+    return getResultCache().computeIfAbsent(q, querier.getHints(), "page", param,
+        () -> doPage(q, param, querier));
+  }
+
+  protected <T> PagedList<T> doPage(String q, Map<String, Object> param,
+      Querier<String, Object[], FetchQuery, QueryHint> querier) {
     Class<T> resultClass = querier.getResultClass();
     Object[] queryParam = querier.getConvertedParameters();
     List<FetchQuery> fetchQueries = querier.getFetchQueries();
@@ -135,20 +186,34 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
     String sql = querier.getScript();
     int offset = getOffset(param);
     int limit = getLimit(param);
-    String limitSql = getDialect().getLimitSql(sql, offset, limit);
+    SqlKeyset keyset = SqlKeyset.of(hints);
+    Object[] keyValues = null;
+    Object[] limitParam = queryParam;
+    String limitSql;
+    if (keyset != null) {
+      keyValues = keyset.decode(getKeyset(param));
+      limitSql = keyset.getLimitSql(getDialect(), sql, keyValues, limit);
+      limitParam = keyset.getParameters(getDialect(), queryParam, keyValues);
+    } else {
+      limitSql = getLimitSql(sql, offset, limit);
+    }
+    Counting counting = prepareCounting(q, sql, queryParam, hints);
     try {
-      log(q, queryParam, sql, "Limit: " + limitSql);
-      List<T> list = getExecutor().select(limitSql, resultClass, queryParam);
+      log(q, limitParam, sql, "Limit: " + limitSql);
+      List<T> list = getExecutor().select(limitSql, resultClass, limitParam);
       PagedList<T> result = PagedList.of(offset, limit);
       int size = getSize(list);
       if (size > 0) {
-        if (size < limit) {
+        if (keyset != null && size == limit) {
+          result.withContinuation(keyset.encode(list.get(size - 1)));
+        }
+        if (size < limit && keyValues == null) {
           result.withTotal(offset + size);
         } else {
-          String totalSql = getDialect().getCountSql(sql);
-          log("total-> " + q, queryParam, totalSql);
-          result.withTotal(getMapInteger(getExecutor().get(totalSql, Map.class, queryParam),
-              Dialect.COUNT_FIELD_NAME));
+          if (logger.isLoggable(Level.FINE)) {
+            log("total-> " + q, queryParam, getCountSql(sql));
+          }
+          result.withTotal(counting.get()).withApproximateTotal(counting.isApproximate());
         }
         this.fetch(list, fetchQueries, param);
         result.withResults(list);
@@ -157,12 +222,20 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
       return result;
     } catch (SQLException e) {
       throw new QueryRuntimeException(e);
+    } finally {
+      counting.cancel();
     }
   }
 
   @Override
   public <T> List<T> select(String q, Map<String, Object> param) {
     Querier<String, Object[], FetchQuery, QueryHint> querier = getResolver().resolve(q, param);
+    return getResultCache().computeIfAbsent(q, querier.getHints(), "select", param,
+        () -> doSelect(q, param, querier));
+  }
+
+  protected <T> List<T> doSelect(String q, Map<String, Object> param,
+      Querier<String, Object[], FetchQuery, QueryHint> querier) {
     Class<T> rcls = querier.getResultClass();
     Object[] queryParam = querier.getConvertedParameters();
     List<FetchQuery> fetchQueries = querier.getFetchQueries();
@@ -182,14 +255,155 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
     }
   }
 
+  /**
+   * Returns a cursor-backed stream, the rows are pulled from the database in batches of the
+   * configured fetch size, the fetch queries and the result hints are applied to each batch as it
+   * goes by. The caller must close the returned stream to release the underlying connection.
+   */
   @Override
   public <T> Stream<T> stream(String q, Map<String, Object> param) {
-    return null;
+    Querier<String, Object[], FetchQuery, QueryHint> querier = getResolver().resolve(q, param);
+    Class<T> rcls = querier.getResultClass();
+    Object[] queryParam = querier.getConvertedParameters();
+    List<FetchQuery> fetchQueries = querier.getFetchQueries();
+    List<QueryHint> hints = querier.getHints();
+    String sql = querier.getScript();
+    try {
+      log("stream-> " + q, queryParam, sql);
+      final Stream<T> source = getExecutor().stream(sql, rcls, queryParam);
+      return batchCollectStream(resolveStreamBatchSize(), source).flatMap(batch -> {
+        this.fetch(batch, fetchQueries, param);
+        handleResultHints(hints, batch);
+        return batch.stream();
+      }).onClose(source::close);
+    } catch (SQLException e) {
+      throw new QueryRuntimeException(e);
+    }
   }
 
   protected <T> void fetch(List<T> list, List<FetchQuery> fetchQueries, Map<String, Object> param) {
     if (!isEmpty(list) && !isEmpty(fetchQueries)) {
-      list.forEach(e -> fetchQueries.stream().forEach(f -> this.fetch(e, f, new HashMap<>(param))));
+      List<Runnable> tasks = new ArrayList<>();
+      fetchQueries.forEach(f -> {
+        if (f.isBatch()) {
+          Map<String, Object> fetchParam = new HashMap<>(param);
+          tasks.add(() -> this.batchFetch(list, f, fetchParam));
+        } else {
+          list.forEach(e -> {
+            Map<String, Object> fetchParam = new HashMap<>(param);
+            tasks.add(() -> this.fetch(e, f, fetchParam));
+          });
+        }
+      });
+      getFetchExecutor().execute(tasks);
+    }
+  }
+
+  /**
+   * Execute the fetch query once for each chunk of the distinct parent key values instead of once
+   * for each parent result, the fetched results are fanned out to the parent results by the batch
+   * key of the fetch query. The nested fetch queries of the reference query are applied to all the
+   * injected fetched results together, so they are batched as well if they are declared as batch.
+   * <p>
+   * NOTE: The fetched results may be shared by the parent results that have the same key value.
+   *
+   * @param list the parent results
+   * @param fetchQuery the batch fetch query
+   * @param param the original query parameter
+   */
+  protected <T> void batchFetch(List<T> list, FetchQuery fetchQuery, Map<String, Object> param) {
+    if (isEmpty(list) || fetchQuery == null) {
+      return;
+    }
+    final String keyParamName = fetchQuery.getParameters().stream()
+        .filter(p -> p.getSource() == FetchQueryParameterSource.R).map(p -> p.getName())
+        .findFirst().orElseThrow(() -> new QueryRuntimeException(
+            "The batch fetch query must have a parameter that source is parent query result!"));
+    // collect the distinct key values and the parents of each of them
+    Map<String, Object> baseParam = null;
+    Map<Object, Object> keyValues = new LinkedHashMap<>();
+    Map<Object, List<T>> keyParents = new HashMap<>();
+    for (T obj : list) {
+      if (obj == null) {
+        continue;
+      }
+      Map<String, Object> fetchParam = QueryUtils.resolveFetchParam(obj, fetchQuery, param);
+      if (baseParam == null) {
+        baseParam = fetchParam;
+      }
+      Object keyValue = fetchParam.get(keyParamName);
+      Iterable<?> keyValueIt = keyValue instanceof Collection ? (Collection<?>) keyValue
+          : Collections.singletonList(keyValue);
+      for (Object kv : keyValueIt) {
+        Object key = QueryUtils.normalizeFetchBatchKey(kv);
+        if (key != null) {
+          keyValues.putIfAbsent(key, kv);
+          List<T> parents = keyParents.computeIfAbsent(key, k -> new ArrayList<>());
+          // the key values of a parent may repeat or be normalized to the same key
+          if (parents.isEmpty() || parents.get(parents.size() - 1) != obj) {
+            parents.add(obj);
+          }
+        }
+      }
+    }
+    if (baseParam == null) {
+      return;
+    }
+    // fetch by chunks and fan out the fetched results to the parents
+    final int maxSize = fetchQuery.getMaxSize();
+    final int batchSize =
+        fetchQuery.getBatchSize() > 0 ? fetchQuery.getBatchSize() : FetchQuery.DFLT_BATCH_SIZE;
+    final String batchKey = fetchQuery.getBatchKey();
+    final String refQueryName = fetchQuery.getVersionedReferenceQueryName();
+    Map<T, List<Object>> parentFetched = new IdentityHashMap<>();
+    List<FetchQuery> fetchQueries = null;
+    for (List<Object> keyChunk : partition(keyValues.values(), batchSize)) {
+      Map<String, Object> fetchParam = new HashMap<>(baseParam);
+      fetchParam.put(keyParamName, keyChunk);
+      Querier<String, Object[], FetchQuery, QueryHint> querier =
+          resolver.resolve(refQueryName, fetchParam);
+      String sql = querier.getScript();
+      Class<?> resultClass = defaultObject(fetchQuery.getResultClass(), querier.getResultClass());
+      Object[] params = querier.getConvertedParameters();
+      fetchQueries = querier.getFetchQueries();
+      try {
+        log("batch-fetch-> " + refQueryName, params, sql);
+        List<?> fetchedList = getExecutor().select(sql, resultClass, params);
+        for (Object fetched : fetchedList) {
+          List<T> parents = keyParents.get(QueryUtils.resolveFetchBatchKey(fetched, batchKey));
+          if (parents != null) {
+            parents.forEach(
+                p -> parentFetched.computeIfAbsent(p, k -> new ArrayList<>()).add(fetched));
+          }
+        }
+      } catch (SQLException e) {
+        throw new QueryRuntimeException(e);
+      }
+    }
+    // inject the fetched results, keep the per parent max size and single record semantic
+    Map<Object, Boolean> injected = new IdentityHashMap<>();
+    boolean completed = FetchQueryExecutor.inject(() -> {
+      for (T obj : list) {
+        if (obj == null) {
+          continue;
+        }
+        List<Object> fetchedList = parentFetched.getOrDefault(obj, new ArrayList<>());
+        if (maxSize > 0 && fetchedList.size() > maxSize) {
+          fetchedList = new ArrayList<>(fetchedList.subList(0, maxSize));
+        }
+        Object fetchedResult = null;
+        if (fetchQuery.isMultiRecords()) {
+          fetchedResult = fetchedList;
+        } else if (!isEmpty(fetchedList)) {
+          fetchedResult = fetchedList.get(0);
+          fetchedList = fetchedList.subList(0, 1);
+        }
+        fetchedList.forEach(f -> injected.put(f, Boolean.TRUE));
+        QueryUtils.resolveFetchResult(obj, fetchedResult, fetchQuery.getInjectPropertyName());
+      }
+    });
+    if (completed) {
+      this.fetch(new ArrayList<>(injected.keySet()), fetchQueries, param);
     }
   }
 
@@ -209,7 +423,7 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
     Object[] params = querier.getConvertedParameters();
     List<FetchQuery> fetchQueries = querier.getFetchQueries();
     if (maxSize > 0) {
-      sql = getDialect().getLimitSql(sql, SqlHelper.OFFSET_PARAM_VAL, maxSize);
+      sql = getLimitSql(sql, SqlHelper.OFFSET_PARAM_VAL, maxSize);
     }
     try {
       log("fetch-> " + refQueryName, params, sql);
@@ -221,8 +435,11 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
         fetchedResult = fetchedList.get(0);
         fetchedList = fetchedList.subList(0, 1);
       }
-      QueryUtils.resolveFetchResult(obj, fetchedResult, injectProName);
-      this.fetch(fetchedList, fetchQueries, param);
+      final Object result = fetchedResult;
+      if (FetchQueryExecutor
+          .inject(() -> QueryUtils.resolveFetchResult(obj, result, injectProName))) {
+        this.fetch(fetchedList, fetchQueries, param);
+      }
     } catch (SQLException e) {
       throw new QueryRuntimeException(e);
     }
@@ -230,12 +447,29 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
 
   protected <T> void fetch(T obj, List<FetchQuery> fetchQueries, Map<String, Object> param) {
     if (obj != null && !isEmpty(fetchQueries)) {
-      fetchQueries.stream().forEach(f -> this.fetch(obj, f, new HashMap<>(param)));
+      List<Runnable> tasks = new ArrayList<>();
+      fetchQueries.stream().forEach(f -> {
+        Map<String, Object> fetchParam = new HashMap<>(param);
+        if (f.isBatch()) {
+          tasks.add(() -> this.batchFetch(Collections.singletonList(obj), f, fetchParam));
+        } else {
+          tasks.add(() -> this.fetch(obj, f, fetchParam));
+        }
+      });
+      getFetchExecutor().execute(tasks);
     }
   }
 
   protected abstract SqlQueryConfiguration getConfiguration();
 
+  /**
+   * Returns the count SQL of the given SQL, the results are kept in a bounded cache that keyed by
+   * the given SQL.
+   */
+  protected String getCountSql(String sql) {
+    return countSqls.computeIfAbsent(sql, getDialect()::getCountSql);
+  }
+
   protected Dialect getDialect() {
     return getConfiguration().getDialect();
   }
@@ -244,10 +478,27 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
     return executor;
   }
 
+  protected FetchQueryExecutor getFetchExecutor() {
+    return fetchExecutor;
+  }
+
   protected SqlNamedQueryResolver<String, Map<String, Object>, String, Object[], FetchQuery, QueryHint> getResolver() {
     return resolver;
   }
 
+  /**
+   * Returns the limit SQL of the given SQL, the statement is assembled per call since it varies
+   * with the offset and limit, the offset independent clause positions that the dialects rely on
+   * are cached per SQL by {@link SqlClauses#of(String)}.
+   */
+  protected String getLimitSql(String sql, int offset, int limit) {
+    return getDialect().getLimitSql(sql, offset, limit);
+  }
+
+  protected QueryResultCache getResultCache() {
+    return resultCache;
+  }
+
   protected void handleResultHints(List<QueryHint> hints, Object result) {
     if (result != null && !resultHintHandlers.isUnsatisfied()) {
       hints.forEach(qh -> {
@@ -268,6 +519,36 @@ public abstract class AbstractSqlNamedQuery implements NamedQuery {
             name, String.join(",", asStrings(param)), String.join("; ", sql)));
   }
 
+  /**
+   * Prepare the total counting of the paging query with the strategy that declared by the count
+   * hint, if there is no count hint or no strategy can handle it, the total is counted on the
+   * caller thread when it is needed. The count SQL is derived only when the total is counted.
+   *
+   * @see SqlCountStrategy
+   */
+  protected Counting prepareCounting(String q, String sql, Object[] queryParam,
+      List<QueryHint> hints) {
+    CountContext context =
+        new CountContext(q, sql, () -> getCountSql(sql), queryParam, getDialect(), getExecutor());
+    if (!countStrategies.isUnsatisfied()) {
+      for (QueryHint qh : hints) {
+        if (SqlCountStrategy.HINT_COUNT.equalsIgnoreCase(qh.getKey())) {
+          SqlCountStrategy strategy =
+              countStrategies.stream().filter(s -> s.canHandle(qh)).findFirst().orElse(null);
+          if (strategy != null) {
+            return strategy.prepare(qh, context);
+          }
+        }
+      }
+    }
+    return context::count;
+  }
+
+  protected int resolveStreamBatchSize() {
+    Integer fetchSize = getConfiguration().getFetchSize();
+    return fetchSize == null || fetchSize <= 0 ? SqlQueryConfiguration.DFLT_FETCH_SIZE : fetchSize;
+  }
+
   protected void setExecutor(SqlQueryExecutor executor) {
     this.executor = executor;
   }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import static org.corant.shared.util.ConversionUtils.toLong;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.corant.suites.query.mapping.QueryHint;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * corant-suites-query
+ *
+ * Cache the total per query name and query parameters for a period, the subsequent pages of the
+ * same query reuse the cached total. The strategy name is "cached", the hint parameter "ttl" is the
+ * time to live in milliseconds, for example:
+ *
+ * <pre>
+ * &lt;hint key="count"&gt;
+ *   &lt;parameter name="strategy" value="cached"/&gt;
+ *   &lt;parameter name="ttl" value="60000"/&gt;
+ * &lt;/hint&gt;
+ * </pre>
+ *
+ * The cache is bounded by {@link #CC_MAX_ENTRIES}, the eldest entry is evicted when it's full. The
+ * count SQL is only derived on a cache miss.
+ *
+ * @author bingo 下午4:35:18
+ *
+ */
+@ApplicationScoped
+public class CachedSqlCountStrategy implements SqlCountStrategy {
+
+  public static final String STRATEGY = "cached";
+  public static final String HINT_TTL = "ttl";
+  public static final String CC = "query.sql.count.cache";
+  public static final String CC_TTL = CC + ".ttl";
+  public static final String CC_MAX_ENTRIES = CC + ".maxEntries";
+
+  /**
+   * The default time to live in milliseconds of the cached total.
+   */
+  @Inject
+  @ConfigProperty(name = CC_TTL, defaultValue = "60000")
+  long ttl;
+
+  @Inject
+  @ConfigProperty(name = CC_MAX_ENTRIES, defaultValue = "1024")
+  int maxEntries;
+
+  final Map<CacheKey, long[]> cache = new LinkedHashMap<CacheKey, long[]>(64, 0.75f, true) {
+    private static final long serialVersionUID = -2539519420151245711L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CacheKey, long[]> eldest) {
+      return size() > Math.max(maxEntries, 1);
+    }
+  };
+
+  @Override
+  public boolean canHandle(QueryHint qh) {
+    return qh != null && HINT_COUNT.equalsIgnoreCase(qh.getKey())
+        && STRATEGY.equalsIgnoreCase(SqlCountStrategy.getHintValue(qh, HINT_STRATEGY));
+  }
+
+  public void clear() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  @Override
+  public Counting prepare(QueryHint qh, CountContext context) {
+    final Long hintTtl = toLong(SqlCountStrategy.getHintValue(qh, HINT_TTL));
+    final long expiration = hintTtl == null ? ttl : hintTtl;
+    final CacheKey key =
+        new CacheKey(context.getQueryName(), context.getSql(), context.getParameters());
+    return () -> {
+      long now = System.currentTimeMillis();
+      synchronized (cache) {
+        long[] cached = cache.get(key);
+        if (cached != null) {
+          if (cached[1] > now) {
+            return (int) cached[0];
+          }
+          cache.remove(key);
+        }
+      }
+      int total = context.count();
+      if (expiration > 0) {
+        synchronized (cache) {
+          cache.put(key, new long[] {total, now + expiration});
+        }
+      }
+      return total;
+    };
+  }
+
+  /**
+   * The cache key holds the query parameters, the hash is used to locate and the equality is used
+   * to resolve the hash collisions.
+   */
+  static class CacheKey {
+    final String queryName;
+    final String sql;
+    final Object[] parameters;
+    final int hash;
+
+    CacheKey(String queryName, String sql, Object[] parameters) {
+      this.queryName = queryName;
+      this.sql = sql;
+      this.parameters = parameters;
+      hash = Objects.hash(queryName, sql, Arrays.deepHashCode(parameters));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) obj;
+      return hash == other.hash && Objects.equals(queryName, other.queryName)
+          && Objects.equals(sql, other.sql) && Arrays.deepEquals(parameters, other.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.corant.suites.query.QueryRuntimeException;
+import org.corant.suites.query.mapping.QueryHint;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * corant-suites-query
+ *
+ * Count the total concurrently with the page query, the count query is submitted before the page
+ * query is executed and is canceled if the page is not full, the running count statement is
+ * canceled by {@link Statement#cancel()}, the count SQL is derived in the pool thread too. The
+ * strategy name is "concurrent".
+ *
+ * NOTE: The count query that executed in the pool thread does not participate in the transaction
+ * of the caller thread.
+ *
+ * @author bingo 下午4:20:37
+ *
+ */
+@ApplicationScoped
+public class ConcurrentSqlCountStrategy implements SqlCountStrategy {
+
+  public static final String STRATEGY = "concurrent";
+  public static final String CE = "query.sql.count.concurrent";
+  public static final String CE_POOL_SIZE = CE + ".poolSize";
+  public static final String CE_TIMEOUT = CE + ".timeout";
+
+  static final Logger logger = Logger.getLogger(ConcurrentSqlCountStrategy.class.getName());
+
+  @Inject
+  @ConfigProperty(name = CE_POOL_SIZE, defaultValue = "0")
+  int poolSize;
+
+  /**
+   * The timeout in milliseconds of waiting for the total.
+   */
+  @Inject
+  @ConfigProperty(name = CE_TIMEOUT, defaultValue = "30000")
+  long timeout;
+
+  ExecutorService executorService;
+
+  @Override
+  public boolean canHandle(QueryHint qh) {
+    return qh != null && HINT_COUNT.equalsIgnoreCase(qh.getKey())
+        && STRATEGY.equalsIgnoreCase(SqlCountStrategy.getHintValue(qh, HINT_STRATEGY));
+  }
+
+  @Override
+  public Counting prepare(QueryHint qh, CountContext context) {
+    final ExecutorService es = executorService;
+    final CountStatement statement = new CountStatement();
+    final Future<Integer> future;
+    try {
+      future = es == null ? null : es.submit(() -> context.count(statement));
+    } catch (RejectedExecutionException e) {
+      return context::count;
+    }
+    if (future == null) {
+      return context::count;
+    }
+    return new Counting() {
+      @Override
+      public void cancel() {
+        if (future.cancel(true)) {
+          statement.cancel();
+        }
+      }
+
+      @Override
+      public int get() {
+        try {
+          return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new QueryRuntimeException(e);
+        } catch (ExecutionException e) {
+          throw e.getCause() instanceof QueryRuntimeException
+              ? (QueryRuntimeException) e.getCause()
+              : new QueryRuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+          cancel();
+          throw new QueryRuntimeException(e,
+              "The total of the query %s was not counted within %d ms.", context.getQueryName(),
+              timeout);
+        }
+      }
+    };
+  }
+
+  @PreDestroy
+  synchronized void destroy() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+      executorService = null;
+    }
+  }
+
+  @PostConstruct
+  synchronized void enable() {
+    final int size =
+        poolSize < 1 ? Math.max(2, Runtime.getRuntime().availableProcessors()) : poolSize;
+    final AtomicInteger threadNumber = new AtomicInteger(1);
+    executorService = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+          Thread t = new Thread(r, "query-count-pool-thread-" + threadNumber.getAndIncrement());
+          t.setDaemon(true);
+          return t;
+        });
+    ThreadPoolExecutor.class.cast(executorService).allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Hold the running count statement, the statement is canceled as soon as it is held if the
+   * counting has been canceled.
+   */
+  static class CountStatement implements Consumer<Statement> {
+
+    volatile Statement statement;
+    volatile boolean canceled;
+
+    @Override
+    public void accept(Statement statement) {
+      this.statement = statement;
+      if (canceled) {
+        cancel(statement);
+      }
+    }
+
+    void cancel() {
+      canceled = true;
+      Statement st = statement;
+      if (st != null) {
+        cancel(st);
+      }
+    }
+
+    void cancel(Statement st) {
+      try {
+        st.cancel();
+      } catch (SQLException | RuntimeException e) {
+        logger.log(Level.FINE, e, () -> "Can not cancel the count statement.");
+      }
+    }
+  }
+}
@@ -66,6 +66,23 @@ public class DefaultSqlNamedQuerier implements Querier<String, Object[], FetchQu
     }
   }
 
+  /**
+   * Construct with the script that has been normalized by the previous querier, used by the
+   * rendered SQL cache.
+   */
+  DefaultSqlNamedQuerier(String normalizedScript, Object[] convertedParams, Class<?> resultClass,
+      List<FetchQuery> fetchQueries, List<QueryHint> hints, boolean normalized) {
+    this.script = normalizedScript;
+    this.resultClass = resultClass;
+    this.fetchQueries = fetchQueries;
+    setConvertedParams(convertedParams);
+    if (!isEmpty(hints)) {
+      for (QueryHint qh : hints) {
+        this.hints.add(qh);
+      }
+    }
+  }
+
   @Override
   public Object[] getConvertedParameters() {
     return Arrays.copyOf(convertedParams, convertedParams.length);
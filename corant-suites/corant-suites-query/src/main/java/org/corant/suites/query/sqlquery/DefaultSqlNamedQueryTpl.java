@@ -13,27 +13,98 @@
  */
 package org.corant.suites.query.sqlquery;
 
+import static org.corant.shared.util.ConversionUtils.toInteger;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import org.corant.kernel.service.ConversionService;
 import org.corant.suites.query.QueryRuntimeException;
 import org.corant.suites.query.dynamic.template.DynamicQueryTplMmResolver;
 import org.corant.suites.query.dynamic.template.FreemarkerDynamicQueryTpl;
 import org.corant.suites.query.mapping.Query;
+import org.corant.suites.query.mapping.QueryHint;
+import org.corant.suites.query.mapping.QueryHint.QueryHintParameter;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateDateModel;
 import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateMethodModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
 
 /**
  * asosat-query
  *
+ * <p>
+ * The rendered SQL can be cached by the parameter shape if the query declares a
+ * {@link #HINT_RENDER_CACHE} hint, the shape consists of the parameter names, the parameter value
+ * types, which parameters are null and the sizes of the collection parameters. On a cache hit the
+ * template is not processed, the cached SQL is reused and only the bind parameters are extracted
+ * from the parameters by the recorded binding plan. The {@link #preProcess(Map)} and
+ * {@link #postProcess(DefaultSqlNamedQuerier, DynamicQueryTplMmResolver)} are invoked on a cache
+ * hit too, but the template method model has not been invoked on a cache hit.
+ * <p>
+ * The values of the parameters that are not bound, such as a sort column that is written into the
+ * SQL directly, are recorded with the plan and the plan is used only if they are equal. A plan is
+ * used only after a second processing of the same shape with different bound values has rendered
+ * the same SQL and the same binding plan, otherwise the shape is never cached. A cached shape is
+ * evicted when the number of the shapes reaches the {@link #HINT_RENDER_CACHE_MAX_SHAPES}
+ * parameter of the hint.
+ * <p>
+ * The processings that record and verify a plan track the reads of the parameter values, a shape
+ * is never cached if the template reads the value of a bound parameter other than through the
+ * template method model, for example a directive such as {@code <#if amount gt 100>} or a built-in
+ * such as {@code ?has_content} tests the value, only the null tests ({@code ??}) and the sizes of
+ * the collections are covered by the shape. A shape is never cached either if any bind parameter
+ * can not be attributed to exactly one parameter or collection element, for example when the
+ * template binds a computed value.
+ *
  * @author bingo 下午7:46:22
  *
  */
 public class DefaultSqlNamedQueryTpl
     extends FreemarkerDynamicQueryTpl<DefaultSqlNamedQuerier, Object[]> {
 
+  public static final String HINT_RENDER_CACHE = "render-cache";
+  public static final String HINT_RENDER_CACHE_MAX_SHAPES = "max-shapes";
+  public static final int DFLT_RENDER_CACHE_MAX_SHAPES = 64;
+
+  static final RenderPlan UNCACHEABLE = new RenderPlan(null, null);
+
+  protected final Map<String, RenderPlan> renderCache;
+  protected final int renderCacheMaxShapes;
+
   public DefaultSqlNamedQueryTpl(Query query, ConversionService conversionService) {
     super(query, conversionService);
+    QueryHint renderCacheHint = getHints().stream()
+        .filter(h -> HINT_RENDER_CACHE.equalsIgnoreCase(h.getKey())).findFirst().orElse(null);
+    if (renderCacheHint != null) {
+      List<QueryHintParameter> maxShapes =
+          renderCacheHint.getParameters(HINT_RENDER_CACHE_MAX_SHAPES);
+      renderCacheMaxShapes = maxShapes.isEmpty() ? DFLT_RENDER_CACHE_MAX_SHAPES
+          : toInteger(maxShapes.get(0).getValue());
+      renderCache = new ConcurrentHashMap<>();
+    } else {
+      renderCacheMaxShapes = 0;
+      renderCache = null;
+    }
   }
 
   /**
@@ -42,8 +113,60 @@ public class DefaultSqlNamedQueryTpl
   @Override
   public DefaultSqlNamedQuerier doProcess(Map<String, Object> param,
       DynamicQueryTplMmResolver<Object[]> tmm) {
+    return render(param, tmm);
+  }
+
+  /**
+   * Use the cached SQL of the parameter shape if the render cache is enabled, otherwise process the
+   * template.
+   */
+  @Override
+  public DefaultSqlNamedQuerier process(Map<String, Object> param) {
+    if (renderCache == null) {
+      return super.process(param);
+    }
+    Map<String, Object> useParam = convertParameter(param);
+    DynamicQueryTplMmResolver<Object[]> qtmm = getTemplateMethodModel(useParam);
+    preProcess(useParam);
+    Map<String, Object> origParam = new TreeMap<>(useParam);
+    origParam.remove(qtmm.getType().name());
+    String shape = resolveShape(origParam);
+    RenderPlan plan = renderCache.get(shape);
+    DefaultSqlNamedQuerier result;
+    if (plan != null && plan.verified && plan.isApplicable(origParam)) {
+      result = new DefaultSqlNamedQuerier(plan.script, plan.bind(origParam), getResultClass(),
+          getFetchQueries(), getHints(), true);
+    } else if (plan == null || plan != UNCACHEABLE && !plan.verified
+        && plan.isApplicable(origParam)) {
+      TrackingDataModel model = new TrackingDataModel(useParam, getTemplate().getObjectWrapper());
+      result = render(model, qtmm);
+      Object[] boundParams = qtmm.getParameters();
+      if (plan == null) {
+        if (renderCache.size() >= renderCacheMaxShapes) {
+          evictShape();
+        }
+        renderCache.putIfAbsent(shape,
+            RenderPlan.of(result.getScript(), boundParams, origParam, model.tested));
+      } else if (!Arrays.deepEquals(plan.boundParams, boundParams)) {
+        // the same bound values tell nothing about whether the computed values are bound
+        RenderPlan replay = RenderPlan.of(result.getScript(), boundParams, origParam, model.tested);
+        renderCache.replace(shape, plan, plan.isSameAs(replay) ? plan.verify() : UNCACHEABLE);
+      }
+    } else {
+      result = doProcess(useParam, qtmm);
+    }
+    postProcess(result, qtmm);
+    return result;
+  }
+
+  /**
+   * Process the template with the given data model, the data model is either the parameter map or
+   * a template hash model.
+   */
+  protected DefaultSqlNamedQuerier render(Object dataModel,
+      DynamicQueryTplMmResolver<Object[]> tmm) {
     try (StringWriter sw = new StringWriter()) {
-      getTemplate().process(param, sw);
+      getTemplate().process(dataModel, sw);
       return new DefaultSqlNamedQuerier(sw.toString(), tmm.getParameters(), getResultClass(),
           getFetchQueries(), getHints());
     } catch (TemplateException | IOException | NullPointerException e) {
@@ -56,4 +179,359 @@ public class DefaultSqlNamedQueryTpl
     return new DefaultSqlNamedQueryTplMmResolver().injectTo(param);
   }
 
+  /**
+   * Evict a shape from the render cache to make room for a new shape.
+   */
+  protected void evictShape() {
+    Iterator<String> it = renderCache.keySet().iterator();
+    if (it.hasNext()) {
+      renderCache.remove(it.next());
+    }
+  }
+
+  protected String resolveShape(Map<String, Object> param) {
+    StringBuilder shape = new StringBuilder();
+    new TreeMap<>(param).forEach((k, v) -> {
+      shape.append(k).append('|');
+      if (v == null) {
+        shape.append('N');
+      } else {
+        shape.append(v.getClass().getName());
+        if (v instanceof Collection) {
+          shape.append('#').append(((Collection<?>) v).size());
+        } else if (v.getClass().isArray()) {
+          shape.append('#').append(Array.getLength(v));
+        }
+      }
+      shape.append(';');
+    });
+    return shape.toString();
+  }
+
+  /**
+   * The cached SQL and the binding plan of one parameter shape, each bind parameter is resolved
+   * from a parameter name and an optional element index of the collection or array parameter.
+   */
+  static class RenderPlan {
+
+    final String script;
+    final Binding[] bindings;
+    final Object[] boundParams;
+    final Map<String, Object> unboundParams;
+    final boolean verified;
+
+    RenderPlan(String script, Binding[] bindings) {
+      this(script, bindings, null, null, false);
+    }
+
+    RenderPlan(String script, Binding[] bindings, Object[] boundParams,
+        Map<String, Object> unboundParams, boolean verified) {
+      this.script = script;
+      this.bindings = bindings;
+      this.boundParams = boundParams;
+      this.unboundParams = unboundParams;
+      this.verified = verified;
+    }
+
+    static RenderPlan of(String script, Object[] boundParams, Map<String, Object> param,
+        Set<String> testedParams) {
+      Binding[] bindings = new Binding[boundParams.length];
+      for (int i = 0; i < boundParams.length; i++) {
+        Binding binding = null;
+        int matches = 0;
+        for (Map.Entry<String, Object> e : param.entrySet()) {
+          Object value = e.getValue();
+          if (matches(value, boundParams[i])) {
+            binding = new Binding(e.getKey(), -1);
+            matches++;
+          }
+          if (value instanceof List || value != null && value.getClass().isArray()) {
+            int idx = 0;
+            for (Iterator<?> it = iterator(value); it.hasNext(); idx++) {
+              if (matches(it.next(), boundParams[i])) {
+                binding = new Binding(e.getKey(), idx);
+                matches++;
+              }
+            }
+          } else if (value instanceof Collection) {
+            // the iteration order of the other collections is not stable
+            for (Object element : (Collection<?>) value) {
+              if (matches(element, boundParams[i])) {
+                return UNCACHEABLE;
+              }
+            }
+          }
+        }
+        if (matches != 1 || testedParams.contains(binding.name)) {
+          return UNCACHEABLE;
+        }
+        bindings[i] = binding;
+      }
+      Map<String, Object> unboundParams = new TreeMap<>(param);
+      for (Binding binding : bindings) {
+        unboundParams.remove(binding.name);
+      }
+      return new RenderPlan(script, bindings, boundParams, unboundParams, false);
+    }
+
+    static Iterator<?> iterator(Object value) {
+      if (value instanceof List) {
+        return ((List<?>) value).iterator();
+      }
+      List<Object> list = new ArrayList<>();
+      for (int i = 0; i < Array.getLength(value); i++) {
+        list.add(Array.get(value, i));
+      }
+      return list.iterator();
+    }
+
+    static boolean matches(Object paramValue, Object boundValue) {
+      if (paramValue == null || boundValue == null) {
+        return false;
+      }
+      // the template method model trims the string parameter
+      return paramValue == boundValue
+          || paramValue instanceof String && ((String) paramValue).trim() == boundValue;
+    }
+
+    /**
+     * Returns whether the values of the parameters that are not bound are equal to the recorded
+     * values.
+     */
+    boolean isApplicable(Map<String, Object> param) {
+      for (Map.Entry<String, Object> e : unboundParams.entrySet()) {
+        if (!Objects.deepEquals(e.getValue(), param.get(e.getKey()))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean isSameAs(RenderPlan other) {
+      if (other == UNCACHEABLE || !script.equals(other.script)
+          || bindings.length != other.bindings.length) {
+        return false;
+      }
+      for (int i = 0; i < bindings.length; i++) {
+        if (!bindings[i].name.equals(other.bindings[i].name)
+            || bindings[i].index != other.bindings[i].index) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    RenderPlan verify() {
+      return new RenderPlan(script, bindings, null, unboundParams, true);
+    }
+
+    Object[] bind(Map<String, Object> param) {
+      Object[] bound = new Object[bindings.length];
+      for (int i = 0; i < bindings.length; i++) {
+        Object value = param.get(bindings[i].name);
+        if (bindings[i].index >= 0) {
+          if (value instanceof List) {
+            value = ((List<?>) value).get(bindings[i].index);
+          } else {
+            value = Array.get(value, bindings[i].index);
+          }
+        }
+        bound[i] = value instanceof String ? ((String) value).trim() : value;
+      }
+      return bound;
+    }
+  }
+
+  static class Binding {
+    final String name;
+    final int index;
+
+    Binding(String name, int index) {
+      this.name = name;
+      this.index = index;
+    }
+  }
+
+  /**
+   * The template model that was wrapped to track the reads of a parameter value, the template
+   * method model reads the value through {@link #getModel()} without being tracked.
+   */
+  interface TrackedModel extends TemplateModel {
+    TemplateModel getModel();
+  }
+
+  static class TrackedBoolean implements TemplateBooleanModel, TrackedModel {
+    final TemplateBooleanModel model;
+    final Runnable tracker;
+
+    TrackedBoolean(TemplateBooleanModel model, Runnable tracker) {
+      this.model = model;
+      this.tracker = tracker;
+    }
+
+    @Override
+    public boolean getAsBoolean() throws TemplateModelException {
+      tracker.run();
+      return model.getAsBoolean();
+    }
+
+    @Override
+    public TemplateModel getModel() {
+      return model;
+    }
+  }
+
+  static class TrackedDate implements TemplateDateModel, TrackedModel {
+    final TemplateDateModel model;
+    final Runnable tracker;
+
+    TrackedDate(TemplateDateModel model, Runnable tracker) {
+      this.model = model;
+      this.tracker = tracker;
+    }
+
+    @Override
+    public Date getAsDate() throws TemplateModelException {
+      tracker.run();
+      return model.getAsDate();
+    }
+
+    @Override
+    public int getDateType() {
+      return model.getDateType();
+    }
+
+    @Override
+    public TemplateModel getModel() {
+      return model;
+    }
+  }
+
+  static class TrackedNumber implements TemplateNumberModel, TrackedModel {
+    final TemplateNumberModel model;
+    final Runnable tracker;
+
+    TrackedNumber(TemplateNumberModel model, Runnable tracker) {
+      this.model = model;
+      this.tracker = tracker;
+    }
+
+    @Override
+    public Number getAsNumber() throws TemplateModelException {
+      tracker.run();
+      return model.getAsNumber();
+    }
+
+    @Override
+    public TemplateModel getModel() {
+      return model;
+    }
+  }
+
+  static class TrackedScalar implements TemplateScalarModel, TrackedModel {
+    final TemplateScalarModel model;
+    final Runnable tracker;
+
+    TrackedScalar(TemplateScalarModel model, Runnable tracker) {
+      this.model = model;
+      this.tracker = tracker;
+    }
+
+    @Override
+    public String getAsString() throws TemplateModelException {
+      tracker.run();
+      return model.getAsString();
+    }
+
+    @Override
+    public TemplateModel getModel() {
+      return model;
+    }
+  }
+
+  /**
+   * The sequence size is not tracked since it's a part of the shape, the elements are tracked.
+   */
+  static class TrackedSequence implements TemplateSequenceModel, TrackedModel {
+    final TemplateSequenceModel model;
+    final TrackingDataModel dataModel;
+    final String name;
+
+    TrackedSequence(TemplateSequenceModel model, TrackingDataModel dataModel, String name) {
+      this.model = model;
+      this.dataModel = dataModel;
+      this.name = name;
+    }
+
+    @Override
+    public TemplateModel get(int index) throws TemplateModelException {
+      return dataModel.track(name, model.get(index), false);
+    }
+
+    @Override
+    public TemplateModel getModel() {
+      return model;
+    }
+
+    @Override
+    public int size() throws TemplateModelException {
+      return model.size();
+    }
+  }
+
+  /**
+   * The data model that records the names of the parameters whose values are read by the template
+   * other than through the template method model. The values that can not be tracked, such as the
+   * maps and the beans, are regarded as read.
+   */
+  static class TrackingDataModel implements TemplateHashModel {
+    final Map<String, Object> param;
+    final ObjectWrapper wrapper;
+    final Set<String> tested = new HashSet<>();
+
+    TrackingDataModel(Map<String, Object> param, ObjectWrapper wrapper) {
+      this.param = param;
+      this.wrapper = wrapper;
+    }
+
+    @Override
+    public TemplateModel get(String key) throws TemplateModelException {
+      Object value = param.get(key);
+      return value == null ? null : track(key, wrapper.wrap(value), true);
+    }
+
+    @Override
+    public boolean isEmpty() throws TemplateModelException {
+      return param.isEmpty();
+    }
+
+    TemplateModel track(String name, TemplateModel model, boolean sequenceAllowed) {
+      if (model == null || model instanceof TemplateMethodModel) {
+        return model;
+      }
+      final Runnable tracker = () -> tested.add(name);
+      final int kinds = (model instanceof TemplateScalarModel ? 1 : 0)
+          + (model instanceof TemplateNumberModel ? 1 : 0)
+          + (model instanceof TemplateDateModel ? 1 : 0)
+          + (model instanceof TemplateBooleanModel ? 1 : 0)
+          + (model instanceof TemplateSequenceModel ? 1 : 0)
+          + (model instanceof TemplateHashModel ? 1 : 0)
+          + (model instanceof TemplateCollectionModel ? 1 : 0);
+      if (kinds == 1) {
+        if (model instanceof TemplateScalarModel) {
+          return new TrackedScalar((TemplateScalarModel) model, tracker);
+        } else if (model instanceof TemplateNumberModel) {
+          return new TrackedNumber((TemplateNumberModel) model, tracker);
+        } else if (model instanceof TemplateDateModel) {
+          return new TrackedDate((TemplateDateModel) model, tracker);
+        } else if (model instanceof TemplateBooleanModel) {
+          return new TrackedBoolean((TemplateBooleanModel) model, tracker);
+        } else if (sequenceAllowed && model instanceof TemplateSequenceModel) {
+          return new TrackedSequence((TemplateSequenceModel) model, this, name);
+        }
+      }
+      tracker.run();
+      return model;
+    }
+  }
 }
@@ -72,7 +72,9 @@ public class DefaultSqlNamedQueryTplMmResolver implements DynamicQueryTplMmResol
   }
 
   Object getParamValue(Object arg) throws TemplateModelException {
-    if (arg instanceof TemplateScalarModel) {
+    if (arg instanceof DefaultSqlNamedQueryTpl.TrackedModel) {
+      return getParamValue(((DefaultSqlNamedQueryTpl.TrackedModel) arg).getModel());
+    } else if (arg instanceof TemplateScalarModel) {
       return ((TemplateScalarModel) arg).getAsString().trim();
     } else if (arg instanceof TemplateDateModel) {
       return ((TemplateDateModel) arg).getAsDate();
@@ -15,10 +15,15 @@ package org.corant.suites.query.sqlquery;
 
 import static org.corant.shared.util.Assertions.shouldNotNull;
 import static org.corant.shared.util.ObjectUtils.forceCast;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -26,10 +31,9 @@ import javax.sql.DataSource;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.dbutils.StatementConfiguration;
-import org.apache.commons.dbutils.handlers.BeanHandler;
-import org.apache.commons.dbutils.handlers.BeanListHandler;
 import org.apache.commons.dbutils.handlers.MapHandler;
 import org.apache.commons.dbutils.handlers.MapListHandler;
+import org.corant.suites.datasource.shared.JDBCTemplate;
 import org.corant.suites.query.QueryRuntimeException;
 
 /**
@@ -40,16 +44,34 @@ import org.corant.suites.query.QueryRuntimeException;
  */
 public class DefaultSqlQueryExecutor implements SqlQueryExecutor {
 
+  /**
+   * @deprecated the map results are mapped to the compact row maps, see
+   *             {@link SqlRowMappers#mapRowHandler()}
+   */
+  @Deprecated
   public final static MapHandler MAP_HANDLER = new MapHandler();
+
+  /**
+   * @deprecated the map results are mapped to the compact row maps, see
+   *             {@link SqlRowMappers#mapListHandler()}
+   */
+  @Deprecated
   public final static MapListHandler MAP_LIST_HANDLER = new MapListHandler();
 
   protected final QueryRunner runner;
+  protected final JDBCTemplate template;
+  protected final int fetchSize;
+  protected final StatementConfiguration statementConfiguration;
 
   public DefaultSqlQueryExecutor(SqlQueryConfiguration confiuration) {
-    runner = new QueryRunner(confiuration.getDataSource(),
+    statementConfiguration =
         new StatementConfiguration(confiuration.getFetchDirection(), confiuration.getFetchSize(),
             confiuration.getMaxFieldSize(), confiuration.getMaxRows(),
-            confiuration.getQueryTimeout()));
+            confiuration.getQueryTimeout());
+    runner = new QueryRunner(confiuration.getDataSource(), statementConfiguration);
+    template = JDBCTemplate.build(confiuration.getDataSource());
+    fetchSize = confiuration.getFetchSize() == null ? SqlQueryConfiguration.DFLT_FETCH_SIZE
+        : confiuration.getFetchSize();
   }
 
   public static DefaultSqlQueryExecutor of(DataSource ds) {
@@ -73,7 +95,7 @@ public class DefaultSqlQueryExecutor implements SqlQueryExecutor {
 
   @Override
   public Map<String, Object> get(String sql) throws SQLException {
-    return getRunner().query(sql, new MapHandler());
+    return getRunner().query(sql, SqlRowMappers.mapRowHandler());
   }
 
   @Override
@@ -88,9 +110,24 @@ public class DefaultSqlQueryExecutor implements SqlQueryExecutor {
     return forceCast(result);
   }
 
+  @Override
+  public <T> T getCancelable(String sql, Class<T> resultClass,
+      Consumer<Statement> statementHandler, Object... args) throws SQLException {
+    ResultSetHandler<?> handler = resolveResultSetHandler(resultClass, false);
+    try (Connection conn = getRunner().getDataSource().getConnection();
+        PreparedStatement ps = conn.prepareStatement(sql)) {
+      configureStatement(ps);
+      getRunner().fillStatement(ps, args);
+      statementHandler.accept(ps);
+      try (ResultSet rs = ps.executeQuery()) {
+        return forceCast(handler.handle(rs));
+      }
+    }
+  }
+
   @Override
   public List<Map<String, Object>> select(String sql) throws SQLException {
-    List<Map<String, Object>> tmp = getRunner().query(sql, new MapListHandler());
+    List<Map<String, Object>> tmp = getRunner().query(sql, SqlRowMappers.mapListHandler());
     return tmp == null ? new ArrayList<>() : tmp;
   }
 
@@ -107,20 +144,56 @@ public class DefaultSqlQueryExecutor implements SqlQueryExecutor {
   }
 
   @Override
-  public <T> Stream<T> stream(String sql, Map<String, Object> param) {
-    return Stream.empty();
+  public <T> Stream<T> stream(String sql, Class<T> resultClass, Object... args)
+      throws SQLException {
+    // the single row handler is applied to the cursor once for each row
+    ResultSetHandler<T> rowHandler = forceCast(resolveResultSetHandler(resultClass, false));
+    return getTemplate().stream(sql, fetchSize, rowHandler, args);
+  }
+
+  /**
+   * Apply the statement configuration of the query runner to the statement that is not prepared by
+   * the runner, such as the cancelable statement.
+   */
+  protected void configureStatement(Statement stmt) throws SQLException {
+    StatementConfiguration sc = statementConfiguration;
+    if (sc.isFetchDirectionSet()) {
+      stmt.setFetchDirection(sc.getFetchDirection());
+    }
+    if (sc.isFetchSizeSet()) {
+      stmt.setFetchSize(sc.getFetchSize());
+    }
+    if (sc.isMaxFieldSizeSet()) {
+      stmt.setMaxFieldSize(sc.getMaxFieldSize());
+    }
+    if (sc.isMaxRowsSet()) {
+      stmt.setMaxRows(sc.getMaxRows());
+    }
+    if (sc.isQueryTimeoutSet()) {
+      stmt.setQueryTimeout(sc.getQueryTimeout());
+    }
   }
 
   protected QueryRunner getRunner() {
     return runner;
   }
 
+  protected JDBCTemplate getTemplate() {
+    return template;
+  }
+
+  /**
+   * Returns the result set handler, the map handlers map the rows to the compact row maps and the
+   * bean handlers map the rows with the row mappers that are compiled once for each result class
+   * and column layout, see {@link SqlRowMappers}.
+   */
   protected ResultSetHandler<?> resolveResultSetHandler(Class<?> resultClass, boolean isList) {
     if (isList) {
-      return Map.class.isAssignableFrom(resultClass) ? MAP_LIST_HANDLER
-          : new BeanListHandler<>(resultClass);
+      return Map.class.isAssignableFrom(resultClass) ? SqlRowMappers.mapListHandler()
+          : SqlRowMappers.beanListHandler(resultClass);
     } else {
-      return Map.class.isAssignableFrom(resultClass) ? MAP_HANDLER : new BeanHandler<>(resultClass);
+      return Map.class.isAssignableFrom(resultClass) ? SqlRowMappers.mapRowHandler()
+          : SqlRowMappers.beanRowHandler(resultClass);
     }
   }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import static org.corant.shared.util.ConversionUtils.toInteger;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+import org.corant.suites.query.QueryRuntimeException;
+import org.corant.suites.query.mapping.QueryHint;
+import org.corant.suites.query.sqlquery.dialect.Dialect;
+
+/**
+ * corant-suites-query
+ *
+ * Use the row estimate of the execution plan as the total, the total is flagged as approximate. The
+ * strategy name is "estimated", if the dialect does not support the estimate or the estimate is
+ * less than the hint parameter "threshold" the exact total is counted and only then the count SQL
+ * is derived, for example:
+ *
+ * <pre>
+ * &lt;hint key="count"&gt;
+ *   &lt;parameter name="strategy" value="estimated"/&gt;
+ *   &lt;parameter name="threshold" value="10000"/&gt;
+ * &lt;/hint&gt;
+ * </pre>
+ *
+ * @see Dialect#getEstimatedCountSql(String)
+ * @see Dialect#resolveEstimatedCount(List)
+ * @author bingo 下午4:52:03
+ *
+ */
+@ApplicationScoped
+public class EstimatedSqlCountStrategy implements SqlCountStrategy {
+
+  public static final String STRATEGY = "estimated";
+  public static final String HINT_THRESHOLD = "threshold";
+
+  @Override
+  public boolean canHandle(QueryHint qh) {
+    return qh != null && HINT_COUNT.equalsIgnoreCase(qh.getKey())
+        && STRATEGY.equalsIgnoreCase(SqlCountStrategy.getHintValue(qh, HINT_STRATEGY));
+  }
+
+  @Override
+  public Counting prepare(QueryHint qh, CountContext context) {
+    final int threshold = toInteger(SqlCountStrategy.getHintValue(qh, HINT_THRESHOLD), 0);
+    return new Counting() {
+      volatile boolean approximate = false;
+
+      @Override
+      public int get() {
+        Integer estimated = estimate(context);
+        if (estimated != null && estimated >= threshold) {
+          approximate = true;
+          return estimated;
+        }
+        return context.count();
+      }
+
+      @Override
+      public boolean isApproximate() {
+        return approximate;
+      }
+    };
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  protected Integer estimate(CountContext context) {
+    Dialect dialect = context.getDialect();
+    String estimatedSql = dialect.getEstimatedCountSql(context.getSql());
+    if (estimatedSql == null) {
+      return null;
+    }
+    try {
+      List<Map> plan =
+          context.getExecutor().select(estimatedSql, Map.class, context.getParameters());
+      return dialect.resolveEstimatedCount((List) plan);
+    } catch (SQLException e) {
+      throw new QueryRuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * corant-suites-query
+ *
+ * A bounded cache of the values that derived from the SQL statements such as the clause positions
+ * and the count statements. The lookups are lock free and the values are computed outside of any
+ * lock, so that a value may be computed more than once by the concurrent callers and only the first
+ * one is kept. When the cache is full, it is shrunk to three quarters of its bound in a batch, the
+ * entries that were not used since the previous eviction are evicted first (second chance), then
+ * the arbitrary ones.
+ *
+ * @author bingo 下午4:12:37
+ *
+ */
+final class SqlCache<K, V> {
+
+  final int maxSize;
+  final ConcurrentHashMap<K, Entry<V>> entries;
+  final AtomicBoolean evicting = new AtomicBoolean();
+
+  SqlCache(int maxSize) {
+    this.maxSize = Math.max(maxSize, 1);
+    entries = new ConcurrentHashMap<>(Math.min(this.maxSize, 64) * 2);
+  }
+
+  void clear() {
+    entries.clear();
+  }
+
+  V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      Entry<V> computed = new Entry<>(loader.apply(key));
+      entry = entries.putIfAbsent(key, computed);
+      if (entry == null) {
+        entry = computed;
+        if (entries.size() > maxSize) {
+          evict();
+        }
+      }
+    } else if (!entry.used) {
+      entry.used = true;
+    }
+    return entry.value;
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  void evict() {
+    if (!evicting.compareAndSet(false, true)) {
+      return; // another caller is evicting, the bound is exceeded only temporarily
+    }
+    try {
+      final int targetSize = maxSize - (maxSize >> 2);
+      Iterator<Entry<V>> it = entries.values().iterator();
+      while (it.hasNext() && entries.size() > targetSize) {
+        Entry<V> entry = it.next();
+        if (entry.used) {
+          entry.used = false;
+        } else {
+          it.remove();
+        }
+      }
+      it = entries.values().iterator();
+      while (it.hasNext() && entries.size() > targetSize) {
+        it.next();
+        it.remove();
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  static final class Entry<V> {
+    final V value;
+    volatile boolean used;
+
+    Entry(V value) {
+      this.value = value;
+    }
+  }
+}
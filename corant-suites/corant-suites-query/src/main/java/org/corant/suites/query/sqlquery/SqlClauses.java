@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+/**
+ * corant-suites-query
+ *
+ * The positions of the top level clauses of a SQL statement, resolved by a single pass scan that
+ * skips the quoted strings and identifiers, the comments and the parenthesized sub statements. The
+ * position is the index of the first character of the first top level keyword or -1 if not found.
+ *
+ * NOTE: In quoted strings only the doubled quote is treated as an escape.
+ *
+ * @author bingo 下午3:27:50
+ *
+ */
+public class SqlClauses {
+
+  public static final int CACHE_SIZE = 512;
+
+  static final SqlCache<String, SqlClauses> CACHE = new SqlCache<>(CACHE_SIZE);
+
+  final int select;
+  final int selectDistinct;
+  final int distinct;
+  final int from;
+  final int where;
+  final int orderBy;
+
+  SqlClauses(int select, int selectDistinct, int distinct, int from, int where, int orderBy) {
+    this.select = select;
+    this.selectDistinct = selectDistinct;
+    this.distinct = distinct;
+    this.from = from;
+    this.where = where;
+    this.orderBy = orderBy;
+  }
+
+  /**
+   * Returns the clauses of the SQL statement, the results are kept in a bounded cache and the
+   * statement is scanned outside of any lock when it is not cached.
+   *
+   * @param sql the SQL statement
+   * @return the clauses
+   */
+  public static SqlClauses of(String sql) {
+    return CACHE.computeIfAbsent(sql, SqlClauses::scan);
+  }
+
+  /**
+   * Scan the SQL statement, throws IllegalStateException if the parentheses are unmatched.
+   *
+   * @param sql the SQL statement
+   * @return the clauses
+   */
+  public static SqlClauses scan(String sql) {
+    final int len = sql.length();
+    int select = -1, selectDistinct = -1, distinct = -1, from = -1, where = -1, orderBy = -1;
+    boolean afterSelect = false;
+    int depth = 0;
+    int i = 0;
+    while (i < len) {
+      final char c = sql.charAt(i);
+      final char n = i + 1 < len ? sql.charAt(i + 1) : 0;
+      if (c == '\'' || c == '"' || c == '`') {
+        i = skipQuoted(sql, i, c);
+      } else if (c == '[') {
+        int end = sql.indexOf(']', i + 1);
+        i = end < 0 ? len : end + 1;
+      } else if (c == '-' && n == '-') {
+        int end = sql.indexOf('\n', i + 2);
+        i = end < 0 ? len : end + 1;
+      } else if (c == '/' && n == '*') {
+        int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? len : end + 2;
+      } else if (c == '(') {
+        depth++;
+        i++;
+      } else if (c == ')') {
+        if (depth == 0) {
+          throw new IllegalStateException("Found an unmatched ')' at position " + i + ": " + sql);
+        }
+        depth--;
+        i++;
+      } else if (isWordPart(c)) {
+        final int start = i;
+        while (i < len && isWordPart(sql.charAt(i))) {
+          i++;
+        }
+        if (depth == 0) {
+          final int wl = i - start;
+          if (afterSelect && isWord(sql, start, wl, SqlHelper.DISTINCT)) {
+            selectDistinct = select;
+          }
+          afterSelect = false;
+          if (select < 0 && isWord(sql, start, wl, SqlHelper.SELECT)) {
+            select = start;
+            afterSelect = true;
+          } else if (distinct < 0 && isWord(sql, start, wl, SqlHelper.DISTINCT)) {
+            distinct = start;
+          } else if (from < 0 && isWord(sql, start, wl, SqlHelper.FROM)) {
+            from = start;
+          } else if (where < 0 && isWord(sql, start, wl, SqlHelper.WHERE)) {
+            where = start;
+          } else if (orderBy < 0 && isWord(sql, start, wl, "order") && isFollowedByBy(sql, i)) {
+            orderBy = start;
+          }
+        }
+      } else {
+        i++;
+      }
+    }
+    if (depth != 0) {
+      throw new IllegalStateException(
+          "Unmatched parenthesis in rendered SQL (" + depth + " depth): " + sql);
+    }
+    return new SqlClauses(select, selectDistinct, distinct, from, where, orderBy);
+  }
+
+  static boolean isFollowedByBy(String sql, int pos) {
+    int i = pos;
+    final int len = sql.length();
+    while (i < len && Character.isWhitespace(sql.charAt(i))) {
+      i++;
+    }
+    return i > pos && i + 2 <= len && sql.regionMatches(true, i, "by", 0, 2)
+        && (i + 2 == len || !isWordPart(sql.charAt(i + 2)));
+  }
+
+  static boolean isWord(String sql, int start, int length, String keyword) {
+    return length == keyword.length() && sql.regionMatches(true, start, keyword, 0, length);
+  }
+
+  static boolean isWordPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  static int skipQuoted(String sql, int start, char quote) {
+    final int len = sql.length();
+    int i = start + 1;
+    while (i < len) {
+      if (sql.charAt(i) == quote) {
+        if (i + 1 < len && sql.charAt(i + 1) == quote) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return len;
+  }
+
+  public int getDistinctPosition() {
+    return distinct;
+  }
+
+  public int getFromPosition() {
+    return from;
+  }
+
+  public int getOrderByPosition() {
+    return orderBy;
+  }
+
+  public int getSelectDistinctPosition() {
+    return selectDistinct;
+  }
+
+  public int getSelectPosition() {
+    return select;
+  }
+
+  public int getWherePosition() {
+    return where;
+  }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import static org.corant.shared.util.MapUtils.getMapInteger;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.corant.suites.query.QueryRuntimeException;
+import org.corant.suites.query.mapping.QueryHint;
+import org.corant.suites.query.mapping.QueryHint.QueryHintParameter;
+import org.corant.suites.query.sqlquery.dialect.Dialect;
+
+/**
+ * corant-suites-query
+ *
+ * The total counting strategy of the paging query, declared by a query hint such as:
+ *
+ * <pre>
+ * &lt;hint key="count"&gt;
+ *   &lt;parameter name="strategy" value="concurrent"/&gt;
+ * &lt;/hint&gt;
+ * </pre>
+ *
+ * The built-in strategies are {@link ConcurrentSqlCountStrategy}, {@link CachedSqlCountStrategy}
+ * and {@link EstimatedSqlCountStrategy}, if the hint is absent or no strategy can handle it the
+ * total is counted after the page query on the caller thread.
+ *
+ * @author bingo 下午4:06:12
+ *
+ */
+public interface SqlCountStrategy {
+
+  String HINT_COUNT = "count";
+  String HINT_STRATEGY = "strategy";
+
+  static String getHintValue(QueryHint hint, String name) {
+    List<QueryHintParameter> params = hint.getParameters(name);
+    return params.isEmpty() ? null : params.get(0).getValue();
+  }
+
+  default boolean canHandle(QueryHint qh) {
+    return false;
+  }
+
+  /**
+   * Prepare the counting of the total, it's invoked before the page query is executed so that the
+   * implementation can start counting in advance. The returned counting is either retrieved or
+   * canceled after the page query.
+   *
+   * @param qh the count hint
+   * @param context the count context
+   * @return the counting
+   */
+  Counting prepare(QueryHint qh, CountContext context);
+
+  /**
+   * corant-suites-query
+   *
+   * The context of the total counting of one paging query. The count SQL is derived from the
+   * query SQL on the first use, so the strategies that do not count, such as a cache hit or an
+   * accepted estimate, never derive it.
+   *
+   * @author bingo 下午4:06:12
+   *
+   */
+  class CountContext {
+
+    final String queryName;
+    final String sql;
+    final Supplier<String> countSqlSupplier;
+    final Object[] parameters;
+    final Dialect dialect;
+    final SqlQueryExecutor executor;
+    volatile String countSql;
+
+    public CountContext(String queryName, String sql, Supplier<String> countSqlSupplier,
+        Object[] parameters, Dialect dialect, SqlQueryExecutor executor) {
+      this.queryName = queryName;
+      this.sql = sql;
+      this.countSqlSupplier = countSqlSupplier;
+      this.parameters = parameters == null ? new Object[0] : parameters;
+      this.dialect = dialect;
+      this.executor = executor;
+    }
+
+    /**
+     * Count the exact total with the count SQL.
+     *
+     * @return the total
+     */
+    public int count() {
+      try {
+        Integer total =
+            getMapInteger(executor.get(getCountSql(), Map.class, parameters),
+                Dialect.COUNT_FIELD_NAME);
+        return total == null ? 0 : total;
+      } catch (SQLException e) {
+        throw new QueryRuntimeException(e);
+      }
+    }
+
+    /**
+     * Count the exact total with the count SQL, the statement is passed to the handler before it
+     * is executed so that the counting can be canceled from another thread.
+     *
+     * @param statementHandler the handler of the count statement
+     * @return the total
+     * @see SqlQueryExecutor#getCancelable(String, Class, Consumer, Object...)
+     */
+    public int count(Consumer<Statement> statementHandler) {
+      try {
+        Integer total = getMapInteger(
+            executor.getCancelable(getCountSql(), Map.class, statementHandler, parameters),
+            Dialect.COUNT_FIELD_NAME);
+        return total == null ? 0 : total;
+      } catch (SQLException e) {
+        throw new QueryRuntimeException(e);
+      }
+    }
+
+    /**
+     * Returns the count SQL, it is derived on the first call.
+     *
+     * @return the count SQL
+     */
+    public String getCountSql() {
+      String result = countSql;
+      if (result == null) {
+        countSql = result = countSqlSupplier.get();
+      }
+      return result;
+    }
+
+    public Dialect getDialect() {
+      return dialect;
+    }
+
+    public SqlQueryExecutor getExecutor() {
+      return executor;
+    }
+
+    public Object[] getParameters() {
+      return parameters;
+    }
+
+    public String getQueryName() {
+      return queryName;
+    }
+
+    public String getSql() {
+      return sql;
+    }
+  }
+
+  /**
+   * corant-suites-query
+   *
+   * The total counting of one paging query.
+   *
+   * @author bingo 下午4:06:12
+   *
+   */
+  interface Counting {
+
+    /**
+     * Cancel the counting if the total is not needed, it may be invoked after {@link #get()}.
+     */
+    default void cancel() {}
+
+    /**
+     * Returns the total, waits for it if it is being counted.
+     *
+     * @return the total
+     */
+    int get();
+
+    /**
+     * Whether the total is an estimate, only valid after {@link #get()}.
+     *
+     * @return isApproximate
+     */
+    default boolean isApproximate() {
+      return false;
+    }
+  }
+}
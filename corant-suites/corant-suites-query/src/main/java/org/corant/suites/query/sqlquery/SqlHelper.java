@@ -31,6 +31,7 @@ public class SqlHelper {
 
   public static final String OFFSET_PARAM_NME = "_offset";
   public static final String LIMIT_PARAM_NME = "_limit";
+  public static final String KEYSET_PARAM_NME = "_keyset";
   public static final int OFFSET_PARAM_VAL = 0;
   public static final int LIMIT_PARAM_VAL = 15;
 
@@ -57,11 +58,11 @@ public class SqlHelper {
   }
 
   public static boolean containDistinct(String sql) {
-    return sql != null && shallowIndexOfPattern(sql, DISTINCT_PATTERN, 0) > 0;
+    return sql != null && SqlClauses.of(sql).getDistinctPosition() > 0;
   }
 
   public static boolean containOrderBy(String sql) {
-    return sql != null && shallowIndexOfPattern(sql, ORDER_BY_PATTERN, 0) > 0;
+    return sql != null && SqlClauses.of(sql).getOrderByPosition() > 0;
   }
 
   public static boolean containRegex(String sql, String regex) {
@@ -71,24 +72,29 @@ public class SqlHelper {
   }
 
   public static boolean containSelectDistinct(String sql) {
-    return sql != null && shallowIndexOfPattern(sql, SELECT_DISTINCT_PATTERN, 0) > 0;
+    return sql != null && SqlClauses.of(sql).getSelectDistinctPosition() >= 0;
   }
 
   public static boolean containWhere(String sql) {
-    return sql != null && shallowIndexOfPattern(sql, WHERE_PATTERN, 0) > 0;
+    return sql != null && SqlClauses.of(sql).getWherePosition() > 0;
   }
 
   public static int getLimit(Map<String, Object> param) {
     return getMapInteger(param, LIMIT_PARAM_NME, LIMIT_PARAM_VAL);
   }
 
+  public static String getKeyset(Map<String, Object> param) {
+    Object keyset = param == null ? null : param.get(KEYSET_PARAM_NME);
+    return keyset == null ? null : keyset.toString();
+  }
+
   public static int getOffset(Map<String, Object> param) {
     return getMapInteger(param, OFFSET_PARAM_NME, OFFSET_PARAM_VAL);
   }
 
   public static String getOrderBy(String sql) {
     if (sql != null) {
-      int pos = shallowIndexOfPattern(sql, ORDER_BY_PATTERN, 0);
+      int pos = SqlClauses.of(sql).getOrderByPosition();
       if (pos > 0) {
         return sql.substring(pos);
       }
@@ -98,7 +104,7 @@ public class SqlHelper {
 
   public static String getSelectColumns(String sql) {
     return sql.substring(getSelectColumnsStartPosition(sql),
-        shallowIndexOfPattern(sql, FROM_PATTERN, 0));
+        SqlClauses.of(sql).getFromPosition());
   }
 
   // public static void main(String... regex) {
@@ -119,7 +125,7 @@ public class SqlHelper {
 
   public static String removeOrderBy(String sql) {
     if (sql != null) {
-      int pos = shallowIndexOfPattern(sql, ORDER_BY_PATTERN, 0);
+      int pos = SqlClauses.of(sql).getOrderByPosition();
       if (pos > 0) {
         return sql.substring(0, pos);
       }
@@ -128,7 +134,7 @@ public class SqlHelper {
   }
 
   public static String removeSelect(String sql) {
-    int pos = shallowIndexOfPattern(sql, FROM_PATTERN, 0);
+    int pos = SqlClauses.of(sql).getFromPosition();
     if (pos != -1) {
       return sql.substring(pos);
     } else {
@@ -139,7 +145,8 @@ public class SqlHelper {
   /**
    *
    * Returns index of the first case-insensitive match of search pattern that is not enclosed in
-   * parenthesis.
+   * parenthesis. For the SELECT, DISTINCT, FROM, WHERE and ORDER BY keywords use {@link SqlClauses}
+   * instead, it resolves them in one scan and caches the result.
    *
    * @param sb String to search.
    * @param pattern Compiled search pattern.
@@ -238,7 +245,7 @@ public class SqlHelper {
   }
 
   static int getSelectColumnsStartPosition(String sb) {
-    final int startPos = shallowIndexOfPattern(sb, SELECT_PATTERN, 0);
+    final int startPos = SqlClauses.of(sb).getSelectPosition();
     // adjustment for 'select distinct ' and 'select '.
     final String sql = sb.substring(startPos).toLowerCase(Locale.getDefault());
     if (sql.startsWith(SELECT_DISTINCT_SPACE)) {
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import static org.corant.shared.util.StringUtils.isBlank;
+import static org.corant.shared.util.StringUtils.split;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.corant.suites.query.QueryRuntimeException;
+import org.corant.suites.query.QueryUtils;
+import org.corant.suites.query.mapping.QueryHint;
+import org.corant.suites.query.mapping.QueryHint.QueryHintParameter;
+import org.corant.suites.query.sqlquery.dialect.Dialect;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+/**
+ * corant-suites-query
+ *
+ * The keyset (seek) pagination declaration of a query, declared by a query hint such as:
+ *
+ * <pre>
+ * &lt;hint key="keyset"&gt;
+ *   &lt;parameter name="columns" value="created_time,id"/&gt;
+ *   &lt;parameter name="properties" value="createdTime,id"/&gt;
+ *   &lt;parameter name="direction" value="desc"/&gt;
+ * &lt;/hint&gt;
+ * </pre>
+ *
+ * The columns are the column labels of the query that together uniquely identify a row and must
+ * not be null, the properties are the names used to read the key values from the result and
+ * default to the columns. The key values of the last row are encoded to an opaque continuation
+ * token, pass it with the parameter {@link SqlHelper#KEYSET_PARAM_NME} to retrieve the next page.
+ *
+ * @author bingo 下午2:15:47
+ *
+ */
+public class SqlKeyset {
+
+  public static final String HINT_KEYSET = "keyset";
+  public static final String HINT_COLUMNS = "columns";
+  public static final String HINT_PROPERTIES = "properties";
+  public static final String HINT_DIRECTION = "direction";
+
+  static final TypeReference<List<String>> TOKEN_TYPE = new TypeReference<List<String>>() {};
+
+  final String[] columns;
+  final String[] properties;
+  final boolean desc;
+
+  SqlKeyset(String[] columns, String[] properties, boolean desc) {
+    this.columns = columns;
+    this.properties = properties;
+    this.desc = desc;
+  }
+
+  /**
+   * Resolve the keyset declaration from the query hints, returns null if not declared.
+   *
+   * @param hints the query hints
+   * @return the keyset declaration or null
+   */
+  public static SqlKeyset of(List<QueryHint> hints) {
+    QueryHint hint = hints == null ? null
+        : hints.stream().filter(h -> HINT_KEYSET.equalsIgnoreCase(h.getKey())).findFirst()
+            .orElse(null);
+    if (hint == null) {
+      return null;
+    }
+    String[] columns = split(getHintValue(hint, HINT_COLUMNS), ",", true, true);
+    if (columns.length == 0) {
+      throw new QueryRuntimeException("The keyset hint must declare the ordering columns!");
+    }
+    String[] properties = split(getHintValue(hint, HINT_PROPERTIES), ",", true, true);
+    if (properties.length == 0) {
+      properties = columns;
+    } else if (properties.length != columns.length) {
+      throw new QueryRuntimeException(
+          "The keyset hint properties size must be equal to the columns size!");
+    }
+    return new SqlKeyset(columns, properties,
+        "desc".equalsIgnoreCase(getHintValue(hint, HINT_DIRECTION)));
+  }
+
+  static String getHintValue(QueryHint hint, String name) {
+    List<QueryHintParameter> params = hint.getParameters(name);
+    return params.isEmpty() ? null : params.get(0).getValue();
+  }
+
+  /**
+   * Decode the continuation token to the key values, returns null if the token is blank.
+   *
+   * @param token the continuation token
+   * @return the key values
+   */
+  public Object[] decode(String token) {
+    if (isBlank(token)) {
+      return null;
+    }
+    try {
+      List<String> values = QueryUtils.ESJOM.readValue(
+          new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8), TOKEN_TYPE);
+      if (values.size() != columns.length) {
+        throw new QueryRuntimeException("The keyset continuation token is not match the query!");
+      }
+      Object[] keyValues = new Object[values.size()];
+      for (int i = 0; i < keyValues.length; i++) {
+        keyValues[i] = decodeValue(values.get(i));
+      }
+      return keyValues;
+    } catch (QueryRuntimeException e) {
+      throw e;
+    } catch (IOException | RuntimeException e) {
+      // the token comes from the client, any malformed value is an illegal token
+      throw new QueryRuntimeException(e, "The keyset continuation token is illegal!");
+    }
+  }
+
+  /**
+   * Encode the key values of the given row to the continuation token.
+   *
+   * @param row the last row of the page
+   * @return the continuation token
+   */
+  public String encode(Object row) {
+    List<String> values = new ArrayList<>(properties.length);
+    for (String property : properties) {
+      values.add(encodeValue(property, extractValue(row, property)));
+    }
+    try {
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(
+          QueryUtils.ESJOM.writeValueAsString(values).getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new QueryRuntimeException(e);
+    }
+  }
+
+  public String[] getColumns() {
+    return columns;
+  }
+
+  /**
+   * Returns the SQL for the page after the given key values, or the first page if the key values
+   * is null.
+   */
+  public String getLimitSql(Dialect dialect, String sql, Object[] keyValues, int limit) {
+    return dialect.getKeysetLimitSql(sql, columns, desc, keyValues != null, limit);
+  }
+
+  /**
+   * Returns the query parameters with the seek parameters appended.
+   */
+  public Object[] getParameters(Dialect dialect, Object[] queryParam, Object[] keyValues) {
+    if (keyValues == null) {
+      return queryParam;
+    }
+    Object[] seekParam = dialect.getKeysetParameters(keyValues);
+    Object[] params = new Object[queryParam.length + seekParam.length];
+    System.arraycopy(queryParam, 0, params, 0, queryParam.length);
+    System.arraycopy(seekParam, 0, params, queryParam.length, seekParam.length);
+    return params;
+  }
+
+  public boolean isDesc() {
+    return desc;
+  }
+
+  Object decodeValue(String value) {
+    if (value == null || value.length() < 2 || value.charAt(1) != ':') {
+      throw new IllegalArgumentException("Illegal keyset value " + value);
+    }
+    String v = value.substring(2);
+    switch (value.charAt(0)) {
+      case 'S':
+        return v;
+      case 'L':
+        return Long.valueOf(v);
+      case 'D':
+        return new BigDecimal(v);
+      case 'F':
+        return Double.valueOf(v);
+      case 'R':
+        return Float.valueOf(v);
+      case 'B':
+        return Boolean.valueOf(v);
+      case 'T':
+        return Timestamp.valueOf(LocalDateTime.parse(v));
+      case 'd':
+        return java.sql.Date.valueOf(LocalDate.parse(v));
+      case 't':
+        return Time.valueOf(LocalTime.parse(v));
+      case 'X':
+        return LocalDateTime.parse(v);
+      case 'Y':
+        return LocalDate.parse(v);
+      case 'Z':
+        return LocalTime.parse(v);
+      default:
+        throw new IllegalArgumentException("Unknown keyset value type " + value.charAt(0));
+    }
+  }
+
+  String encodeValue(String property, Object value) {
+    if (value == null) {
+      throw new QueryRuntimeException("The keyset value of [%s] can not be null!", property);
+    } else if (value instanceof String) {
+      return "S:" + value;
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      return "L:" + value;
+    } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+      return "D:" + value;
+    } else if (value instanceof Double) {
+      return "F:" + value;
+    } else if (value instanceof Float) {
+      return "R:" + value;
+    } else if (value instanceof Boolean) {
+      return "B:" + value;
+    } else if (value instanceof java.sql.Date) {
+      return "d:" + ((java.sql.Date) value).toLocalDate();
+    } else if (value instanceof Time) {
+      return "t:" + ((Time) value).toLocalTime();
+    } else if (value instanceof Timestamp) {
+      return "T:" + ((Timestamp) value).toLocalDateTime();
+    } else if (value instanceof Date) {
+      return "T:" + new Timestamp(((Date) value).getTime()).toLocalDateTime();
+    } else if (value instanceof Instant) {
+      return "T:" + Timestamp.from((Instant) value).toLocalDateTime();
+    } else if (value instanceof LocalDateTime) {
+      return "X:" + value;
+    } else if (value instanceof LocalDate) {
+      return "Y:" + value;
+    } else if (value instanceof LocalTime) {
+      return "Z:" + value;
+    }
+    throw new QueryRuntimeException("The keyset value type %s of [%s] is not supported!",
+        value.getClass(), property);
+  }
+
+  Object extractValue(Object row, String property) {
+    if (row instanceof Map) {
+      return ((Map<?, ?>) row).get(property);
+    }
+    try {
+      return PropertyUtils.getProperty(row, property);
+    } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+      throw new QueryRuntimeException(e, "Can not extract keyset value [%s] from result!",
+          property);
+    }
+  }
+}
@@ -14,8 +14,10 @@
 package org.corant.suites.query.sqlquery;
 
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -30,10 +32,37 @@ public interface SqlQueryExecutor {
 
   <T> T get(String sql, Class<T> resultClass, Object... args) throws SQLException;
 
+  /**
+   * Returns the single result like {@link #get(String, Class, Object...)}, the statement is passed
+   * to the handler before it is executed so that the query can be canceled by
+   * {@link Statement#cancel()} from another thread. The default implementation does not expose the
+   * statement.
+   *
+   * @param sql the query sql
+   * @param resultClass the result class
+   * @param statementHandler the handler of the statement
+   * @param args the query parameters
+   * @throws SQLException
+   */
+  default <T> T getCancelable(String sql, Class<T> resultClass,
+      Consumer<Statement> statementHandler, Object... args) throws SQLException {
+    return get(sql, resultClass, args);
+  }
+
   List<Map<String, Object>> select(String sql) throws SQLException;
 
   <T> List<T> select(String sql, Class<T> resultClass, Object... args) throws SQLException;
 
-  <T> Stream<T> stream(String sql, Map<String, Object> param);
+  /**
+   * Returns a lazily populated stream backed by an open cursor, the underlying connection will be
+   * released when the stream is exhausted or closed, so the caller must close the returned stream.
+   *
+   * @param sql the query sql
+   * @param resultClass the result class of each row
+   * @param args the query parameters
+   * @return a cursor-backed stream
+   * @throws SQLException
+   */
+  <T> Stream<T> stream(String sql, Class<T> resultClass, Object... args) throws SQLException;
 
 }
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * corant-suites-query
+ *
+ * The compact case-insensitive row map, the column keys of all the rows of a result set are held
+ * by one shared immutable schema and each row only holds the column values. The keys that are not
+ * in the schema can still be put, they are held in an additional map of the row. If a column label
+ * is repeated the value of the last column is kept, like the case-insensitive map of the
+ * commons-dbutils.
+ *
+ * @author bingo 下午2:03:29
+ *
+ */
+public class SqlRowMap extends AbstractMap<String, Object> implements Cloneable, Serializable {
+
+  private static final long serialVersionUID = 1968462811853934563L;
+
+  static final Object ABSENT = Marker.ABSENT;
+
+  final Schema schema;
+  final Object[] values;
+  Map<String, Object> extra;
+  transient Set<Map.Entry<String, Object>> entrySet;
+
+  SqlRowMap(Schema schema, Object[] values) {
+    this.schema = schema;
+    this.values = values;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(values, ABSENT);
+    extra = null;
+  }
+
+  /**
+   * Returns a copy of this row that shares the schema, the column values are not cloned.
+   */
+  @Override
+  public SqlRowMap clone() {
+    SqlRowMap clone = new SqlRowMap(schema, values.clone());
+    if (extra != null) {
+      clone.extra = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      clone.extra.putAll(extra);
+    }
+    return clone;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    int slot = schema.slotOf(key);
+    if (slot >= 0 && values[slot] != ABSENT) {
+      return true;
+    }
+    return extra != null && key instanceof String && extra.containsKey(key);
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  @Override
+  public Object get(Object key) {
+    int slot = schema.slotOf(key);
+    if (slot >= 0 && values[slot] != ABSENT) {
+      return values[slot];
+    }
+    return extra != null && key instanceof String ? extra.get(key) : null;
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    int slot = schema.slotOf(key);
+    if (slot >= 0) {
+      Object old = values[slot];
+      values[slot] = value;
+      return old == ABSENT ? null : old;
+    }
+    if (extra == null) {
+      extra = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    }
+    return extra.put(key, value);
+  }
+
+  @Override
+  public Object remove(Object key) {
+    int slot = schema.slotOf(key);
+    if (slot >= 0) {
+      Object old = values[slot];
+      values[slot] = ABSENT;
+      return old == ABSENT ? null : old;
+    }
+    return extra != null && key instanceof String ? extra.remove(key) : null;
+  }
+
+  @Override
+  public int size() {
+    int size = extra == null ? 0 : extra.size();
+    for (Object value : values) {
+      if (value != ABSENT) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * corant-suites-query
+   *
+   * The column keys of a result set, the key lookup is case-insensitive.
+   *
+   * @author bingo 下午2:03:29
+   *
+   */
+  public static class Schema implements Serializable {
+
+    private static final long serialVersionUID = 3052478150736398853L;
+
+    final String[] keys;
+    final int[] columnSlots;
+    final Map<String, Integer> exactSlots = new HashMap<>();
+    final Map<String, Integer> lowerSlots = new HashMap<>();
+
+    Schema(String[] labels) {
+      columnSlots = new int[labels.length];
+      String[] distinct = new String[labels.length];
+      int size = 0;
+      for (int c = 0; c < labels.length; c++) {
+        String lower = labels[c].toLowerCase(Locale.ENGLISH);
+        Integer slot = lowerSlots.get(lower);
+        if (slot == null) {
+          slot = size++;
+          distinct[slot] = labels[c];
+          lowerSlots.put(lower, slot);
+          exactSlots.put(labels[c], slot);
+        }
+        columnSlots[c] = slot;
+      }
+      keys = Arrays.copyOf(distinct, size);
+    }
+
+    public static Schema of(ResultSetMetaData metaData) throws SQLException {
+      String[] labels = new String[metaData.getColumnCount()];
+      for (int c = 0; c < labels.length; c++) {
+        String label = metaData.getColumnLabel(c + 1);
+        labels[c] = label == null || label.isEmpty() ? metaData.getColumnName(c + 1) : label;
+      }
+      return new Schema(labels);
+    }
+
+    public String[] getKeys() {
+      return Arrays.copyOf(keys, keys.length);
+    }
+
+    /**
+     * Read the current row of the result set.
+     */
+    public SqlRowMap read(ResultSet rs) throws SQLException {
+      Object[] values = new Object[keys.length];
+      for (int c = 0; c < columnSlots.length; c++) {
+        values[columnSlots[c]] = rs.getObject(c + 1);
+      }
+      return new SqlRowMap(this, values);
+    }
+
+    int slotOf(Object key) {
+      if (!(key instanceof String)) {
+        return -1;
+      }
+      Integer slot = exactSlots.get(key);
+      if (slot == null) {
+        slot = lowerSlots.get(((String) key).toLowerCase(Locale.ENGLISH));
+      }
+      return slot == null ? -1 : slot;
+    }
+  }
+
+  enum Marker {
+    ABSENT
+  }
+
+  class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+    int next = -1;
+    int last = -1;
+    Iterator<Map.Entry<String, Object>> extraIt;
+
+    EntryIterator() {
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < values.length || extraIt != null && extraIt.hasNext();
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      if (next < values.length) {
+        final int slot = last = next;
+        advance();
+        return new SlotEntry(slot);
+      }
+      if (extraIt == null) {
+        throw new NoSuchElementException();
+      }
+      last = values.length;
+      return extraIt.next();
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      } else if (last < values.length) {
+        values[last] = ABSENT;
+      } else {
+        extraIt.remove();
+      }
+      last = -1;
+    }
+
+    void advance() {
+      do {
+        next++;
+      } while (next < values.length && values[next] == ABSENT);
+      if (next >= values.length && extra != null && extraIt == null) {
+        extraIt = extra.entrySet().iterator();
+      }
+    }
+  }
+
+  class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+    @Override
+    public void clear() {
+      SqlRowMap.this.clear();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return SqlRowMap.this.size();
+    }
+  }
+
+  class SlotEntry implements Map.Entry<String, Object> {
+    final int slot;
+
+    SlotEntry(int slot) {
+      this.slot = slot;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+      return getKey().equals(other.getKey())
+          && (getValue() == null ? other.getValue() == null : getValue().equals(other.getValue()));
+    }
+
+    @Override
+    public String getKey() {
+      return schema.keys[slot];
+    }
+
+    @Override
+    public Object getValue() {
+      Object value = values[slot];
+      return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public int hashCode() {
+      Object value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      Object old = getValue();
+      values[slot] = value;
+      return old;
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
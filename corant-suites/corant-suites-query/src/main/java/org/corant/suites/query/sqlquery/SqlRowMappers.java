@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.corant.suites.query.QueryRuntimeException;
+
+/**
+ * corant-suites-query
+ *
+ * The result set handlers. The map handlers map the rows to {@link SqlRowMap} that share one column
+ * schema per result set. The bean handlers map the rows with the row mappers compiled for each
+ * result class and column layout. The columns are bound to the bean property setters by the column
+ * label (or the column name if the label is empty) case-insensitively and the column reader of
+ * each property type is resolved once when the mapper is compiled, the rows are then mapped through
+ * the method handles without any introspection. The column value conversions are the same as the
+ * commons-dbutils BeanProcessor. The compiled mappers are held by the result class through a
+ * {@link ClassValue}, so they never keep the result class or its class loader reachable.
+ *
+ * @author bingo 上午10:12:47
+ *
+ */
+public class SqlRowMappers {
+
+  public static final int MAX_LAYOUTS_PER_CLASS = 64;
+
+  static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+  static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+  static final ClassValue<BeanMeta> METAS = new ClassValue<BeanMeta>() {
+    @Override
+    protected BeanMeta computeValue(Class<?> beanClass) {
+      return new BeanMeta(beanClass);
+    }
+  };
+  static final MapListHandler MAP_LIST_HANDLER = new MapListHandler();
+
+  private SqlRowMappers() {}
+
+  /**
+   * Returns the handler that maps all the rows of the result set to the beans.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> ResultSetHandler<List<T>> beanListHandler(Class<T> beanClass) {
+    return (ResultSetHandler<List<T>>) (ResultSetHandler<?>) getMeta(beanClass).listHandler;
+  }
+
+  /**
+   * Returns the handler that maps the next row of the result set to a bean, returns null if there
+   * are no more rows. The handler caches the mapper of the last handled result set, so it can be
+   * applied to the same result set for each row.
+   */
+  public static <T> ResultSetHandler<T> beanRowHandler(Class<T> beanClass) {
+    return new BeanRowHandler<>(getMeta(beanClass));
+  }
+
+  /**
+   * Returns the handler that maps all the rows of the result set to the compact row maps.
+   */
+  public static ResultSetHandler<List<Map<String, Object>>> mapListHandler() {
+    return MAP_LIST_HANDLER;
+  }
+
+  /**
+   * Returns the handler that maps the next row of the result set to a compact row map, returns null
+   * if there are no more rows. The handler caches the schema of the last handled result set, so it
+   * can be applied to the same result set for each row.
+   */
+  public static ResultSetHandler<Map<String, Object>> mapRowHandler() {
+    return new MapRowHandler();
+  }
+
+  static BeanMeta getMeta(Class<?> beanClass) {
+    return METAS.get(beanClass);
+  }
+
+  static ColumnReader resolveReader(final Class<?> type, final String property) {
+    if (type == String.class) {
+      return ResultSet::getString;
+    } else if (type == int.class) {
+      return ResultSet::getInt;
+    } else if (type == Integer.class) {
+      return (rs, i) -> nullable(rs, rs.getInt(i));
+    } else if (type == long.class) {
+      return ResultSet::getLong;
+    } else if (type == Long.class) {
+      return (rs, i) -> nullable(rs, rs.getLong(i));
+    } else if (type == boolean.class) {
+      return ResultSet::getBoolean;
+    } else if (type == Boolean.class) {
+      return (rs, i) -> nullable(rs, rs.getBoolean(i));
+    } else if (type == double.class) {
+      return ResultSet::getDouble;
+    } else if (type == Double.class) {
+      return (rs, i) -> nullable(rs, rs.getDouble(i));
+    } else if (type == float.class) {
+      return ResultSet::getFloat;
+    } else if (type == Float.class) {
+      return (rs, i) -> nullable(rs, rs.getFloat(i));
+    } else if (type == short.class) {
+      return ResultSet::getShort;
+    } else if (type == Short.class) {
+      return (rs, i) -> nullable(rs, rs.getShort(i));
+    } else if (type == byte.class) {
+      return ResultSet::getByte;
+    } else if (type == Byte.class) {
+      return (rs, i) -> nullable(rs, rs.getByte(i));
+    } else if (type == Timestamp.class) {
+      return ResultSet::getTimestamp;
+    } else if (type == SQLXML.class) {
+      return ResultSet::getSQLXML;
+    } else if (type == java.sql.Date.class) {
+      return (rs, i) -> {
+        Object value = rs.getObject(i);
+        return value instanceof java.util.Date && !(value instanceof java.sql.Date)
+            ? new java.sql.Date(((java.util.Date) value).getTime())
+            : checkType(value, type, property);
+      };
+    } else if (type == Time.class) {
+      return (rs, i) -> {
+        Object value = rs.getObject(i);
+        return value instanceof java.util.Date && !(value instanceof Time)
+            ? new Time(((java.util.Date) value).getTime())
+            : checkType(value, type, property);
+      };
+    } else if (type.isEnum()) {
+      return (rs, i) -> {
+        Object value = rs.getObject(i);
+        return value instanceof String ? toEnum(type, (String) value)
+            : checkType(value, type, property);
+      };
+    }
+    final Class<?> boxed = box(type);
+    return (rs, i) -> checkType(rs.getObject(i), boxed, property);
+  }
+
+  static Class<?> box(Class<?> type) {
+    return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+  }
+
+  static Object checkType(Object value, Class<?> type, String property) throws SQLException {
+    if (value == null || type.isInstance(value)) {
+      return value;
+    }
+    throw new SQLException(
+        String.format("Cannot set %s: incompatible types, cannot convert %s to %s", property,
+            value.getClass().getName(), type.getName()));
+  }
+
+  static Object nullable(ResultSet rs, Object value) throws SQLException {
+    return rs.wasNull() ? null : value;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static Object toEnum(Class<?> type, String value) {
+    return Enum.valueOf((Class) type, value);
+  }
+
+  static class BeanListHandler<T> implements ResultSetHandler<List<T>> {
+    final BeanMeta meta;
+
+    BeanListHandler(BeanMeta meta) {
+      this.meta = meta;
+    }
+
+    @Override
+    public List<T> handle(ResultSet rs) throws SQLException {
+      List<T> list = new ArrayList<>();
+      if (rs.next()) {
+        RowMapper mapper = meta.getMapper(rs.getMetaData());
+        do {
+          list.add(mapper.map(rs));
+        } while (rs.next());
+      }
+      return list;
+    }
+  }
+
+  static class BeanMeta {
+    final Class<?> beanClass;
+    final MethodHandle constructor;
+    final Map<String, PropertyDescriptor> properties = new HashMap<>();
+    final Map<Layout, RowMapper> mappers = new ConcurrentHashMap<>();
+    final BeanListHandler<?> listHandler = new BeanListHandler<>(this);
+
+    BeanMeta(Class<?> beanClass) {
+      this.beanClass = beanClass;
+      try {
+        Constructor<?> ctor = beanClass.getDeclaredConstructor();
+        ctor.setAccessible(true);
+        constructor = MethodHandles.lookup().unreflectConstructor(ctor).asType(CONSTRUCTOR_TYPE);
+        for (PropertyDescriptor pd : Introspector.getBeanInfo(beanClass)
+            .getPropertyDescriptors()) {
+          if (pd.getWriteMethod() != null) {
+            properties.put(pd.getName().toLowerCase(Locale.ROOT), pd);
+          }
+        }
+      } catch (NoSuchMethodException | IllegalAccessException | IntrospectionException
+          | RuntimeException e) {
+        throw new QueryRuntimeException(e, "Can not resolve the result class %s!",
+            beanClass.getName());
+      }
+    }
+
+    RowMapper compile(Layout layout) throws SQLException {
+      List<Integer> indexes = new ArrayList<>();
+      List<ColumnReader> readers = new ArrayList<>();
+      List<MethodHandle> setters = new ArrayList<>();
+      List<Boolean> primitives = new ArrayList<>();
+      for (int c = 0; c < layout.labels.length; c++) {
+        PropertyDescriptor pd = properties.get(layout.labels[c].toLowerCase(Locale.ROOT));
+        if (pd != null) {
+          Method writer = pd.getWriteMethod();
+          Class<?> type = writer.getParameterTypes()[0];
+          try {
+            writer.setAccessible(true);
+            setters.add(MethodHandles.lookup().unreflect(writer).asType(SETTER_TYPE));
+          } catch (IllegalAccessException | RuntimeException e) {
+            throw new SQLException("Cannot set " + pd.getName(), e);
+          }
+          indexes.add(c + 1);
+          readers.add(resolveReader(type, pd.getName()));
+          primitives.add(type.isPrimitive());
+        }
+      }
+      return new RowMapper(beanClass, constructor,
+          indexes.stream().mapToInt(Integer::intValue).toArray(),
+          readers.toArray(new ColumnReader[readers.size()]),
+          setters.toArray(new MethodHandle[setters.size()]), primitives);
+    }
+
+    RowMapper getMapper(ResultSetMetaData metaData) throws SQLException {
+      Layout layout = new Layout(metaData);
+      RowMapper mapper = mappers.get(layout);
+      if (mapper == null) {
+        mapper = compile(layout);
+        if (mappers.size() < MAX_LAYOUTS_PER_CLASS) {
+          mappers.put(layout, mapper);
+        }
+      }
+      return mapper;
+    }
+  }
+
+  static class BeanRowHandler<T> implements ResultSetHandler<T> {
+    final BeanMeta meta;
+    ResultSet lastResultSet;
+    RowMapper lastMapper;
+
+    BeanRowHandler(BeanMeta meta) {
+      this.meta = meta;
+    }
+
+    @Override
+    public T handle(ResultSet rs) throws SQLException {
+      if (!rs.next()) {
+        return null;
+      }
+      if (rs != lastResultSet) {
+        lastMapper = meta.getMapper(rs.getMetaData());
+        lastResultSet = rs;
+      }
+      return lastMapper.map(rs);
+    }
+  }
+
+  @FunctionalInterface
+  interface ColumnReader {
+    Object read(ResultSet rs, int index) throws SQLException;
+  }
+
+  static class MapListHandler implements ResultSetHandler<List<Map<String, Object>>> {
+
+    @Override
+    public List<Map<String, Object>> handle(ResultSet rs) throws SQLException {
+      List<Map<String, Object>> list = new ArrayList<>();
+      if (rs.next()) {
+        SqlRowMap.Schema schema = SqlRowMap.Schema.of(rs.getMetaData());
+        do {
+          list.add(schema.read(rs));
+        } while (rs.next());
+      }
+      return list;
+    }
+  }
+
+  static class MapRowHandler implements ResultSetHandler<Map<String, Object>> {
+    ResultSet lastResultSet;
+    SqlRowMap.Schema lastSchema;
+
+    @Override
+    public Map<String, Object> handle(ResultSet rs) throws SQLException {
+      if (!rs.next()) {
+        return null;
+      }
+      if (rs != lastResultSet) {
+        lastSchema = SqlRowMap.Schema.of(rs.getMetaData());
+        lastResultSet = rs;
+      }
+      return lastSchema.read(rs);
+    }
+  }
+
+  /**
+   * The column labels of a result set.
+   */
+  static class Layout {
+    final String[] labels;
+    final int hash;
+
+    Layout(ResultSetMetaData metaData) throws SQLException {
+      labels = new String[metaData.getColumnCount()];
+      for (int c = 0; c < labels.length; c++) {
+        String label = metaData.getColumnLabel(c + 1);
+        labels[c] = label == null || label.isEmpty() ? metaData.getColumnName(c + 1) : label;
+      }
+      hash = Arrays.hashCode(labels);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return this == obj || obj instanceof Layout && hash == ((Layout) obj).hash
+          && Arrays.equals(labels, ((Layout) obj).labels);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  static class RowMapper {
+    final Class<?> beanClass;
+    final MethodHandle constructor;
+    final int[] indexes;
+    final ColumnReader[] readers;
+    final MethodHandle[] setters;
+    final boolean[] primitives;
+
+    RowMapper(Class<?> beanClass, MethodHandle constructor, int[] indexes, ColumnReader[] readers,
+        MethodHandle[] setters, List<Boolean> primitives) {
+      this.beanClass = beanClass;
+      this.constructor = constructor;
+      this.indexes = indexes;
+      this.readers = readers;
+      this.setters = setters;
+      this.primitives = new boolean[primitives.size()];
+      for (int i = 0; i < this.primitives.length; i++) {
+        this.primitives[i] = primitives.get(i);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T map(ResultSet rs) throws SQLException {
+      try {
+        Object bean = constructor.invokeExact();
+        for (int i = 0; i < indexes.length; i++) {
+          Object value = readers[i].read(rs, indexes[i]);
+          if (value != null || !primitives[i]) {
+            setters[i].invokeExact(bean, value);
+          }
+        }
+        return (T) bean;
+      } catch (SQLException | RuntimeException e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new SQLException("Cannot create " + beanClass.getName(), e);
+      }
+    }
+  }
+}
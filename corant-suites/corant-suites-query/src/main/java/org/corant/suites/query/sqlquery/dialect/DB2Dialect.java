@@ -13,6 +13,7 @@
  */
 package org.corant.suites.query.sqlquery.dialect;
 
+import org.corant.suites.query.sqlquery.SqlClauses;
 import org.corant.suites.query.sqlquery.SqlHelper;
 
 /**
@@ -35,7 +36,7 @@ public class DB2Dialect implements Dialect {
    * </pre>
    */
   public String getLimitString(String sql, int offset, int limit) {
-    int startOfSelect = SqlHelper.shallowIndexOfPattern(sql, SqlHelper.SELECT_PATTERN, 0);
+    int startOfSelect = SqlClauses.of(sql).getSelectPosition();
     StringBuilder sqlToUse =
         new StringBuilder(sql.length() + 128).append(sql.substring(0, startOfSelect))
             .append("SELECT * FROM ( SELECT ").append(getRowNumber(sql));
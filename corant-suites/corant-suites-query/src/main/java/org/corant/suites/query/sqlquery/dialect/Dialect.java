@@ -13,6 +13,9 @@
  */
 package org.corant.suites.query.sqlquery.dialect;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.corant.suites.query.sqlquery.SqlHelper;
 
 /**
@@ -42,6 +45,18 @@ public interface Dialect {
         .toString();
   }
 
+  /**
+   * Convert SQL statement to the statement that returns the execution plan whose row estimates can
+   * be resolved by {@link #resolveEstimatedCount(List)}, returns null if the database does not
+   * support.
+   *
+   * @param sql to convert SQL
+   * @return Estimated count SQL statement or null
+   */
+  default String getEstimatedCountSql(String sql) {
+    return null;
+  }
+
   /**
    * Convert SQL statement to Paging SQL
    *
@@ -52,12 +67,108 @@ public interface Dialect {
    */
   String getLimitSql(String sql, int offset, int limit);
 
+  /**
+   * Convert SQL statement to keyset (seek) paging SQL, the original statement is wrapped and the
+   * key columns must be the column labels of the original statement. The parameters of the seek
+   * predicate are appended to the original parameters, see {@link #getKeysetParameters(Object[])}.
+   *
+   * @param sql to convert SQL
+   * @param keyColumns the ordering key columns that uniquely identify a row
+   * @param desc whether the ordering is descending
+   * @param seek whether to seek after the key values of the previous page
+   * @param limit page size
+   * @return Keyset paging SQL statement
+   */
+  default String getKeysetLimitSql(String sql, String[] keyColumns, boolean desc, boolean seek,
+      int limit) {
+    StringBuilder keysetSql = new StringBuilder(sql.length() + 128).append("SELECT * FROM ( ")
+        .append(Dialect.getNonOrderByPart(sql)).append(" ) keyset_");
+    if (seek) {
+      keysetSql.append(" WHERE ").append(getKeysetPredicate(keyColumns, desc));
+    }
+    keysetSql.append(" ORDER BY ");
+    for (int i = 0; i < keyColumns.length; i++) {
+      keysetSql.append(i > 0 ? ", " : "").append(keyColumns[i]).append(desc ? " DESC" : " ASC");
+    }
+    return getLimitSql(keysetSql.toString(), 0, limit);
+  }
+
+  /**
+   * Returns the seek parameters that match {@link #getKeysetPredicate(String[], boolean)}.
+   *
+   * @param keyValues the key values of the last row of previous page
+   * @return getKeysetParameters
+   */
+  default Object[] getKeysetParameters(Object[] keyValues) {
+    if (supportsRowValueComparison()) {
+      return keyValues;
+    }
+    List<Object> params = new ArrayList<>();
+    for (int i = 0; i < keyValues.length; i++) {
+      for (int j = 0; j < i; j++) {
+        params.add(keyValues[j]);
+      }
+      params.add(keyValues[i]);
+    }
+    return params.toArray();
+  }
+
+  /**
+   * Returns the seek predicate, use row value comparison (k1,k2) > (?,?) if supported, otherwise
+   * use the expanded form (k1 > ?) OR (k1 = ? AND k2 > ?).
+   *
+   * @param keyColumns the ordering key columns
+   * @param desc whether the ordering is descending
+   * @return getKeysetPredicate
+   */
+  default String getKeysetPredicate(String[] keyColumns, boolean desc) {
+    final String op = desc ? " < " : " > ";
+    StringBuilder predicate = new StringBuilder();
+    if (supportsRowValueComparison()) {
+      predicate.append("(").append(String.join(", ", keyColumns)).append(")").append(op)
+          .append("(");
+      for (int i = 0; i < keyColumns.length; i++) {
+        predicate.append(i > 0 ? ", ?" : "?");
+      }
+      return predicate.append(")").toString();
+    }
+    predicate.append("(");
+    for (int i = 0; i < keyColumns.length; i++) {
+      predicate.append(i > 0 ? " OR (" : "(");
+      for (int j = 0; j < i; j++) {
+        predicate.append(keyColumns[j]).append(" = ? AND ");
+      }
+      predicate.append(keyColumns[i]).append(op).append("?)");
+    }
+    return predicate.append(")").toString();
+  }
+
+  /**
+   * Resolve the estimated row count from the execution plan rows that returned by the statement of
+   * {@link #getEstimatedCountSql(String)}, returns null if it can not be resolved.
+   *
+   * @param plan the execution plan rows
+   * @return the estimated row count or null
+   */
+  default Integer resolveEstimatedCount(List<Map<String, Object>> plan) {
+    return null;
+  }
+
   /**
    *
    * @return supportsLimit
    */
   boolean supportsLimit();
 
+  /**
+   * Whether the database supports the row value comparison such as (a, b) > (?, ?)
+   *
+   * @return supportsRowValueComparison
+   */
+  default boolean supportsRowValueComparison() {
+    return false;
+  }
+
   public enum DBMS {
     MYSQL, ORACLE, DB2, H2, HSQL, POSTGRE, SQLSERVER, SQLSERVER2005, SYBASE,
   }
@@ -31,6 +31,11 @@ public class H2Dialect implements Dialect {
     return true;
   }
 
+  @Override
+  public boolean supportsRowValueComparison() {
+    return true;
+  }
+
   /**
    * <pre>
    * dialect.getLimitString("select * from user", 12, ":offset",0,":limit") will return
@@ -13,7 +13,7 @@
  */
 package org.corant.suites.query.sqlquery.dialect;
 
-import org.corant.suites.query.sqlquery.SqlHelper;
+import org.corant.suites.query.sqlquery.SqlClauses;
 
 /**
  * asosat-query
@@ -38,7 +38,7 @@ public class HSQLDialect implements Dialect {
       String limitPlaceholder) {
     boolean hasOffset = offset > 0;
     return new StringBuffer(sql.length() + 10).append(sql)
-        .insert(SqlHelper.shallowIndexOfPattern(sql, SqlHelper.SELECT_PATTERN, 0) + 7,
+        .insert(SqlClauses.of(sql).getSelectPosition() + 7,
             hasOffset ? " LIMIT " + offsetPlaceholder + " " + limitPlaceholder
                 : " TOP " + limitPlaceholder)
         .toString();
@@ -49,4 +49,9 @@ public class HSQLDialect implements Dialect {
     return true;
   }
 
+  @Override
+  public boolean supportsRowValueComparison() {
+    return true;
+  }
+
 }
@@ -13,6 +13,11 @@
  */
 package org.corant.suites.query.sqlquery.dialect;
 
+import static org.corant.shared.util.MapUtils.getMapDouble;
+import static org.corant.shared.util.MapUtils.getMapInteger;
+import java.util.List;
+import java.util.Map;
+
 /**
  * asosat-query
  *
@@ -21,6 +26,11 @@ package org.corant.suites.query.sqlquery.dialect;
  */
 public class MySQLDialect implements Dialect {
 
+  @Override
+  public String getEstimatedCountSql(String sql) {
+    return "EXPLAIN " + Dialect.getNonOrderByPart(sql);
+  }
+
   @Override
   public String getLimitSql(String sql, int offset, int limit) {
     return getLimitString(sql, offset, Integer.toString(offset), Integer.toString(limit));
@@ -43,8 +53,33 @@ public class MySQLDialect implements Dialect {
     }
   }
 
+  /**
+   * The tables of the outermost select are joined in nested loops, so the estimated row count is
+   * the product of the examined rows and the filtered percentage of each of them.
+   */
+  @Override
+  public Integer resolveEstimatedCount(List<Map<String, Object>> plan) {
+    double estimated = -1;
+    for (Map<String, Object> row : plan) {
+      Integer id = getMapInteger(row, "id");
+      Double rows = getMapDouble(row, "rows");
+      if (id == null || id.intValue() != 1 || rows == null) {
+        continue;
+      }
+      Double filtered = getMapDouble(row, "filtered");
+      double factor = filtered == null ? 1 : filtered.doubleValue() / 100;
+      estimated = (estimated < 0 ? 1 : estimated) * rows.doubleValue() * factor;
+    }
+    return estimated < 0 ? null : (int) Math.min(Math.round(estimated), Integer.MAX_VALUE);
+  }
+
   @Override
   public boolean supportsLimit() {
     return true;
   }
+
+  @Override
+  public boolean supportsRowValueComparison() {
+    return true;
+  }
 }
@@ -13,6 +13,12 @@
  */
 package org.corant.suites.query.sqlquery.dialect;
 
+import static org.corant.shared.util.Empties.isEmpty;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * asosat-query
  *
@@ -21,6 +27,13 @@ package org.corant.suites.query.sqlquery.dialect;
  */
 public class PostgreSQLDialect implements Dialect {
 
+  static final Pattern PLAN_ROWS_PATTERN = Pattern.compile("rows=(\\d+)");
+
+  @Override
+  public String getEstimatedCountSql(String sql) {
+    return "EXPLAIN " + Dialect.getNonOrderByPart(sql);
+  }
+
   @Override
   public String getLimitSql(String sql, int offset, int limit) {
     return getLimitString(sql, offset, limit);
@@ -39,8 +52,29 @@ public class PostgreSQLDialect implements Dialect {
     return pageSql.toString();
   }
 
+  /**
+   * The first line of the plan is the top node, its rows estimate is the estimated row count of the
+   * whole statement.
+   */
+  @Override
+  public Integer resolveEstimatedCount(List<Map<String, Object>> plan) {
+    if (!isEmpty(plan) && !isEmpty(plan.get(0))) {
+      Object line = plan.get(0).values().iterator().next();
+      Matcher matcher = line == null ? null : PLAN_ROWS_PATTERN.matcher(line.toString());
+      if (matcher != null && matcher.find()) {
+        return (int) Math.min(Long.parseLong(matcher.group(1)), Integer.MAX_VALUE);
+      }
+    }
+    return null;
+  }
+
   @Override
   public boolean supportsLimit() {
     return true;
   }
+
+  @Override
+  public boolean supportsRowValueComparison() {
+    return true;
+  }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.esquery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * corant-suites-query
+ *
+ * Compares the reading of a page of 1,000 search hits into the result class, the SMILE sources
+ * read in place by the SMILE reader, the SMILE sources converted to JSON first as before, and the
+ * JSON sources read in place.
+ *
+ * @author bingo 下午7:02:44
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XContentUtilsBenchmark {
+
+  static final int HITS_SIZE = 1000;
+
+  final EsHitReader reader = EsHitReader.of(Order.class);
+  SearchHits smileHits;
+  SearchHits jsonHits;
+
+  public static void main(String... args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(XContentUtilsBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+  static SearchHits buildHits(XContentType xContentType) throws IOException {
+    SearchHit[] hits = new SearchHit[HITS_SIZE];
+    for (int i = 0; i < HITS_SIZE; i++) {
+      XContentBuilder builder = XContentFactory.contentBuilder(xContentType);
+      builder.startObject().field("id", 100000L + i).field("code", "ORD-" + i)
+          .field("status", i % 3 == 0 ? "PAID" : "OPEN").field("amount", i * 10.5d)
+          .field("createdTime", 1546300800000L + i * 1000L)
+          .field("tags", Arrays.asList("t" + i % 7, "t" + i % 11))
+          .startObject("customer").field("id", 2000L + i % 97).field("name", "客户" + i % 97)
+          .endObject().endObject();
+      hits[i] = new SearchHit(i, String.valueOf(i), new Text("_doc"), Collections.emptyMap())
+          .sourceRef(BytesReference.bytes(builder));
+    }
+    return new SearchHits(hits, HITS_SIZE, 1.0f);
+  }
+
+  @Benchmark
+  public List<Order> jsonDirect() throws IOException {
+    return XContentUtils.readHits(jsonHits, reader);
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    smileHits = buildHits(XContentType.SMILE);
+    jsonHits = buildHits(XContentType.JSON);
+  }
+
+  @Benchmark
+  @SuppressWarnings("deprecation")
+  public List<Order> smileConvertToJson() throws IOException {
+    List<Order> list = new ArrayList<>(HITS_SIZE);
+    for (SearchHit hit : smileHits.getHits()) {
+      list.add(reader.getJsonReader()
+          .readValue(XContentHelper.convertToJson(hit.getSourceRef(), false, XContentType.SMILE)));
+    }
+    return list;
+  }
+
+  @Benchmark
+  public List<Order> smileDirect() throws IOException {
+    return XContentUtils.readHits(smileHits, reader);
+  }
+
+  public static class Order {
+    public Long id;
+    public String code;
+    public String status;
+    public Double amount;
+    public Long createdTime;
+    public List<String> tags;
+    public Map<String, Object> customer;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * corant-suites-query
+ *
+ * Compares the rendering of a template that declares the render cache hint with the rendering of
+ * the same template without the hint, the parameters of each invocation have the same shape and
+ * different bound values.
+ *
+ * @author bingo 下午5:48:03
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DefaultSqlNamedQueryTplBenchmark {
+
+  static final int PARAMS_SIZE = 16;
+
+  DefaultSqlNamedQueryTpl cached;
+  DefaultSqlNamedQueryTpl uncached;
+  final List<Map<String, Object>> params = new ArrayList<>();
+  int index;
+
+  public static void main(String... args) throws RunnerException {
+    new Runner(
+        new OptionsBuilder().include(DefaultSqlNamedQueryTplBenchmark.class.getSimpleName())
+            .build()).run();
+  }
+
+  @Benchmark
+  public DefaultSqlNamedQuerier cached() {
+    return cached.process(params.get(index++ & PARAMS_SIZE - 1));
+  }
+
+  @Setup
+  public void setup() {
+    cached = DefaultSqlNamedQueryTplTest.template("RenderCache.orders");
+    uncached = DefaultSqlNamedQueryTplTest.template("RenderCache.ordersUncached");
+    for (int i = 0; i < PARAMS_SIZE; i++) {
+      Map<String, Object> param = new HashMap<>();
+      param.put("status", "S" + i);
+      param.put("code", "C" + i + "%");
+      param.put("minAmount", 1000L + i);
+      param.put("ids", Arrays.asList(10000L + i, 20000L + i, 30000L + i));
+      param.put("customerIds", Arrays.asList("U" + i, "V" + i));
+      param.put("sort", "o.amount DESC");
+      params.add(param);
+    }
+  }
+
+  @Benchmark
+  public DefaultSqlNamedQuerier uncached() {
+    return uncached.process(params.get(index++ & PARAMS_SIZE - 1));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.corant.kernel.service.DefaultConversionService;
+import org.corant.suites.query.mapping.Query;
+import org.corant.suites.query.mapping.QueryParser;
+import org.junit.Test;
+
+/**
+ * corant-suites-query
+ *
+ * Verify that the render cache never serves a plan whose SQL depends on the values of the bound
+ * parameters, and that it serves the plans of the templates that only bind the values.
+ *
+ * @author bingo 下午5:26:41
+ *
+ */
+public class DefaultSqlNamedQueryTplTest {
+
+  static final String QUERIES = "org/corant/suites/query/sqlquery/RenderCacheQueries.xml";
+
+  static Map<String, Object> param(Object... nameValues) {
+    Map<String, Object> param = new HashMap<>();
+    for (int i = 0; i < nameValues.length; i += 2) {
+      param.put((String) nameValues[i], nameValues[i + 1]);
+    }
+    return param;
+  }
+
+  static DefaultSqlNamedQueryTpl template(String name) {
+    Query query = new QueryParser().parse(QUERIES).stream().flatMap(m -> m.getQueries().stream())
+        .filter(q -> name.equals(q.getName())).findFirst().get();
+    return new DefaultSqlNamedQueryTpl(query, new DefaultConversionService());
+  }
+
+  @Test
+  public void testBindsOnly() {
+    DefaultSqlNamedQueryTpl tpl = template("RenderCache.bindsOnly");
+    tpl.process(param("status", "A", "ids", Arrays.asList(1, 2), "sort", "id"));
+    tpl.process(param("status", "B", "ids", Arrays.asList(3, 4), "sort", "id"));
+    assertTrue(tpl.renderCache.values().stream().allMatch(p -> p.verified));
+    DefaultSqlNamedQuerier querier =
+        tpl.process(param("status", "C", "ids", Arrays.asList(5, 6), "sort", "id"));
+    assertArrayEquals(new Object[] {"C", 5, 6}, querier.getConvertedParameters());
+    assertTrue(querier.getScript().endsWith("ORDER BY id"));
+    querier = tpl.process(param("status", "D", "ids", Arrays.asList(7, 8), "sort", "amount"));
+    assertArrayEquals(new Object[] {"D", 7, 8}, querier.getConvertedParameters());
+    assertTrue(querier.getScript().endsWith("ORDER BY amount"));
+  }
+
+  @Test
+  public void testBoundElementTestedByDirective() {
+    DefaultSqlNamedQueryTpl tpl = template("RenderCache.testsBoundElement");
+    tpl.process(param("ids", Arrays.asList(1, 2)));
+    tpl.process(param("ids", Arrays.asList(3, 4)));
+    tpl.process(param("ids", Arrays.asList(5, 6)));
+    DefaultSqlNamedQuerier querier = tpl.process(param("ids", Arrays.asList(7, 700)));
+    assertTrue(querier.getScript().contains("vip = 1"));
+    assertArrayEquals(new Object[] {7, 700}, querier.getConvertedParameters());
+    assertFalse(tpl.renderCache.values().stream().anyMatch(p -> p.verified));
+  }
+
+  @Test
+  public void testBoundValueTestedByDirective() {
+    DefaultSqlNamedQueryTpl tpl = template("RenderCache.testsBoundValue");
+    tpl.process(param("status", "A", "amount", 10));
+    tpl.process(param("status", "B", "amount", 20));
+    DefaultSqlNamedQuerier querier = tpl.process(param("status", "C", "amount", 30));
+    assertFalse(querier.getScript().contains("vip = 1"));
+    querier = tpl.process(param("status", "D", "amount", 200));
+    assertTrue(querier.getScript().contains("vip = 1"));
+    assertArrayEquals(new Object[] {"D", 200}, querier.getConvertedParameters());
+    assertEquals(1, tpl.renderCache.size());
+    assertFalse(tpl.renderCache.values().stream().anyMatch(p -> p.verified));
+  }
+}
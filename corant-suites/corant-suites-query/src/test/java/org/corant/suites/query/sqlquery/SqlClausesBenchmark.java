@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * corant-suites-query
+ *
+ * Compares the single pass clause scanning of {@link SqlClauses} with the regular expression path
+ * that resolves each clause by {@link SqlHelper#shallowIndexOfPattern}, on the statements of about
+ * 5 KB and 20 KB with nested sub queries, literals and comments.
+ *
+ * @author bingo 下午4:40:12
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SqlClausesBenchmark {
+
+  @Param({"5120", "20480"})
+  int size;
+
+  String sql;
+
+  public static void main(String... args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SqlClausesBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+  static String buildSql(int size) {
+    StringBuilder select = new StringBuilder("SELECT DISTINCT o.id, o.code");
+    StringBuilder where = new StringBuilder(" WHERE o.deleted = 0");
+    int i = 0;
+    while (select.length() + where.length() < size) {
+      select.append(", o.col").append(i).append(" AS c").append(i)
+          .append(", (SELECT MAX(d.amount) FROM detail d WHERE d.order_id = o.id AND d.kind = '")
+          .append("from ''where'' ").append(i).append("' ORDER BY d.id) AS m").append(i);
+      where.append(" AND (o.col").append(i).append(" IN (SELECT x.id FROM x WHERE x.v > ")
+          .append(i).append(") OR o.col").append(i).append(" IS NULL) -- order by ").append(i)
+          .append("\n");
+      i++;
+    }
+    return select.append(" FROM orders o").append(where).append(" ORDER BY o.id DESC, o.code")
+        .toString();
+  }
+
+  @Benchmark
+  public void regex(Blackhole bh) {
+    bh.consume(SqlHelper.shallowIndexOfPattern(sql, SqlHelper.SELECT_PATTERN, 0));
+    bh.consume(SqlHelper.shallowIndexOfPattern(sql, SqlHelper.SELECT_DISTINCT_PATTERN, 0));
+    bh.consume(SqlHelper.shallowIndexOfPattern(sql, SqlHelper.DISTINCT_PATTERN, 0));
+    bh.consume(SqlHelper.shallowIndexOfPattern(sql, SqlHelper.FROM_PATTERN, 0));
+    bh.consume(SqlHelper.shallowIndexOfPattern(sql, SqlHelper.WHERE_PATTERN, 0));
+    bh.consume(SqlHelper.shallowIndexOfPattern(sql, SqlHelper.ORDER_BY_PATTERN, 0));
+  }
+
+  @Benchmark
+  public SqlClauses scan() {
+    return SqlClauses.scan(sql);
+  }
+
+  @Benchmark
+  public SqlClauses scanCached() {
+    return SqlClauses.of(sql);
+  }
+
+  @Setup
+  public void setup() {
+    sql = buildSql(size);
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2013-2018, Bingo.Chen (finesoft@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corant.suites.query.sqlquery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.junit.Test;
+
+/**
+ * corant-suites-query
+ *
+ * Verify that the compiled row mappers bind the columns to the bean property setters with the same
+ * column value conversions as the commons-dbutils BeanProcessor.
+ *
+ * @author bingo 上午11:08:26
+ *
+ */
+public class SqlRowMappersTest {
+
+  /**
+   * Returns a result set of the given rows, the label prefixed with ':' is an empty column label of
+   * the column name that follows the prefix.
+   */
+  static ResultSet resultSet(String[] labels, Object[]... rows) {
+    ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+        SqlRowMappersTest.class.getClassLoader(), new Class<?>[] {ResultSetMetaData.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getColumnCount":
+              return labels.length;
+            case "getColumnLabel":
+              String label = labels[(Integer) args[0] - 1];
+              return label.startsWith(":") ? "" : label;
+            case "getColumnName":
+              return labels[(Integer) args[0] - 1].replace(":", "");
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+    int[] cursor = {-1};
+    boolean[] wasNull = {false};
+    return (ResultSet) Proxy.newProxyInstance(SqlRowMappersTest.class.getClassLoader(),
+        new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "next":
+              return ++cursor[0] < rows.length;
+            case "getMetaData":
+              return metaData;
+            case "wasNull":
+              return wasNull[0];
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+          }
+          Object value = rows[cursor[0]][(Integer) args[0] - 1];
+          wasNull[0] = value == null;
+          switch (method.getName()) {
+            case "getObject":
+            case "getTimestamp":
+              return value;
+            case "getString":
+              return value == null ? null : value.toString();
+            case "getLong":
+              return value == null ? 0L : ((Number) value).longValue();
+            case "getInt":
+              return value == null ? 0 : ((Number) value).intValue();
+            case "getBoolean":
+              return value != null && (Boolean) value;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  static Order single(ResultSet rs) throws SQLException {
+    List<Order> orders = SqlRowMappers.beanListHandler(Order.class).handle(rs);
+    assertEquals(1, orders.size());
+    return orders.get(0);
+  }
+
+  @Test
+  public void testBindsColumnsToSetters() throws SQLException {
+    Order order = single(resultSet(new String[] {"id", "userName", "amount", "quantity"},
+        new Object[] {1L, "bingo", new BigDecimal("9.90"), 3}));
+    assertEquals(1L, order.getId());
+    assertEquals("bingo", order.getUserName());
+    assertEquals(new BigDecimal("9.90"), order.getAmount());
+    assertEquals(3, order.getQuantity());
+  }
+
+  @Test
+  public void testConvertsColumnValues() throws SQLException {
+    Timestamp created = new Timestamp(1546300800000L);
+    Order order = single(resultSet(new String[] {"id", "quantity", "created", "status"},
+        new Object[] {7, 5L, created, "PAID"}));
+    assertEquals(7L, order.getId());
+    assertEquals(5, order.getQuantity());
+    assertEquals(java.sql.Date.class, order.getCreated().getClass());
+    assertEquals(created.getTime(), order.getCreated().getTime());
+    assertSame(Status.PAID, order.getStatus());
+  }
+
+  @Test
+  public void testIgnoresUnknownColumns() throws SQLException {
+    Order order = single(resultSet(new String[] {"remark", "id", "deleted"},
+        new Object[] {"ignored", 2L, Boolean.TRUE}));
+    assertEquals(2L, order.getId());
+    assertEquals(1, SqlRowMappers.getMeta(Order.class).compile(
+        new SqlRowMappers.Layout(resultSet(new String[] {"remark", "id", "deleted"})
+            .getMetaData())).indexes.length);
+  }
+
+  @Test
+  public void testSetsPrimitiveDefaultOnNull() throws SQLException {
+    Order order = single(resultSet(new String[] {"id", "quantity", "version", "settled"},
+        new Object[] {3L, null, null, null}));
+    assertEquals(0, order.getQuantity());
+    assertNull(order.getVersion());
+    assertFalse(order.isSettled());
+  }
+
+  @Test
+  public void testMatchesLabelsIgnoringCase() throws SQLException {
+    Order order = single(resultSet(new String[] {"ID", "USERNAME", "Amount", ":STATUS"},
+        new Object[] {4L, "corant", BigDecimal.ONE, "NEW"}));
+    assertEquals(4L, order.getId());
+    assertEquals("corant", order.getUserName());
+    assertEquals(BigDecimal.ONE, order.getAmount());
+    assertSame(Status.NEW, order.getStatus());
+  }
+
+  @Test
+  public void testRejectsIncompatibleTypes() {
+    try {
+      single(resultSet(new String[] {"id", "amount"}, new Object[] {6L, "9.90"}));
+      fail("The incompatible column value was set");
+    } catch (SQLException e) {
+      assertTrue(e.getMessage().startsWith("Cannot set amount"));
+    }
+  }
+
+  @Test
+  public void testReusesMappersPerLayout() throws SQLException {
+    String[] labels = {"id", "userName"};
+    SqlRowMappers.BeanMeta meta = SqlRowMappers.getMeta(Order.class);
+    assertSame(meta, SqlRowMappers.getMeta(Order.class));
+    assertSame(meta.getMapper(resultSet(labels).getMetaData()),
+        meta.getMapper(resultSet(labels.clone()).getMetaData()));
+    ResultSet rs = resultSet(labels, new Object[] {8L, "a"}, new Object[] {9L, "b"});
+    ResultSetHandler<Order> handler = SqlRowMappers.beanRowHandler(Order.class);
+    assertEquals("a", handler.handle(rs).getUserName());
+    assertEquals(9L, handler.handle(rs).getId());
+    assertNull(handler.handle(rs));
+  }
+
+  public static class Order {
+    long id;
+    String userName;
+    BigDecimal amount;
+    int quantity = -1;
+    Integer version = 1;
+    boolean settled = true;
+    java.sql.Date created;
+    Status status;
+
+    public BigDecimal getAmount() {
+      return amount;
+    }
+
+    public java.sql.Date getCreated() {
+      return created;
+    }
+
+    public long getId() {
+      return id;
+    }
+
+    public int getQuantity() {
+      return quantity;
+    }
+
+    public Status getStatus() {
+      return status;
+    }
+
+    public String getUserName() {
+      return userName;
+    }
+
+    public Integer getVersion() {
+      return version;
+    }
+
+    public boolean isSettled() {
+      return settled;
+    }
+
+    public void setAmount(BigDecimal amount) {
+      this.amount = amount;
+    }
+
+    public void setCreated(java.sql.Date created) {
+      this.created = created;
+    }
+
+    public void setId(long id) {
+      this.id = id;
+    }
+
+    public void setQuantity(int quantity) {
+      this.quantity = quantity;
+    }
+
+    public void setSettled(boolean settled) {
+      this.settled = settled;
+    }
+
+    public void setStatus(Status status) {
+      this.status = status;
+    }
+
+    public void setUserName(String userName) {
+      this.userName = userName;
+    }
+
+    public void setVersion(Integer version) {
+      this.version = version;
+    }
+  }
+
+  public enum Status {
+    NEW, PAID
+  }
+}